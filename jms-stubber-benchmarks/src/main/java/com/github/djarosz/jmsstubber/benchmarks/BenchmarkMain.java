@@ -0,0 +1,24 @@
+package com.github.djarosz.jmsstubber.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.openjdk.jmh.Main;
+
+/**
+ * Runs JMH with results written as JSON to <i>jmh-result.json</i> unless other result format is requested.
+ * Accepts all standard JMH command line options.
+ */
+public final class BenchmarkMain {
+
+  private BenchmarkMain() {
+  }
+
+  public static void main(String[] args) throws Exception {
+    List<String> arguments = new ArrayList<>(Arrays.asList(args));
+    if (!arguments.contains("-rf")) {
+      arguments.addAll(0, Arrays.asList("-rf", "json"));
+    }
+    Main.main(arguments.toArray(new String[0]));
+  }
+}
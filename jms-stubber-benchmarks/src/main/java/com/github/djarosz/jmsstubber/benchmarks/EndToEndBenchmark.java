@@ -0,0 +1,126 @@
+package com.github.djarosz.jmsstubber.benchmarks;
+
+import com.github.djarosz.jmsstubber.JmsStubber;
+import com.github.djarosz.jmsstubber.JmsStubberBuilder;
+import com.github.djarosz.jmsstubber.MessageHandler;
+import com.github.djarosz.jmsstubber.StubbingMode;
+import java.net.ServerSocket;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.DeliveryMode;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Messages per second handled by stubber running embedded broker. Client sends batch of messages to stubbed
+ * queue over vm:// or tcp:// transport and waits until stubber handler has seen all of them.
+ *
+ * <p>Messages left in the stubbed queue (resent by stubber or kept by broker) are drained by separate
+ * consumer standing for the system under test.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EndToEndBenchmark {
+
+  private static final String QUEUE = "benchmark.end-to-end";
+  private static final int BATCH_SIZE = 1000;
+  private static final long BATCH_TIMEOUT_SECONDS = 30;
+
+  public enum Transport {
+    VM, TCP
+  }
+
+  @Param({"VM", "TCP"})
+  private Transport transport;
+
+  @Param({"RESEND", "INTERCEPT", "INTERCEPT_ASYNC", "WIRE_TAP"})
+  private StubbingMode stubbingMode;
+
+  @Param({"1", "4"})
+  private int concurrency;
+
+  @Param({"1024"})
+  private int bodySize;
+
+  private final Semaphore handled = new Semaphore(0);
+  private JmsStubber stubber;
+  private Connection connection;
+  private MessageProducer producer;
+  private TextMessage message;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    String tcpUri = "tcp://localhost:" + freePort();
+    MessageHandler<Message> handledSignal = (session, message) -> handled.release();
+    stubber = JmsStubberBuilder.embeddedBroker()
+        .withConnectorUri(tcpUri)
+        .withQueues()
+        .withStubbingMode(stubbingMode)
+        .withDefaultConcurrency(concurrency)
+        .withQueue(QUEUE, handledSignal)
+        .build();
+    stubber.start();
+
+    ConnectionFactory connectionFactory = transport == Transport.VM
+        ? stubber.getConnectionFactory()
+        : new ActiveMQConnectionFactory(tcpUri);
+    connection = connectionFactory.createConnection();
+    connection.start();
+    Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+    String drainSelector = stubbingMode == StubbingMode.RESEND
+        ? JmsStubber.STUBBER_PROCESSED_HEADER + " IS NOT NULL"
+        : null;
+    session.createConsumer(session.createQueue(QUEUE), drainSelector).setMessageListener(message -> { });
+
+    Session producerSession = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+    producer = producerSession.createProducer(producerSession.createQueue(QUEUE));
+    producer.setDeliveryMode(DeliveryMode.NON_PERSISTENT);
+    message = producerSession.createTextMessage(new String(new char[bodySize]).replace('\0', 'x'));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    connection.close();
+    stubber.stop();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public void sendAndHandle() throws Exception {
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      producer.send(message);
+    }
+    if (!handled.tryAcquire(BATCH_SIZE, BATCH_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+      throw new IllegalStateException("Stubber did not handle batch within " + BATCH_TIMEOUT_SECONDS + "s");
+    }
+  }
+
+  private static int freePort() throws Exception {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+}
@@ -0,0 +1,135 @@
+package com.github.djarosz.jmsstubber.benchmarks;
+
+import com.github.djarosz.jmsstubber.HandlerSessionImpl;
+import com.github.djarosz.jmsstubber.MessageHandler;
+import com.github.djarosz.jmsstubber.handler.ForwardingHandler;
+import com.github.djarosz.jmsstubber.handler.GroovyHandler;
+import com.github.djarosz.jmsstubber.handler.LoggingHandler;
+import com.github.djarosz.jmsstubber.handler.MessageCollectingHandler;
+import com.github.djarosz.jmsstubber.handler.TemplateReplyHandler;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import javax.jms.Message;
+import javax.jms.TextMessage;
+import org.apache.activemq.ActiveMQConnection;
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.command.ActiveMQQueue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of single handler invocation outside of JMS delivery. Handlers sending messages send them to topics
+ * without subscribers so broker drops them right away.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class HandlerBenchmark {
+
+  private static final String QUEUE = "benchmark.handler";
+  private static final String SCRIPT = "def id = msg.json.id\n"
+      + "session.send('topic://benchmark.handler.reply', \"reply-$id\")\n";
+
+  public enum HandlerType {
+    GROOVY, TEMPLATE, TEMPLATE_RENDER, FORWARDING, LOGGING, COLLECTING
+  }
+
+  @Param({"GROOVY", "TEMPLATE", "TEMPLATE_RENDER", "FORWARDING", "LOGGING", "COLLECTING"})
+  private HandlerType handlerType;
+
+  private ActiveMQConnection connection;
+  private HandlerSessionImpl session;
+  private Path scriptDirectory;
+  private MessageHandler<Message> handler;
+  private Message message;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    connection = (ActiveMQConnection) new ActiveMQConnectionFactory("vm://handler-benchmark?broker.persistent=false")
+        .createConnection();
+    session = HandlerSessionImpl.create(connection);
+    scriptDirectory = Files.createTempDirectory("handler-benchmark");
+    Files.write(scriptDirectory.resolve(QUEUE + ".groovy"), SCRIPT.getBytes(StandardCharsets.UTF_8));
+
+    TextMessage textMessage = session.getJmsSession().createTextMessage("{\"id\": 1, \"name\": \"benchmark\"}");
+    textMessage.setJMSDestination(new ActiveMQQueue(QUEUE));
+    textMessage.setStringProperty("property", "value");
+    message = textMessage;
+
+    handler = createHandler();
+  }
+
+  /**
+   * Collected messages would otherwise pile up over the whole trial.
+   */
+  @Setup(Level.Iteration)
+  public void resetCollectedMessages() throws Exception {
+    if (handlerType == HandlerType.COLLECTING) {
+      closeHandler();
+      handler = createHandler();
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    closeHandler();
+    session.close();
+    connection.close();
+    for (File file : scriptDirectory.toFile().listFiles()) {
+      Files.delete(file.toPath());
+    }
+    Files.delete(scriptDirectory);
+  }
+
+  private void closeHandler() throws Exception {
+    // e.g. script watcher of groovy handler, segment files of collecting handler
+    if (handler instanceof AutoCloseable) {
+      ((AutoCloseable) handler).close();
+    }
+  }
+
+  @Benchmark
+  public void handle() throws Throwable {
+    handler.handle(session, message);
+  }
+
+  @SuppressWarnings("unchecked")
+  private MessageHandler<Message> createHandler() {
+    switch (handlerType) {
+      case GROOVY:
+        return new GroovyHandler(scriptDirectory.toFile());
+      case TEMPLATE:
+        // the same reply as the groovy script
+        return TemplateReplyHandler.fromText("reply-${json:$.id}", "topic://benchmark.handler.reply");
+      case TEMPLATE_RENDER:
+        // template cost without send to the broker
+        TemplateReplyHandler template = TemplateReplyHandler.fromText("reply-${json:$.id}", null);
+        return (session, message) -> template.render(message);
+      case FORWARDING:
+        return new ForwardingHandler("topic://benchmark.handler.forward");
+      case LOGGING:
+        return LoggingHandler.INSTANCE;
+      case COLLECTING:
+        return new MessageCollectingHandler<>();
+      default:
+        throw new IllegalArgumentException("Unsupported handler: " + handlerType);
+    }
+  }
+}
@@ -0,0 +1,74 @@
+package com.github.djarosz.jmsstubber.benchmarks;
+
+import com.github.djarosz.jmsstubber.HandlerSession;
+import com.github.djarosz.jmsstubber.HandlerSessionImpl;
+import java.util.concurrent.TimeUnit;
+import javax.jms.Destination;
+import javax.jms.Message;
+import org.apache.activemq.ActiveMQConnection;
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.command.ActiveMQTopic;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of sending message through {@link HandlerSession}, including destination name resolution. Messages are
+ * sent to topic without subscribers so only send path is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HandlerSessionSendBenchmark {
+
+  @Param({"topic://benchmark.send", "benchmark.send"})
+  private String destinationName;
+
+  private ActiveMQConnection connection;
+  private HandlerSessionImpl session;
+  private Destination destination;
+  private Message message;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    connection = (ActiveMQConnection) new ActiveMQConnectionFactory("vm://send-benchmark?broker.persistent=false")
+        .createConnection();
+    session = HandlerSessionImpl.create(connection);
+    destination = new ActiveMQTopic("benchmark.send");
+    message = session.getJmsSession().createTextMessage("benchmark");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    session.close();
+    connection.close();
+  }
+
+  @Benchmark
+  public void sendMessageToName() {
+    session.send(destinationName, message);
+  }
+
+  @Benchmark
+  public void sendTextToName() {
+    session.send(destinationName, "benchmark");
+  }
+
+  @Benchmark
+  public void sendMessageToDestination() {
+    session.send(destination, message);
+  }
+}
@@ -0,0 +1,147 @@
+package com.github.djarosz.jmsstubber.benchmarks;
+
+import com.github.djarosz.jmsstubber.util.MessageUtils;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import javax.jms.BytesMessage;
+import javax.jms.Connection;
+import javax.jms.MapMessage;
+import javax.jms.Message;
+import javax.jms.Session;
+import javax.jms.StreamMessage;
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link MessageUtils#createCopy(Session, Message)} for every message type and a range of body sizes.
+ *
+ * <p>{@code ACTIVEMQ} copy uses ActiveMQ session and takes the fast path sharing message body. {@code GENERIC}
+ * copy hides the session implementation so message is copied using plain JMS API, as for other providers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageCopyBenchmark {
+
+  public enum CopyPath {
+    ACTIVEMQ, GENERIC
+  }
+
+  @Param({"TEXT", "BYTES", "STREAM", "MAP", "OBJECT"})
+  private MessageType messageType;
+
+  @Param({"128", "16384", "1048576"})
+  private int bodySize;
+
+  @Param({"ACTIVEMQ", "GENERIC"})
+  private CopyPath copyPath;
+
+  private Connection connection;
+  private Session copySession;
+  private Message message;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    connection = new ActiveMQConnectionFactory("vm://copy-benchmark?broker.persistent=false").createConnection();
+    Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+    copySession = copyPath == CopyPath.ACTIVEMQ ? session : hideImplementation(session);
+    message = messageType.create(session, bodySize);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    connection.close();
+  }
+
+  @Benchmark
+  public Message createCopy() {
+    return MessageUtils.createCopy(copySession, message);
+  }
+
+  private static Session hideImplementation(Session session) {
+    return (Session) Proxy.newProxyInstance(MessageCopyBenchmark.class.getClassLoader(),
+        new Class<?>[] {Session.class}, (proxy, method, args) -> {
+          try {
+            return method.invoke(session, args);
+          } catch (InvocationTargetException e) {
+            throw e.getCause();
+          }
+        });
+  }
+
+  public enum MessageType {
+    TEXT {
+      @Override
+      Message create(Session session, int bodySize) throws Exception {
+        return session.createTextMessage(new String(randomBytes(bodySize, 'a', 26)));
+      }
+    },
+    BYTES {
+      @Override
+      Message create(Session session, int bodySize) throws Exception {
+        BytesMessage message = session.createBytesMessage();
+        message.writeBytes(randomBytes(bodySize, 0, 256));
+        message.reset();
+        return message;
+      }
+    },
+    STREAM {
+      @Override
+      Message create(Session session, int bodySize) throws Exception {
+        StreamMessage message = session.createStreamMessage();
+        for (int i = 0; i < bodySize / FIELD_SIZE; i++) {
+          message.writeInt(i);
+          message.writeBytes(randomBytes(FIELD_SIZE - Integer.BYTES, 0, 256));
+        }
+        message.reset();
+        return message;
+      }
+    },
+    MAP {
+      @Override
+      Message create(Session session, int bodySize) throws Exception {
+        MapMessage message = session.createMapMessage();
+        for (int i = 0; i < bodySize / FIELD_SIZE; i++) {
+          message.setBytes("field" + i, randomBytes(FIELD_SIZE, 0, 256));
+        }
+        return message;
+      }
+    },
+    OBJECT {
+      @Override
+      Message create(Session session, int bodySize) throws Exception {
+        return session.createObjectMessage(randomBytes(bodySize, 0, 256));
+      }
+    };
+
+    private static final int FIELD_SIZE = 64;
+
+    abstract Message create(Session session, int bodySize) throws Exception;
+
+    private static byte[] randomBytes(int size, int base, int range) {
+      Random random = new Random(size);
+      byte[] bytes = new byte[size];
+      for (int i = 0; i < size; i++) {
+        bytes[i] = (byte) (base + random.nextInt(range));
+      }
+      return bytes;
+    }
+  }
+}
@@ -0,0 +1,93 @@
+package com.github.djarosz.jmsstubber;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import javax.jms.Message;
+import javax.jms.MessageListener;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Executes handler chain of a queue without waiting for {@link AsyncMessageHandler}s, so consumer thread is
+ * released as soon as synchronous part of the chain is done, or immediately when chain is executed by
+ * {@link HandlerExecutor} other than consumer thread. Every message gets its own handler session from the pool
+ * for the whole time it is handled.
+ *
+ * <p>At most max in flight messages are handled at once, consumer thread is blocked when the limit is reached.
+ * Message is acknowledged when its chain completes. Consumers should use individual acknowledge and prefetch
+ * not larger than max in flight, so blocked consumer stops broker from dispatching more messages instead of
+ * piling them up in stubber memory.
+ */
+@Slf4j
+class AsyncDispatcher implements MessageListener {
+
+  private static final long STOP_TIMEOUT_MS = 30_000;
+
+  private final HandlerChain handlerChain;
+  private final HandlerSessionPool sessionPool;
+  private final HandlerExecutor executor;
+  private final int maxInFlight;
+  private final Semaphore permits;
+  private volatile boolean stopped;
+
+  AsyncDispatcher(HandlerChain handlerChain, HandlerSessionPool sessionPool, HandlerExecutor executor,
+      int maxInFlight) {
+    this.handlerChain = handlerChain;
+    this.sessionPool = sessionPool;
+    this.executor = executor;
+    this.maxInFlight = maxInFlight;
+    this.permits = new Semaphore(maxInFlight);
+  }
+
+  @Override
+  @SneakyThrows
+  public void onMessage(Message message) {
+    permits.acquire();
+    if (stopped) {
+      // not acknowledged message is redelivered once consumer session is closed
+      permits.release();
+      return;
+    }
+
+    HandlerSessionImpl handlerSession = sessionPool.borrow();
+    try {
+      executor.execute(() -> handlerChain.executeAsync(handlerSession, message).whenComplete((result, error) -> {
+        sessionPool.release(handlerSession);
+        acknowledge(message);
+        permits.release();
+      }));
+    } catch (RuntimeException e) {
+      // executor rejected the message, consumer redelivers it
+      sessionPool.release(handlerSession);
+      permits.release();
+      throw e;
+    }
+  }
+
+  private static void acknowledge(Message message) {
+    try {
+      message.acknowledge();
+    } catch (Exception e) {
+      log.warn("Could not acknowledge message", e);
+    }
+  }
+
+  /**
+   * Number of messages which are being handled.
+   */
+  int inFlight() {
+    return maxInFlight - permits.availablePermits();
+  }
+
+  /**
+   * Stops handling new messages and waits until messages in flight are handled.
+   */
+  void stop() throws InterruptedException {
+    stopped = true;
+    if (permits.tryAcquire(maxInFlight, STOP_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+      permits.release(maxInFlight);
+    } else {
+      log.warn("Stopped while {} messages were still handled", inFlight());
+    }
+  }
+}
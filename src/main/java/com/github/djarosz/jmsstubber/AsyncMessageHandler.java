@@ -0,0 +1,32 @@
+package com.github.djarosz.jmsstubber;
+
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import javax.jms.Message;
+
+/**
+ * Handler which finishes handling of the message asynchronously, e.g. when simulated backend responds.
+ *
+ * <p>On queues with max in flight limit (see {@link QueueConfig#withMaxInFlight(int)}) next handlers in the chain
+ * are executed and message is acknowledged when returned stage completes, consumer thread is released immediately.
+ * Elsewhere handler is executed synchronously through {@link #handle(HandlerSession, Message)}.
+ *
+ * <p>Handler session passed to the handler can be used until returned stage completes.
+ */
+@FunctionalInterface
+public interface AsyncMessageHandler<T extends Message> extends MessageHandler<T> {
+
+  CompletionStage<?> handleAsync(HandlerSession session, T message) throws Throwable;
+
+  /**
+   * Executes handler and waits until returned stage completes.
+   */
+  @Override
+  default void handle(HandlerSession session, T message) throws Throwable {
+    try {
+      handleAsync(session, message).toCompletableFuture().get();
+    } catch (ExecutionException e) {
+      throw e.getCause();
+    }
+  }
+}
@@ -1,38 +1,94 @@
 package com.github.djarosz.jmsstubber;
 
+import com.github.djarosz.jmsstubber.metrics.QueueMetrics;
 import com.github.djarosz.jmsstubber.util.MessageUtils;
 import com.github.djarosz.jmsstubber.util.Streams;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.jms.ConnectionFactory;
-import javax.jms.Destination;
 import javax.jms.JMSException;
 import javax.jms.Message;
 import javax.jms.MessageConsumer;
 import javax.jms.MessageListener;
 import javax.jms.Session;
+import lombok.AccessLevel;
+import lombok.Getter;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.activemq.ActiveMQConnection;
 import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.ActiveMQMessageConsumer;
 import org.apache.activemq.ActiveMQSession;
+import org.apache.activemq.command.ActiveMQDestination;
+import org.apache.activemq.command.ActiveMQMessage;
 import org.apache.activemq.command.ActiveMQQueue;
+import org.apache.activemq.command.ActiveMQTopic;
+import org.apache.activemq.filter.DestinationFilter;
 
 @Slf4j
 @RequiredArgsConstructor
 public class DefaultJmsStubber implements JmsStubber {
 
+  /**
+   * Prefix of stubber private queues, never stubbed by wildcard queue configs.
+   */
+  static final String STUBBER_QUEUE_PREFIX = "jms-stubber.";
+  static final String WIRE_TAP_QUEUE_PREFIX = STUBBER_QUEUE_PREFIX + "tap.";
+  /**
+   * Prefix of JMSXGroupID of messages resent in {@link StubbingMode#RESEND} mode.
+   */
+  static final String RESENT_GROUP_PREFIX = "jms-stubber.";
+  /**
+   * Number of queues matching single wildcard queue config which get their own metrics. Metrics of further
+   * matching queues are reported together under the wildcard name, so metrics do not grow with queue count.
+   */
+  static final int MAX_WILDCARD_QUEUE_METRICS = 100;
+
   @NonNull
   private ActiveMQConnectionFactory connectionFactory;
   @NonNull
+  @Getter(AccessLevel.PROTECTED)
   private DestinationConfig config;
 
   private ActiveMQConnection stubberConnection;
   private ActiveMQSession stubberSession;
+  private DestinationResolver destinationResolver;
+  private DelayedSender delayedSender;
+  private final List<Session> consumerSessions = new ArrayList<>();
+  private final List<OrderedDispatcher> dispatchers = new ArrayList<>();
+  private final List<AsyncDispatcher> asyncDispatchers = new ArrayList<>();
+  private final List<HandlerSessionImpl> handlerSessions = new ArrayList<>();
+  private final List<HandlerSessionPool> handlerSessionPools = new ArrayList<>();
+
+  /**
+   * Guards attaching handlers to queues matching wildcard queue configs, done by advisory consumer thread.
+   */
+  private final Object lazyAttachLock = new Object();
+  private final Set<String> lazilyStubbedQueues = new HashSet<>();
+  private final Map<QueueConfig, Integer> wildcardQueueCounts = new IdentityHashMap<>();
+  private final Map<QueueConfig, QueueMetrics> wildcardQueueMetrics = new IdentityHashMap<>();
+  private boolean stopping;
+
+  /**
+   * Broker plugin used by interception stubbing modes. Available only when stubber runs embedded broker.
+   */
+  @Setter(AccessLevel.PACKAGE)
+  private InterceptingBrokerPlugin interceptingBrokerPlugin;
 
   @Override
   public ConnectionFactory getConnectionFactory() {
@@ -48,9 +104,19 @@ public class DefaultJmsStubber implements JmsStubber {
     stubberConnection = (ActiveMQConnection) connectionFactory.createConnection();
     stubberConnection.start();
     stubberSession = (ActiveMQSession) stubberConnection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+    synchronized (lazyAttachLock) {
+      stopping = false;
+    }
+    destinationResolver = new DestinationResolver(stubberConnection);
+    delayedSender = new DelayedSender(stubberConnection, destinationResolver);
 
     createQueues();
-    attachMessageHandlersToQueues();
+    if (config.getStubbingMode() == StubbingMode.RESEND || config.getStubbingMode() == StubbingMode.WIRE_TAP) {
+      attachMessageHandlers();
+      attachMessageHandlersLazily();
+    } else {
+      interceptMessagesSentToDestinations();
+    }
 
     log.info("Initialized");
   }
@@ -61,50 +127,346 @@ public class DefaultJmsStubber implements JmsStubber {
   public void stop() {
     log.info("Destroying JMS stubber...");
 
+    if (interceptingBrokerPlugin != null) {
+      interceptingBrokerPlugin.setInterceptors(Collections.emptyMap());
+    }
+    synchronized (lazyAttachLock) {
+      stopping = true;
+      lazilyStubbedQueues.clear();
+      wildcardQueueCounts.clear();
+      wildcardQueueMetrics.clear();
+    }
+    // dispatchers acknowledge handled messages, so they are stopped before consumer sessions
+    for (AsyncDispatcher dispatcher : asyncDispatchers) {
+      dispatcher.stop();
+    }
+    asyncDispatchers.clear();
+    for (OrderedDispatcher dispatcher : dispatchers) {
+      dispatcher.stop();
+    }
+    dispatchers.clear();
+    config.getHandlerExecutor().close();
+    for (Session consumerSession : consumerSessions) {
+      consumerSession.close();
+    }
+    consumerSessions.clear();
+    // handlers are done, messages they scheduled are sent before connection is closed
+    delayedSender.stop();
+    handlerSessions.forEach(HandlerSessionImpl::close);
+    handlerSessions.clear();
+    handlerSessionPools.forEach(HandlerSessionPool::close);
+    handlerSessionPools.clear();
     stubberSession.close();
     stubberConnection.close();
+    closeMessageHandlers();
 
     log.info("Done");
   }
 
+  /**
+   * Closes handlers holding threads or files, e.g. script watchers. Closed handlers have to be usable again
+   * when stubber is restarted.
+   */
+  private void closeMessageHandlers() {
+    Set<MessageHandler> handlers = Collections.newSetFromMap(new IdentityHashMap<>());
+    handlers.addAll(config.getCommonMessageHandlers());
+    config.stubbedDestinations().forEach(queueConfig -> handlers.addAll(queueConfig.getMessageHandlers()));
+    for (MessageHandler handler : handlers) {
+      if (handler instanceof AutoCloseable) {
+        try {
+          ((AutoCloseable) handler).close();
+        } catch (Exception e) {
+          log.warn("Could not close handler {}", handler, e);
+        }
+      }
+    }
+  }
+
   private void createQueues() throws JMSException {
     for (QueueConfig queueConfig : config.getQueues()) {
+      if (queueConfig.isWildcard()) {
+        if (config.getStubbingMode() != StubbingMode.RESEND) {
+          throw new IllegalStateException("Wildcard queue " + queueConfig.getName() + " requires stubbing mode "
+              + StubbingMode.RESEND);
+        }
+        continue;
+      }
       log.info("Creating queue: {}", queueConfig.getName());
       stubberSession.createQueue(queueConfig.getName());
+      destinationResolver.registerQueue(queueConfig.getName());
+    }
+  }
+
+  private void attachMessageHandlers() throws JMSException {
+    for (QueueConfig queueConfig : config.stubbedDestinations()) {
+      if (queueConfig instanceof TopicConfig || !queueConfig.isWildcard()) {
+        attachMessageHandlers(queueConfig);
+      }
     }
   }
 
-  private void attachMessageHandlersToQueues() throws JMSException {
+  private void attachMessageHandlers(QueueConfig queueConfig) throws JMSException {
+    attachMessageHandlers(queueConfig, metricsOf(queueConfig));
+  }
+
+  private void attachMessageHandlers(QueueConfig queueConfig, QueueMetrics metrics) throws JMSException {
+    boolean wireTap = config.getStubbingMode() == StubbingMode.WIRE_TAP;
+    int concurrency = config.concurrencyOf(queueConfig);
+    int maxInFlight = config.maxInFlightOf(queueConfig);
+    log.info("Stubbing {}: {} (mode: {}, concurrency: {}, ordered: {}, max in flight: {})",
+        destinationKind(queueConfig), queueConfig.getName(), config.getStubbingMode(), concurrency,
+        queueConfig.isOrdered(), maxInFlight);
+
+    // topics fan out messages by themselves
+    boolean resend = !wireTap && !(queueConfig instanceof TopicConfig);
+    HandlerChain handlerChain = createHandlerChain(queueConfig, resend, metrics);
+    List<MessageConsumer> consumers = new CopyOnWriteArrayList<>();
+
+    if (maxInFlight > 0) {
+      if (queueConfig.isOrdered()) {
+        throw new IllegalStateException(queueConfig.getName() + " can not be ordered and have max "
+            + "in flight limit at the same time");
+      }
+      HandlerSessionPool sessionPool = new HandlerSessionPool(stubberConnection, destinationResolver, delayedSender,
+          queueConfig.getLatency(), maxInFlight, true);
+      handlerSessionPools.add(sessionPool);
+      AsyncDispatcher dispatcher = new AsyncDispatcher(handlerChain, sessionPool, config.getHandlerExecutor(),
+          maxInFlight);
+      asyncDispatchers.add(dispatcher);
+      for (int i = 0; i < concurrency; i++) {
+        consumers.add(attachStubbingListener(queueConfig, dispatcher, maxInFlight));
+      }
+      handlerChain.getMetrics().backlogGauge(() -> prefetched(consumers));
+    } else if (queueConfig.isOrdered() && concurrency > 1) {
+      HandlerSessionPool sessionPool = new HandlerSessionPool(stubberConnection, destinationResolver, delayedSender,
+          queueConfig.getLatency(), concurrency, true);
+      handlerSessionPools.add(sessionPool);
+      OrderedDispatcher dispatcher = new OrderedDispatcher("jms-stubber-" + queueConfig.getName(), concurrency,
+          true, handlerChain.getMetrics(), message -> handleMessage(handlerChain, sessionPool, message));
+      dispatchers.add(dispatcher);
+      // acknowledged by lanes, prefetch never fills lane backlog
+      consumers.add(attachStubbingListener(queueConfig, dispatcher, OrderedDispatcher.LANE_BACKLOG));
+      handlerChain.getMetrics().backlogGauge(() -> dispatcher.backlog() + prefetched(consumers));
+    } else {
+      for (int i = 0; i < concurrency; i++) {
+        // consumer session delivers messages one by one so its handler session can be reused
+        HandlerSessionImpl handlerSession = new HandlerSessionImpl(stubberConnection, destinationResolver,
+            delayedSender, queueConfig.getLatency());
+        handlerSessions.add(handlerSession);
+        consumers.add(attachStubbingListener(queueConfig,
+            message -> handlerChain.execute(handlerSession, message), 0));
+      }
+      handlerChain.getMetrics().backlogGauge(() -> prefetched(consumers));
+    }
+  }
 
+  /**
+   * Attaches handlers of wildcard queue configs to matching queues when destination advisories announce them.
+   * Advisory arrives after the queue is created, so messages dispatched before consumers are attached reach
+   * other consumers of the queue unstubbed, if there are any.
+   */
+  private void attachMessageHandlersLazily() {
+    Map<DestinationFilter, QueueConfig> wildcardQueues = new LinkedHashMap<>();
     for (QueueConfig queueConfig : config.getQueues()) {
-      log.info("Stubbing queue: {}", queueConfig.getName());
-      ActiveMQQueue queue = new ActiveMQQueue(queueConfig.getName() + "?consumer.priority=100");
+      if (queueConfig.isWildcard()) {
+        wildcardQueues.put(DestinationFilter.parseFilter(new ActiveMQQueue(queueConfig.getName())), queueConfig);
+      }
+    }
+    if (wildcardQueues.isEmpty()) {
+      return;
+    }
+
+    Set<String> ignoredQueues = new HashSet<>();
+    config.getQueues().forEach(queueConfig -> ignoredQueues.add(queueConfig.getName()));
+    config.getTopics().forEach(topicConfig -> ignoredQueues.add(topicConfig.getConsumerQueueName()));
+    destinationResolver.onQueueCreated(queueName -> {
+      if (!ignoredQueues.contains(queueName) && !queueName.startsWith(STUBBER_QUEUE_PREFIX)) {
+        attachMessageHandlersLazily(wildcardQueues, queueName);
+      }
+    });
+  }
 
-      MessageConsumer consumer = stubberSession.createConsumer(queue, STUBBER_PROCESSED_HEADER + " IS NULL");
-      MessageListener handlerChainListener = message -> {
-        HandlerSessionImpl handlerSession = new HandlerSessionImpl(stubberConnection);
-        Streams.mergeAsStream(
-            config.getCommonMessageHandlers(),
-            queueConfig.getMessageHandlers(),
-            Collections.singleton(MarkMessageAsHandledByJmsStubber.INSTANCE))
-            .forEach(executeHandler(handlerSession, message));
-        handlerSession.close();
-      };
-      consumer.setMessageListener(handlerChainListener);
+  private void attachMessageHandlersLazily(Map<DestinationFilter, QueueConfig> wildcardQueues, String queueName) {
+    ActiveMQQueue queue = new ActiveMQQueue(queueName);
+    synchronized (lazyAttachLock) {
+      if (stopping || lazilyStubbedQueues.contains(queueName)) {
+        return;
+      }
+      for (Map.Entry<DestinationFilter, QueueConfig> wildcardQueue : wildcardQueues.entrySet()) {
+        if (wildcardQueue.getKey().matches(queue)) {
+          lazilyStubbedQueues.add(queueName);
+          try {
+            QueueConfig queueConfig = wildcardQueue.getValue().copyFor(queueName);
+            attachMessageHandlers(queueConfig, metricsOf(wildcardQueue.getValue(), queueConfig));
+          } catch (JMSException | RuntimeException e) {
+            log.error("[{}]: Could not attach handlers of wildcard queue {}", queueName,
+                wildcardQueue.getValue().getName(), e);
+          }
+          return;
+        }
+      }
     }
   }
 
-  @SneakyThrows
-  private Consumer<MessageHandler> executeHandler(HandlerSession handlerSession, Message message) {
-    Destination destination = message.getJMSDestination();
-    return handler -> {
-      try {
-        log.debug("[{}]: Calling handler: {}", destination, handler.getClass().getName());
-        handler.handle(handlerSession, message);
-      } catch (Throwable e) {
-        log.error("[{}]: Error while calling handler.", destination, e);
+  /**
+   * Number of messages dispatched by broker to stubber consumers and not yet delivered to handlers.
+   */
+  private static long prefetched(List<MessageConsumer> consumers) {
+    long prefetched = 0;
+    for (MessageConsumer consumer : consumers) {
+      prefetched += ((ActiveMQMessageConsumer) consumer).getMessageSize();
+    }
+    return prefetched;
+  }
+
+  private void interceptMessagesSentToDestinations() {
+    if (interceptingBrokerPlugin == null) {
+      throw new IllegalStateException("Stubbing mode " + config.getStubbingMode() + " requires embedded broker");
+    }
+
+    Map<ActiveMQDestination, Consumer<Message>> interceptors = new HashMap<>();
+    for (QueueConfig queueConfig : config.stubbedDestinations()) {
+      int concurrency = config.concurrencyOf(queueConfig);
+      log.info("Intercepting {}: {} (mode: {}, concurrency: {})",
+          destinationKind(queueConfig), queueConfig.getName(), config.getStubbingMode(), concurrency);
+
+      HandlerChain handlerChain = createHandlerChain(queueConfig, false, metricsOf(queueConfig));
+      // handlers executed in broker send path may send to intercepted destination and borrow again
+      boolean async = config.getStubbingMode() == StubbingMode.INTERCEPT_ASYNC;
+      HandlerSessionPool sessionPool = new HandlerSessionPool(stubberConnection, destinationResolver, delayedSender,
+          queueConfig.getLatency(), concurrency, async);
+      handlerSessionPools.add(sessionPool);
+      Consumer<Message> messageProcessor = message -> handleMessage(handlerChain, sessionPool, message);
+
+      if (async) {
+        OrderedDispatcher dispatcher = new OrderedDispatcher("jms-stubber-" + queueConfig.getName(), concurrency,
+            false, handlerChain.getMetrics(), messageProcessor);
+        dispatchers.add(dispatcher);
+        handlerChain.getMetrics().backlogGauge(dispatcher::backlog);
+        messageProcessor = dispatcher::onMessage;
       }
-    };
+      interceptors.put(queueConfig instanceof TopicConfig
+          ? new ActiveMQTopic(queueConfig.getName())
+          : new ActiveMQQueue(queueConfig.getName()), messageProcessor);
+    }
+
+    interceptingBrokerPlugin.setInterceptors(interceptors);
+  }
+
+  /**
+   * Metrics of queue matching wildcard queue config, shared with other matching queues over
+   * {@link #MAX_WILDCARD_QUEUE_METRICS} limit.
+   */
+  private QueueMetrics metricsOf(QueueConfig wildcardConfig, QueueConfig queueConfig) {
+    int matchingQueues = wildcardQueueCounts.merge(wildcardConfig, 1, Integer::sum);
+    if (matchingQueues <= MAX_WILDCARD_QUEUE_METRICS) {
+      return metricsOf(queueConfig);
+    }
+    return wildcardQueueMetrics.computeIfAbsent(wildcardConfig, key -> {
+      log.info("More than {} queues match {}, metrics of further queues are reported under wildcard name",
+          MAX_WILDCARD_QUEUE_METRICS, wildcardConfig.getName());
+      return new SharedQueueMetrics(metricsOf(wildcardConfig));
+    });
+  }
+
+  private QueueMetrics metricsOf(QueueConfig queueConfig) {
+    String metricsName = queueConfig instanceof TopicConfig
+        ? ActiveMQDestination.TOPIC_QUALIFIED_PREFIX + queueConfig.getName()
+        : queueConfig.getName();
+    return config.getMetrics().forQueue(metricsName, handlerNames(handlersOf(queueConfig)));
+  }
+
+  private List<MessageHandler> handlersOf(QueueConfig queueConfig) {
+    return Streams
+        .mergeAsStream(config.getCommonMessageHandlers(), queueConfig.getMessageHandlers())
+        .collect(Collectors.toList());
+  }
+
+  private HandlerChain createHandlerChain(QueueConfig queueConfig, boolean resendHandledMessage,
+      QueueMetrics metrics) {
+    return new HandlerChain(handlersOf(queueConfig),
+        resendHandledMessage ? MarkMessageAsHandledByJmsStubber.INSTANCE : null,
+        metrics);
+  }
+
+  private static String destinationKind(QueueConfig queueConfig) {
+    return queueConfig instanceof TopicConfig ? "topic" : "queue";
+  }
+
+  /**
+   * Names handlers by their position in the chain and class name, e.g. <i>1-LoggingHandler</i>.
+   */
+  private static List<String> handlerNames(List<MessageHandler> handlers) {
+    List<String> names = new ArrayList<>();
+    for (MessageHandler handler : handlers) {
+      String className = handler.getClass().getSimpleName();
+      names.add((names.size() + 1) + "-" + (className.isEmpty() ? handler.getClass().getName() : className));
+    }
+    return names;
+  }
+
+  /**
+   * Attaches stubber consumer to the queue, or to the consumer queue of stubbed topic.
+   *
+   * @param prefetch when greater than 0 consumer uses given prefetch and individual acknowledge, listener
+   *     is responsible for acknowledging messages
+   */
+  private MessageConsumer attachStubbingListener(QueueConfig queueConfig, MessageListener listener, int prefetch)
+      throws JMSException {
+    Session consumerSession = stubberConnection.createSession(false,
+        prefetch > 0 ? ActiveMQSession.INDIVIDUAL_ACKNOWLEDGE : Session.AUTO_ACKNOWLEDGE);
+    consumerSessions.add(consumerSession);
+    String prefetchOption = prefetch > 0 ? "consumer.prefetchSize=" + prefetch : null;
+
+    String privateQueueName = queueConfig instanceof TopicConfig
+        ? ((TopicConfig) queueConfig).getConsumerQueueName()
+        : config.getStubbingMode() == StubbingMode.WIRE_TAP ? wireTapQueueName(queueConfig.getName()) : null;
+    if (privateQueueName != null) {
+      ActiveMQQueue privateQueue = new ActiveMQQueue(privateQueueName
+          + (prefetchOption == null ? "" : "?" + prefetchOption));
+      MessageConsumer consumer = consumerSession.createConsumer(privateQueue);
+      consumer.setMessageListener(message -> {
+        restoreOriginalDestination(message);
+        listener.onMessage(message);
+      });
+      return consumer;
+    }
+    ActiveMQQueue queue = new ActiveMQQueue(queueConfig.getName() + "?consumer.priority=100"
+        + (prefetchOption == null ? "" : "&" + prefetchOption));
+    MessageConsumer consumer = consumerSession.createConsumer(queue, STUBBER_PROCESSED_HEADER + " IS NULL");
+    consumer.setMessageListener(listener);
+    return consumer;
+  }
+
+  /**
+   * Name of the stubber private queue receiving copies of messages sent to stubbed queue in
+   * {@link StubbingMode#WIRE_TAP} mode.
+   */
+  static String wireTapQueueName(String queueName) {
+    return WIRE_TAP_QUEUE_PREFIX + queueName;
+  }
+
+  /**
+   * Messages forwarded by broker to wire tap or topic consumer queue keep stubbed destination as original
+   * destination. Handlers should see the stubbed destination as message destination.
+   */
+  private static void restoreOriginalDestination(Message message) {
+    if (message instanceof ActiveMQMessage) {
+      ActiveMQMessage amqMessage = (ActiveMQMessage) message;
+      if (amqMessage.getOriginalDestination() != null) {
+        amqMessage.setDestination(amqMessage.getOriginalDestination());
+      }
+    }
+  }
+
+  @SneakyThrows
+  private void handleMessage(HandlerChain handlerChain, HandlerSessionPool sessionPool, Message message) {
+    HandlerSessionImpl handlerSession = sessionPool.borrow();
+    try {
+      handlerChain.execute(handlerSession, message);
+    } finally {
+      sessionPool.release(handlerSession);
+    }
   }
 
   private static class MarkMessageAsHandledByJmsStubber implements MessageHandler {
@@ -116,6 +478,13 @@ public class DefaultJmsStubber implements JmsStubber {
       copy.setBooleanProperty(STUBBER_PROCESSED_HEADER, true);
       copy.setJMSMessageID(null);
       copy.setJMSDestination(null);
+      if (copy instanceof ActiveMQMessage && ((ActiveMQMessage) copy).getGroupID() != null) {
+        // Broker has already assigned message group to stubber consumer, whose selector rejects the copy, so
+        // copy carrying the same group would never be dispatched to any other consumer. Group of the copy is
+        // renamed instead of removed, so real consumers still get one group from one consumer, in order.
+        ActiveMQMessage amqCopy = (ActiveMQMessage) copy;
+        amqCopy.setGroupID(RESENT_GROUP_PREFIX + amqCopy.getGroupID());
+      }
       log.debug("[{}]: Resending message to the same queue", message.getJMSDestination());
       session.send(message.getJMSDestination(), copy);
     }
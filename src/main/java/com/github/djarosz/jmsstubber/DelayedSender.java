@@ -0,0 +1,74 @@
+package com.github.djarosz.jmsstubber;
+
+import com.github.djarosz.jmsstubber.util.HashedWheelTimer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import javax.jms.Destination;
+import javax.jms.Message;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.activemq.ActiveMQConnection;
+
+/**
+ * Sends messages after delay. Messages are sent by timer thread through its own session, so handler session
+ * which scheduled the send is never used by two threads at once, nor after it is released or closed.
+ *
+ * <p>Timer thread ticks every millisecond, so it is started only by the first delayed send.
+ */
+@Slf4j
+class DelayedSender {
+
+  private static final long TICK_MS = 1;
+  private static final int WHEEL_SIZE = 1024;
+  private static final long STOP_TIMEOUT_MS = 30_000;
+
+  private final HandlerSessionImpl session;
+  private final AtomicInteger pending = new AtomicInteger();
+  private volatile HashedWheelTimer timer;
+  private boolean stopped;
+
+  DelayedSender(ActiveMQConnection connection, DestinationResolver destinationResolver) {
+    this.session = new HandlerSessionImpl(connection, destinationResolver);
+  }
+
+  CompletionStage<Void> send(Destination destination, Message message, long delay, TimeUnit unit) {
+    HashedWheelTimer startedTimer = timer != null ? timer : startTimer();
+    if (startedTimer == null) {
+      CompletableFuture<Void> failed = new CompletableFuture<>();
+      failed.completeExceptionally(new IllegalStateException("Timer is stopped"));
+      return failed;
+    }
+    pending.incrementAndGet();
+    return startedTimer.schedule(() -> session.send(destination, message), delay, unit)
+        .whenComplete((result, error) -> pending.decrementAndGet());
+  }
+
+  private synchronized HashedWheelTimer startTimer() {
+    if (timer == null && !stopped) {
+      timer = new HashedWheelTimer("jms-stubber-timer", TICK_MS, TimeUnit.MILLISECONDS, WHEEL_SIZE);
+    }
+    return timer;
+  }
+
+  /**
+   * Waits until scheduled messages are sent and stops timer. Messages still waiting after 30 s are not sent,
+   * their stages complete exceptionally.
+   */
+  void stop() throws InterruptedException {
+    long waitUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(STOP_TIMEOUT_MS);
+    while (pending.get() > 0 && System.nanoTime() < waitUntil) {
+      LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(TICK_MS));
+    }
+    HashedWheelTimer stoppedTimer;
+    synchronized (this) {
+      stopped = true;
+      stoppedTimer = timer;
+    }
+    if (stoppedTimer != null) {
+      stoppedTimer.stop();
+    }
+    session.close();
+  }
+}
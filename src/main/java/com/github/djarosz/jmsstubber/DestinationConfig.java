@@ -1,5 +1,7 @@
 package com.github.djarosz.jmsstubber;
 
+import com.github.djarosz.jmsstubber.metrics.StubberMetrics;
+import java.util.ArrayList;
 import java.util.List;
 import lombok.Builder;
 import lombok.Getter;
@@ -9,9 +11,55 @@ import lombok.Singular;
 @Getter
 public class DestinationConfig {
 
+  /**
+   * Max in flight limit of queues without their own limit when handlers are not executed by consumer threads.
+   */
+  public static final int DEFAULT_MAX_IN_FLIGHT = 1000;
+
   @Singular("addQueue")
   List<QueueConfig> queues;
 
+  @Singular("addTopic")
+  List<TopicConfig> topics;
+
   @Singular("addCommonMessageHandler")
   List<MessageHandler> commonMessageHandlers;
+
+  /**
+   * Number of consumers per queue used when queue does not define its own concurrency.
+   */
+  @Builder.Default
+  int defaultConcurrency = 1;
+
+  @Builder.Default
+  StubbingMode stubbingMode = StubbingMode.RESEND;
+
+  @Builder.Default
+  StubberMetrics metrics = StubberMetrics.NONE;
+
+  @Builder.Default
+  HandlerExecutor handlerExecutor = HandlerExecutor.CONSUMER_THREAD;
+
+  /**
+   * Stubbed queues followed by stubbed topics.
+   */
+  List<QueueConfig> stubbedDestinations() {
+    List<QueueConfig> destinations = new ArrayList<>(queues);
+    destinations.addAll(topics);
+    return destinations;
+  }
+
+  int concurrencyOf(QueueConfig queueConfig) {
+    return queueConfig.getConcurrency() > 0 ? queueConfig.getConcurrency() : Math.max(1, defaultConcurrency);
+  }
+
+  /**
+   * Max number of messages handled at once, 0 when queue is handled synchronously by consumer threads.
+   */
+  int maxInFlightOf(QueueConfig queueConfig) {
+    if (queueConfig.getMaxInFlight() > 0) {
+      return queueConfig.getMaxInFlight();
+    }
+    return queueConfig.isOrdered() || handlerExecutor == HandlerExecutor.CONSUMER_THREAD ? 0 : DEFAULT_MAX_IN_FLIGHT;
+  }
 }
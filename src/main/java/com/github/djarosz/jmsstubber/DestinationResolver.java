@@ -0,0 +1,95 @@
+package com.github.djarosz.jmsstubber;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import javax.jms.JMSException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.activemq.ActiveMQConnection;
+import org.apache.activemq.advisory.DestinationEvent;
+import org.apache.activemq.advisory.DestinationListener;
+import org.apache.activemq.advisory.DestinationSource;
+import org.apache.activemq.command.ActiveMQDestination;
+import org.apache.activemq.command.ActiveMQQueue;
+import org.apache.activemq.command.ActiveMQTopic;
+
+/**
+ * Resolves destination names used by handlers.
+ *
+ * <p>Name can be explicitly qualified with <i>queue://</i> or <i>topic://</i> prefix. Name without prefix
+ * is resolved to a queue when such queue is stubbed or exists on the broker, otherwise to a topic.
+ *
+ * <p>Resolved destinations are cached. Set of existing queues is kept up to date by destination advisories
+ * so resolving already seen name is a single map lookup. The same advisories notify queue listeners.
+ */
+@Slf4j
+class DestinationResolver implements DestinationListener {
+
+  private final Map<String, ActiveMQDestination> resolvedDestinations = new ConcurrentHashMap<>();
+  private final Set<String> knownQueues = ConcurrentHashMap.newKeySet();
+  private final List<Consumer<String>> queueListeners = new CopyOnWriteArrayList<>();
+
+  DestinationResolver(ActiveMQConnection connection) throws JMSException {
+    DestinationSource destinationSource = connection.getDestinationSource();
+    destinationSource.setDestinationListener(this);
+    destinationSource.getQueues().forEach(queue -> knownQueues.add(queue.getPhysicalName()));
+  }
+
+  /**
+   * Marks name as a queue without waiting for broker advisory.
+   */
+  void registerQueue(String queueName) {
+    knownQueues.add(queueName);
+    resolvedDestinations.remove(queueName);
+  }
+
+  /**
+   * Calls listener with name of every existing queue and then of every queue created on the broker. Listener
+   * is called by advisory consumer thread and can be called more than once for the same queue.
+   */
+  void onQueueCreated(Consumer<String> listener) {
+    queueListeners.add(listener);
+    knownQueues.forEach(listener);
+  }
+
+  ActiveMQDestination resolve(String name) {
+    ActiveMQDestination destination = resolvedDestinations.get(name);
+    if (destination == null) {
+      destination = resolvedDestinations.computeIfAbsent(name, this::doResolve);
+    }
+    return destination;
+  }
+
+  private ActiveMQDestination doResolve(String name) {
+    if (name.startsWith(ActiveMQDestination.QUEUE_QUALIFIED_PREFIX)
+        || name.startsWith(ActiveMQDestination.TOPIC_QUALIFIED_PREFIX)) {
+      return ActiveMQDestination.createDestination(name, ActiveMQDestination.QUEUE_TYPE);
+    }
+    return knownQueues.contains(name) ? new ActiveMQQueue(name) : new ActiveMQTopic(name);
+  }
+
+  @Override
+  public void onDestinationEvent(DestinationEvent event) {
+    ActiveMQDestination destination = event.getDestination();
+    if (!(destination instanceof ActiveMQQueue) || destination.isTemporary()) {
+      return;
+    }
+
+    String queueName = destination.getPhysicalName();
+    if (event.isAddOperation()) {
+      log.debug("Queue created: {}", queueName);
+      knownQueues.add(queueName);
+    } else {
+      log.debug("Queue removed: {}", queueName);
+      knownQueues.remove(queueName);
+    }
+    // name could have been resolved before queue was (un)registered
+    resolvedDestinations.remove(queueName);
+    if (event.isAddOperation()) {
+      queueListeners.forEach(listener -> listener.accept(queueName));
+    }
+  }
+}
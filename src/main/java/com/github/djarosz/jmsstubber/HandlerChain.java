@@ -0,0 +1,134 @@
+package com.github.djarosz.jmsstubber;
+
+import com.github.djarosz.jmsstubber.metrics.QueueMetrics;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import javax.jms.Destination;
+import javax.jms.Message;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Ordered list of handlers executed for every message received on stubbed destination.
+ * Error in one handler is logged and does not stop execution of remaining handlers.
+ *
+ * <p>Chain can be executed synchronously or asynchronously, see {@link AsyncMessageHandler}.
+ */
+@Slf4j
+@RequiredArgsConstructor
+class HandlerChain {
+
+  @NonNull
+  @Getter
+  private final List<MessageHandler> handlers;
+
+  /**
+   * Resends processed message after all handlers are executed, null when message is not resent.
+   */
+  private final MessageHandler resendHandler;
+
+  @NonNull
+  @Getter
+  private final QueueMetrics metrics;
+
+  @SneakyThrows
+  void execute(HandlerSession handlerSession, Message message) {
+    Destination destination = message.getJMSDestination();
+    long chainStartedAt = System.nanoTime();
+    metrics.chainStarted();
+    try {
+      for (int i = 0; i < handlers.size(); i++) {
+        MessageHandler handler = handlers.get(i);
+        long startedAt = System.nanoTime();
+        boolean failed = !executeHandler(destination, handler, handlerSession, message);
+        metrics.handlerFinished(i, System.nanoTime() - startedAt, failed);
+      }
+      if (resendHandler != null) {
+        long startedAt = System.nanoTime();
+        boolean failed = !executeHandler(destination, resendHandler, handlerSession, message);
+        metrics.resendFinished(System.nanoTime() - startedAt, failed);
+      }
+    } finally {
+      metrics.chainFinished(System.nanoTime() - chainStartedAt);
+    }
+  }
+
+  /**
+   * Executes handlers without waiting for {@link AsyncMessageHandler}s. Next handler is executed when stage
+   * returned by asynchronous handler completes, by the thread completing it.
+   *
+   * @return stage completed when all handlers and resend are finished, never completed exceptionally
+   */
+  CompletionStage<Void> executeAsync(HandlerSession handlerSession, Message message) {
+    long chainStartedAt = System.nanoTime();
+    metrics.chainStarted();
+    CompletableFuture<Void> finished = new CompletableFuture<>();
+    executeFrom(0, handlerSession, message, finished);
+    return finished.whenComplete((result, error) -> metrics.chainFinished(System.nanoTime() - chainStartedAt));
+  }
+
+  @SneakyThrows
+  private void executeFrom(int first, HandlerSession handlerSession, Message message,
+      CompletableFuture<Void> finished) {
+    Destination destination = message.getJMSDestination();
+    for (int i = first; i < handlers.size(); i++) {
+      MessageHandler handler = handlers.get(i);
+      long startedAt = System.nanoTime();
+      if (handler instanceof AsyncMessageHandler) {
+        CompletionStage<?> stage = startHandler(destination, (AsyncMessageHandler) handler, handlerSession, message);
+        if (stage != null) {
+          int current = i;
+          stage.whenComplete((result, error) -> {
+            if (error != null) {
+              log.error("[{}]: Error while calling handler.", destination, error);
+            }
+            metrics.handlerFinished(current, System.nanoTime() - startedAt, error != null);
+            executeFrom(current + 1, handlerSession, message, finished);
+          });
+          return;
+        }
+        metrics.handlerFinished(i, System.nanoTime() - startedAt, true);
+      } else {
+        boolean failed = !executeHandler(destination, handler, handlerSession, message);
+        metrics.handlerFinished(i, System.nanoTime() - startedAt, failed);
+      }
+    }
+    if (resendHandler != null) {
+      long startedAt = System.nanoTime();
+      boolean failed = !executeHandler(destination, resendHandler, handlerSession, message);
+      metrics.resendFinished(System.nanoTime() - startedAt, failed);
+    }
+    finished.complete(null);
+  }
+
+  /**
+   * Starts asynchronous handler, returns null when handler failed to start.
+   */
+  private static CompletionStage<?> startHandler(Destination destination, AsyncMessageHandler handler,
+      HandlerSession handlerSession, Message message) {
+    try {
+      log.debug("[{}]: Calling asynchronous handler: {}", destination, handler.getClass().getName());
+      CompletionStage<?> stage = handler.handleAsync(handlerSession, message);
+      return stage == null ? CompletableFuture.completedFuture(null) : stage;
+    } catch (Throwable e) {
+      log.error("[{}]: Error while calling handler.", destination, e);
+      return null;
+    }
+  }
+
+  private static boolean executeHandler(Destination destination, MessageHandler handler, HandlerSession handlerSession,
+      Message message) {
+    try {
+      log.debug("[{}]: Calling handler: {}", destination, handler.getClass().getName());
+      handler.handle(handlerSession, message);
+      return true;
+    } catch (Throwable e) {
+      log.error("[{}]: Error while calling handler.", destination, e);
+      return false;
+    }
+  }
+}
@@ -0,0 +1,69 @@
+package com.github.djarosz.jmsstubber;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Decides which thread executes handler chain of received message.
+ *
+ * <p>By default ({@link #CONSUMER_THREAD}) handlers run on consumer thread which received the message. Any other
+ * executor releases consumer thread immediately, queues are then handled like queues with max in flight limit
+ * (see {@link QueueConfig#withMaxInFlight(int)}), with {@link DestinationConfig#DEFAULT_MAX_IN_FLIGHT} as the limit
+ * when queue does not define its own. Ordered queues always use their own lanes.
+ */
+@FunctionalInterface
+public interface HandlerExecutor {
+
+  HandlerExecutor CONSUMER_THREAD = Runnable::run;
+
+  /**
+   * Executes handling of single message.
+   */
+  void execute(Runnable messageHandling);
+
+  /**
+   * Releases threads owned by executor, called when stubber stops after all handlings are done. Executor has to
+   * be usable again when stubber is restarted. Executors passed to {@link #of(Executor)} are owned by caller
+   * and are not shut down.
+   */
+  default void close() {
+  }
+
+  static HandlerExecutor of(Executor executor) {
+    return executor::execute;
+  }
+
+  /**
+   * Executes every message on its own virtual thread, so blocking handlers (sleeps, blocking IO) do not hold
+   * platform threads. Requires Java 21 or newer runtime, executor is looked up reflectively so stubber itself
+   * still runs on Java 8.
+   *
+   * <p>Virtual threads are not reused, so thread local caches (e.g. message copy buffers) are not reused either.
+   * Executor is shut down by {@link #close()} and created again on next execution.
+   */
+  static HandlerExecutor virtualThreads() {
+    Method factory;
+    try {
+      factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+    } catch (NoSuchMethodException e) {
+      throw new UnsupportedOperationException("Virtual threads require Java 21 or newer, running on Java "
+          + System.getProperty("java.specification.version"), e);
+    }
+    return new VirtualThreadExecutor(factory);
+  }
+
+  /**
+   * Parses executor name used in properties: <i>consumer</i> or <i>virtual</i>.
+   */
+  static HandlerExecutor parse(String name) {
+    switch (name.trim().toLowerCase()) {
+      case "consumer":
+        return CONSUMER_THREAD;
+      case "virtual":
+        return virtualThreads();
+      default:
+        throw new IllegalArgumentException("Unknown handler executor: " + name);
+    }
+  }
+}
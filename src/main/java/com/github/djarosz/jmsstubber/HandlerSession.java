@@ -1,11 +1,23 @@
 package com.github.djarosz.jmsstubber;
 
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
 import javax.jms.Destination;
 import javax.jms.Message;
 import javax.jms.Queue;
 import javax.jms.Session;
 import javax.jms.Topic;
 
+/**
+ * Session passed to message handlers. Used to send new messages.
+ *
+ * <p>Destination names can be prefixed with <i>queue://</i> or <i>topic://</i>. Name without prefix
+ * is treated as a queue when such queue is stubbed or exists on the broker, otherwise as a topic.
+ *
+ * <p>Delayed sends simulate backend latency without holding any thread. Message is sent by stubber timer thread
+ * when the delay elapses, returned stage completes when message is sent. Handler can return the stage as
+ * {@link AsyncMessageHandler} so handled message is acknowledged only after delayed response is sent.
+ */
 public interface HandlerSession {
 
   void sendWithReplyTo(String destinationName, String replyDestinationName, String text);
@@ -18,6 +30,25 @@ public interface HandlerSession {
 
   void send(Destination destination, Message message);
 
+  CompletionStage<Void> sendLater(long delay, TimeUnit unit, String destinationName, String text);
+
+  CompletionStage<Void> sendLater(long delay, TimeUnit unit, String destinationName, Message message);
+
+  /**
+   * Sends message after delay drawn from latency distribution of handled queue, see
+   * {@link QueueConfig#withLatency(LatencyDistribution)}.
+   */
+  CompletionStage<Void> sendLater(String destinationName, String text);
+
+  /**
+   * Sends message after delay drawn from latency distribution of handled queue, see
+   * {@link QueueConfig#withLatency(LatencyDistribution)}.
+   */
+  CompletionStage<Void> sendLater(String destinationName, Message message);
+
+  CompletionStage<Void> sendWithReplyToLater(long delay, TimeUnit unit, String destinationName,
+      String replyDestinationName, String text);
+
   Queue getQueue(String queueName);
 
   Topic getTopic(String topicName);
@@ -1,6 +1,9 @@
 package com.github.djarosz.jmsstubber;
 
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
 import javax.jms.Destination;
+import javax.jms.JMSException;
 import javax.jms.Message;
 import javax.jms.MessageProducer;
 import javax.jms.Queue;
@@ -9,19 +12,45 @@ import javax.jms.TextMessage;
 import javax.jms.Topic;
 import lombok.SneakyThrows;
 import org.apache.activemq.ActiveMQConnection;
-import org.apache.activemq.advisory.DestinationSource;
 import org.apache.activemq.command.ActiveMQQueue;
 import org.apache.activemq.command.ActiveMQTopic;
 
 public class HandlerSessionImpl implements HandlerSession {
 
-  private ActiveMQConnection amqConnection;
+  private DestinationResolver destinationResolver;
   private Session jmsSession;
+  private MessageProducer producer;
+  private DelayedSender delayedSender;
+  private LatencyDistribution latency;
 
+  HandlerSessionImpl(ActiveMQConnection amqConnection, DestinationResolver destinationResolver) {
+    this(amqConnection, destinationResolver, null, LatencyDistribution.NONE);
+  }
+
+  /**
+   * Creates session not managed by stubber, e.g. to call handlers in tests and benchmarks. Delayed sends are
+   * not supported. Caller has to {@link #close()} it.
+   *
+   * <p>Session resolves destinations with the connection's destination source and replaces its destination
+   * listener, so the connection should not be shared with a stubber or other code listening for destinations.
+   */
+  public static HandlerSessionImpl create(ActiveMQConnection amqConnection) throws JMSException {
+    return new HandlerSessionImpl(amqConnection, new DestinationResolver(amqConnection));
+  }
+
+  /**
+   * Creates session.
+   *
+   * @param delayedSender sender of delayed messages, null when delayed sends are not supported
+   * @param latency latency distribution of handled queue
+   */
   @SneakyThrows
-  HandlerSessionImpl(ActiveMQConnection amqConnection) {
-    this.amqConnection = amqConnection;
+  HandlerSessionImpl(ActiveMQConnection amqConnection, DestinationResolver destinationResolver,
+      DelayedSender delayedSender, LatencyDistribution latency) {
+    this.destinationResolver = destinationResolver;
     this.jmsSession = amqConnection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+    this.delayedSender = delayedSender;
+    this.latency = latency;
   }
 
   @Override
@@ -52,20 +81,62 @@ public class HandlerSessionImpl implements HandlerSession {
   @Override
   @SneakyThrows
   public void send(Destination destination, Message message) {
-    MessageProducer producer = jmsSession.createProducer(destination);
-    producer.send(destination, message);
-    producer.close();
+    getProducer().send(destination, message);
+  }
+
+  @Override
+  @SneakyThrows
+  public CompletionStage<Void> sendLater(long delay, TimeUnit unit, String destinationName, String text) {
+    return sendLater(delay, unit, getDestination(destinationName), jmsSession.createTextMessage(text));
+  }
+
+  @Override
+  public CompletionStage<Void> sendLater(long delay, TimeUnit unit, String destinationName, Message message) {
+    return sendLater(delay, unit, getDestination(destinationName), message);
+  }
+
+  @Override
+  public CompletionStage<Void> sendLater(String destinationName, String text) {
+    return sendLater(latency.nextNanos(), TimeUnit.NANOSECONDS, destinationName, text);
+  }
+
+  @Override
+  public CompletionStage<Void> sendLater(String destinationName, Message message) {
+    return sendLater(latency.nextNanos(), TimeUnit.NANOSECONDS, destinationName, message);
+  }
+
+  /**
+   * Message is sent by {@link DelayedSender}, this session is not used once delay elapses.
+   */
+  private CompletionStage<Void> sendLater(long delay, TimeUnit unit, Destination destination, Message message) {
+    if (delayedSender == null) {
+      throw new IllegalStateException("Delayed sends are not supported by this session");
+    }
+    return delayedSender.send(destination, message, delay, unit);
   }
 
+  @Override
   @SneakyThrows
-  private boolean isQueue(String name) {
-    DestinationSource destinationSource = amqConnection.getDestinationSource();
-    ActiveMQQueue queue = new ActiveMQQueue(name);
-    return destinationSource.getQueues().contains(queue);
+  public CompletionStage<Void> sendWithReplyToLater(long delay, TimeUnit unit, String destinationName,
+      String replyDestinationName, String text) {
+    TextMessage textMessage = jmsSession.createTextMessage(text);
+    textMessage.setJMSReplyTo(getQueue(replyDestinationName));
+    return sendLater(delay, unit, getDestination(destinationName), textMessage);
+  }
+
+  /**
+   * Returns anonymous producer shared by all sends done with this session. Creating and closing
+   * producer are synchronous broker calls, so it is created once and closed with the session.
+   */
+  private synchronized MessageProducer getProducer() throws JMSException {
+    if (producer == null) {
+      producer = jmsSession.createProducer(null);
+    }
+    return producer;
   }
 
   private Destination getDestination(String name) {
-    return isQueue(name) ? getQueue(name) : getTopic(name);
+    return destinationResolver.resolve(name);
   }
 
   @Override
@@ -83,8 +154,14 @@ public class HandlerSessionImpl implements HandlerSession {
     return jmsSession;
   }
 
+  /**
+   * Closes producer and JMS session.
+   */
   @SneakyThrows
-  void close() {
+  public void close() {
+    if (producer != null) {
+      producer.close();
+    }
     jmsSession.close();
   }
 }
@@ -0,0 +1,74 @@
+package com.github.djarosz.jmsstubber;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.activemq.ActiveMQConnection;
+
+/**
+ * Bounded pool of handler sessions shared by threads handling messages of one destination.
+ * Sessions are created lazily up to pool size. When all sessions are in use borrowing thread
+ * waits until one is released.
+ *
+ * <p>Non blocking pool never waits, it creates extra session instead and closes it on release when
+ * pool is full. It is meant for handlers executed in broker send path, which can send to other
+ * intercepted destinations, so waiting for a session there could deadlock.
+ */
+@Slf4j
+class HandlerSessionPool {
+
+  private final ActiveMQConnection connection;
+  private final DestinationResolver destinationResolver;
+  private final DelayedSender delayedSender;
+  private final LatencyDistribution latency;
+  private final int maxSize;
+  private final boolean blocking;
+  private final BlockingQueue<HandlerSessionImpl> idleSessions;
+  private final AtomicInteger createdSessions = new AtomicInteger();
+
+  HandlerSessionPool(ActiveMQConnection connection, DestinationResolver destinationResolver,
+      DelayedSender delayedSender, LatencyDistribution latency, int maxSize, boolean blocking) {
+    this.connection = connection;
+    this.destinationResolver = destinationResolver;
+    this.delayedSender = delayedSender;
+    this.latency = latency;
+    this.maxSize = Math.max(1, maxSize);
+    this.blocking = blocking;
+    this.idleSessions = new LinkedBlockingQueue<>(this.maxSize);
+  }
+
+  HandlerSessionImpl borrow() throws InterruptedException {
+    HandlerSessionImpl session = idleSessions.poll();
+    if (session != null) {
+      return session;
+    }
+
+    if (createdSessions.incrementAndGet() <= maxSize || !blocking) {
+      log.debug("Creating handler session {}/{}", createdSessions.get(), maxSize);
+      return new HandlerSessionImpl(connection, destinationResolver, delayedSender, latency);
+    }
+
+    createdSessions.decrementAndGet();
+    return idleSessions.take();
+  }
+
+  void release(HandlerSessionImpl session) {
+    if (!idleSessions.offer(session)) {
+      // only sessions created over the limit by non blocking pool end up here
+      createdSessions.decrementAndGet();
+      session.close();
+    }
+  }
+
+  /**
+   * Closes idle sessions. Should be called when no more sessions are borrowed.
+   */
+  void close() {
+    HandlerSessionImpl session;
+    while ((session = idleSessions.poll()) != null) {
+      session.close();
+    }
+    createdSessions.set(0);
+  }
+}
@@ -0,0 +1,70 @@
+package com.github.djarosz.jmsstubber;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.activemq.broker.Broker;
+import org.apache.activemq.broker.BrokerFilter;
+import org.apache.activemq.broker.BrokerPlugin;
+import org.apache.activemq.broker.ProducerBrokerExchange;
+import org.apache.activemq.command.ActiveMQDestination;
+import org.apache.activemq.command.Message;
+
+/**
+ * Broker plugin which passes every message sent to stubbed queue to its interceptor. Message is
+ * not consumed nor resent so it keeps its id and position in the queue.
+ *
+ * <p>Interceptor receives read only copy of the message. Copy shares message content with the
+ * original so no message body is copied.
+ */
+@Slf4j
+class InterceptingBrokerPlugin implements BrokerPlugin {
+
+  private final boolean async;
+  private volatile Map<ActiveMQDestination, Consumer<javax.jms.Message>> interceptors = Collections.emptyMap();
+
+  /**
+   * Creates plugin.
+   *
+   * @param async when set message is first stored in the queue and then passed to interceptor,
+   *     otherwise interceptor is called before message is stored.
+   */
+  InterceptingBrokerPlugin(boolean async) {
+    this.async = async;
+  }
+
+  void setInterceptors(Map<ActiveMQDestination, Consumer<javax.jms.Message>> interceptors) {
+    this.interceptors = interceptors;
+  }
+
+  @Override
+  public Broker installPlugin(Broker broker) {
+    return new BrokerFilter(broker) {
+      @Override
+      public void send(ProducerBrokerExchange producerExchange, Message messageSend) throws Exception {
+        Consumer<javax.jms.Message> interceptor = interceptors.get(messageSend.getDestination());
+        if (interceptor == null) {
+          super.send(producerExchange, messageSend);
+        } else if (async) {
+          super.send(producerExchange, messageSend);
+          intercept(interceptor, messageSend);
+        } else {
+          intercept(interceptor, messageSend);
+          super.send(producerExchange, messageSend);
+        }
+      }
+    };
+  }
+
+  private void intercept(Consumer<javax.jms.Message> interceptor, Message messageSend) {
+    Message copy = messageSend.copy();
+    copy.setReadOnlyBody(true);
+    copy.setReadOnlyProperties(true);
+    try {
+      interceptor.accept((javax.jms.Message) copy);
+    } catch (RuntimeException e) {
+      log.error("[{}]: Error while intercepting message.", messageSend.getDestination(), e);
+    }
+  }
+}
@@ -1,5 +1,7 @@
 package com.github.djarosz.jmsstubber;
 
+import com.github.djarosz.jmsstubber.handler.RoutingHandler;
+import com.github.djarosz.jmsstubber.metrics.DefaultStubberMetrics;
 import com.github.djarosz.jmsstubber.util.Try;
 import com.github.djarosz.jmsstubber.util.Try.ThrowingSupplier;
 import java.lang.reflect.Constructor;
@@ -8,6 +10,7 @@ import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Properties;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -27,24 +30,50 @@ import org.apache.activemq.ActiveMQConnectionFactory;
  * <li>connector.uri.2=
  * <li>queue.handler.1=class_name,constructor_arg1,constructor_arg2
  * <li>queue.handler.2=class_name,constructor_arg1,constructor_arg2
+ * <li>queue.concurrency=1 - default number of parallel consumers per queue
+ * <li>handler.executor=consumer|virtual - threads executing handlers, see {@link HandlerExecutor}
+ * <li>stubbing.mode=resend|intercept|intercept_async|wire_tap - see {@link StubbingMode}
+ * <li>metrics.jmx=true - collects metrics and exposes them as MBeans, see {@link DefaultStubberMetrics}
+ * <li>metrics.http.port=9404 - collects metrics, JmStubberRunner serves them as text at /metrics
  *
- * <p>At least one queue definition is required
+ * <p>At least one queue or topic definition is required
  * <li>queue.logical_queue_name_a.name=A.QUEUE
  * <li>queue.logical_queue_name_a.handler.1=class_name,constructor_arg1,constructor_arg2
  * <li>queue.logical_queue_name_b.name=B.QUEUE
  * <li>queue.logical_queue_name_b.handler.1=class_name,constructor_arg1,constructor_arg2
+ *
+ * <p>Optional queue parameters
+ * <li>queue.logical_queue_name_a.concurrency=8 - number of parallel consumers
+ * <li>queue.logical_queue_name_a.ordered=true - messages with the same JMSXGroupID are handled in order
+ * <li>queue.logical_queue_name_a.max.in.flight=100 - handlers are executed asynchronously with at most
+ *     100 messages handled at once, see {@link AsyncMessageHandler}
+ * <li>queue.logical_queue_name_a.latency=lognormal,20,200 - latency of delayed sends, see
+ *     {@link LatencyDistribution#parse(String)}
+ * <li>queue.logical_queue_name_a.route.1.selector=operation = 'CREATE' - handlers of first matching route
+ *     (queue.logical_queue_name_a.route.1.handler.1=...) are executed after queue handlers, see
+ *     {@link RoutingHandler}, route can match property value instead of selector:
+ *     route.2.property=operation and route.2.value=DELETE (value is a string, numeric properties are matched
+ *     with selector, e.g. code = 42), route without condition matches every message
+ *
+ * <p>Topics are defined like queues, all queue parameters apply, see {@link TopicConfig}
+ * <li>topic.logical_topic_name.name=EVENTS
+ * <li>topic.logical_topic_name.handler.1=class_name,constructor_arg1,constructor_arg2
  */
 @Slf4j
 public class JmStubberPropertyConfigurer {
 
   private JmsStubberBuilder builder;
   private Properties configProps;
+  private DefaultStubberMetrics metrics;
 
   public JmStubberPropertyConfigurer(Properties configProps) {
     this.configProps = configProps;
     initializeBuilder();
+    addCommonQueueSettings();
+    addMetrics();
     addCommonQueueHandlers();
     addQueueDefinitions();
+    addTopicDefinitions();
   }
 
   public static JmsStubber build(Properties properties) {
@@ -67,6 +96,39 @@ public class JmStubberPropertyConfigurer {
     }
   }
 
+  private void addCommonQueueSettings() {
+    String stubbingMode = configProps.getProperty("stubbing.mode");
+    if (stubbingMode != null) {
+      builder.withStubbingMode(StubbingMode.valueOf(stubbingMode.trim().toUpperCase()));
+    }
+    String handlerExecutor = configProps.getProperty("handler.executor");
+    if (handlerExecutor != null) {
+      builder.withHandlerExecutor(HandlerExecutor.parse(handlerExecutor));
+    }
+    String defaultConcurrency = configProps.getProperty("queue.concurrency");
+    if (defaultConcurrency != null) {
+      builder.withDefaultConcurrency(Integer.parseInt(defaultConcurrency.trim()));
+    }
+  }
+
+  private void addMetrics() {
+    boolean jmx = Boolean.parseBoolean(configProps.getProperty("metrics.jmx", "false").trim());
+    if (jmx || configProps.getProperty("metrics.http.port") != null) {
+      metrics = new DefaultStubberMetrics();
+      if (jmx) {
+        metrics.withJmx();
+      }
+      builder.withMetrics(metrics);
+    }
+  }
+
+  /**
+   * Metrics collected by built stubber, empty when metrics are not configured.
+   */
+  public Optional<DefaultStubberMetrics> getMetrics() {
+    return Optional.ofNullable(metrics);
+  }
+
   private void addCommonQueueHandlers() {
     enumeratedProps("queue.handler")
         .map(this::createHandler)
@@ -77,13 +139,68 @@ public class JmStubberPropertyConfigurer {
     //language=RegExp
     Map<String, String> queues = labelToValue("^queue\\.(.+)\\.name$");
     for (Map.Entry<String, String> queueEntry : queues.entrySet()) {
-      String queueName = queueEntry.getValue();
-      MessageHandler[] handlers = enumeratedProps("queue." + queueEntry.getKey() + ".handler")
+      String queuePrefix = "queue." + queueEntry.getKey();
+      QueueConfig queueConfig = new QueueConfig(queueEntry.getValue(), createHandlers(queuePrefix));
+      builder.withQueue(configure(queueConfig, queuePrefix));
+    }
+  }
+
+  private void addTopicDefinitions() {
+    //language=RegExp
+    Map<String, String> topics = labelToValue("^topic\\.(.+)\\.name$");
+    for (Map.Entry<String, String> topicEntry : topics.entrySet()) {
+      String topicPrefix = "topic." + topicEntry.getKey();
+      TopicConfig topicConfig = new TopicConfig(topicEntry.getValue(), createHandlers(topicPrefix));
+      builder.withTopic(configure(topicConfig, topicPrefix));
+    }
+  }
+
+  private MessageHandler[] createHandlers(String destinationPrefix) {
+    Stream<MessageHandler> handlers = enumeratedProps(destinationPrefix + ".handler").map(this::createHandler);
+    RoutingHandler routingHandler = createRoutingHandler(destinationPrefix + ".route");
+    return (routingHandler == null ? handlers : Stream.concat(handlers, Stream.of(routingHandler)))
+        .toArray(MessageHandler[]::new);
+  }
+
+  /**
+   * Builds routing handler from routes: prefix.N.selector or prefix.N.property with prefix.N.value and route
+   * handlers prefix.N.handler.M. Property value is matched as string. Route without condition matches every
+   * message. Returns null without routes.
+   */
+  private RoutingHandler createRoutingHandler(String routePrefix) {
+    RoutingHandler.Builder routing = RoutingHandler.builder();
+    boolean routed = false;
+    for (int i = 1; i < 100; i++) {
+      String prefix = routePrefix + "." + i;
+      MessageHandler[] handlers = enumeratedProps(prefix + ".handler")
           .map(this::createHandler)
           .toArray(MessageHandler[]::new);
+      String selector = configProps.getProperty(prefix + ".selector");
+      String property = configProps.getProperty(prefix + ".property");
+      if (selector != null) {
+        routing.route(selector.trim(), handlers);
+      } else if (property != null) {
+        routing.routeByProperty(property.trim(), configProps.getProperty(prefix + ".value", "").trim(), handlers);
+      } else if (handlers.length > 0) {
+        routing.otherwise(handlers);
+      } else {
+        continue;
+      }
+      routed = true;
+    }
+    return routed ? routing.build() : null;
+  }
 
-      builder.withQueue(queueName, handlers);
+  private <T extends QueueConfig> T configure(T config, String destinationPrefix) {
+    config
+        .withConcurrency(Integer.parseInt(configProps.getProperty(destinationPrefix + ".concurrency", "0").trim()))
+        .withOrdered(Boolean.parseBoolean(configProps.getProperty(destinationPrefix + ".ordered", "false").trim()))
+        .withMaxInFlight(Integer.parseInt(configProps.getProperty(destinationPrefix + ".max.in.flight", "0").trim()));
+    String latency = configProps.getProperty(destinationPrefix + ".latency");
+    if (latency != null) {
+      config.withLatency(LatencyDistribution.parse(latency));
     }
+    return config;
   }
 
   // TODO add more types and error reporting
@@ -1,11 +1,21 @@
 package com.github.djarosz.jmsstubber;
 
+import com.github.djarosz.jmsstubber.handler.RecordingReplayer;
+import com.github.djarosz.jmsstubber.metrics.MetricsHttpServer;
 import java.io.File;
 import java.io.FileReader;
+import java.util.Optional;
 import java.util.Properties;
 
 /**
  * Run JmsStubber as a daemon.
+ *
+ * <p>Besides stubber configuration (see {@link JmStubberPropertyConfigurer}) these properties are supported
+ * <li>replay.directory= - replays messages recorded by RecordingHandler once stubber is started
+ * <li>replay.speed=1 - replay speed relative to recorded pace, 0 means as fast as possible
+ * <li>load.queue.label.rate=5000, load.queue.label.template= - generates load, prints latency and throughput
+ *     and stops the stubber, see {@link LoadGenerator}
+ * <li>metrics.http.port=9404 - serves stubber metrics as text at http://host:port/metrics
  */
 public class JmStubberRunner {
 
@@ -19,16 +29,44 @@ public class JmStubberRunner {
 
     Properties configuration = new Properties();
     configuration.load(new FileReader(new File(args[0])));
-    JmsStubber jmsStubber = JmStubberPropertyConfigurer.build(configuration);
+    // load configuration is checked before anything is started
+    final Optional<LoadGenerator> loadGenerator = LoadGenerator.fromProperties(configuration);
+    JmStubberPropertyConfigurer configurer = new JmStubberPropertyConfigurer(configuration);
+    JmsStubber jmsStubber = configurer.getJmsStubber();
     jmsStubber.start();
 
+    String metricsPort = configuration.getProperty("metrics.http.port");
+    MetricsHttpServer metricsServer = metricsPort == null
+        ? null
+        : new MetricsHttpServer(configurer.getMetrics().get(), Integer.parseInt(metricsPort.trim()));
+
     System.out.println("Started.");
 
-    waitOnShutdownAndExecute(() -> {
+    String replayDirectory = configuration.getProperty("replay.directory");
+    if (replayDirectory != null) {
+      System.out.println("Replaying recorded messages from " + replayDirectory);
+      new RecordingReplayer(new File(replayDirectory))
+          .withSpeed(Double.parseDouble(configuration.getProperty("replay.speed", "1")))
+          .replay(jmsStubber.getConnectionFactory());
+    }
+
+    Runnable stop = () -> {
       System.out.println("Stopping...");
+      if (metricsServer != null) {
+        metricsServer.close();
+      }
       jmsStubber.stop();
       System.out.println("Stopped.");
-    });
+    };
+
+    if (loadGenerator.isPresent()) {
+      System.out.println("Generating load...");
+      loadGenerator.get().run(jmsStubber.getConnectionFactory()).forEach(System.out::println);
+      stop.run();
+      System.exit(0);
+    }
+
+    waitOnShutdownAndExecute(stop);
   }
 
   private static void waitOnShutdownAndExecute(Runnable onShutdownHandler)
@@ -1,5 +1,6 @@
 package com.github.djarosz.jmsstubber;
 
+import com.github.djarosz.jmsstubber.metrics.StubberMetrics;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
@@ -68,7 +69,31 @@ public class JmsStubberBuilder {
   }
 
   public JmsStubberBuilder withQueue(String name, MessageHandler... handlers) {
-    configBuilder.addQueue(new QueueConfig(name, handlers));
+    return withQueue(new QueueConfig(name, handlers));
+  }
+
+  public JmsStubberBuilder withQueue(QueueConfig queueConfig) {
+    configBuilder.addQueue(queueConfig);
+    return this;
+  }
+
+  public JmsStubberBuilder withTopic(String name, MessageHandler... handlers) {
+    return withTopic(new TopicConfig(name, handlers));
+  }
+
+  /**
+   * Stubs topic, see {@link TopicConfig}. Common message handlers are executed for topics too.
+   */
+  public JmsStubberBuilder withTopic(TopicConfig topicConfig) {
+    configBuilder.addTopic(topicConfig);
+    return this;
+  }
+
+  /**
+   * Sets number of parallel consumers for queues which do not define their own concurrency.
+   */
+  public JmsStubberBuilder withDefaultConcurrency(int concurrency) {
+    configBuilder.defaultConcurrency(concurrency);
     return this;
   }
 
@@ -83,6 +108,32 @@ public class JmsStubberBuilder {
     return this;
   }
 
+  /**
+   * Sets how stubber gets hold of messages sent to stubbed queues. Interception modes require embedded broker.
+   */
+  public JmsStubberBuilder withStubbingMode(StubbingMode stubbingMode) {
+    configBuilder.stubbingMode(stubbingMode);
+    return this;
+  }
+
+  /**
+   * Sets executor of handler chains, e.g. {@link HandlerExecutor#virtualThreads()}. By default handlers are
+   * executed by consumer threads.
+   */
+  public JmsStubberBuilder withHandlerExecutor(HandlerExecutor handlerExecutor) {
+    configBuilder.handlerExecutor(handlerExecutor);
+    return this;
+  }
+
+  /**
+   * Sets metrics receiving measurements of message handling, see
+   * {@link com.github.djarosz.jmsstubber.metrics.DefaultStubberMetrics}.
+   */
+  public JmsStubberBuilder withMetrics(StubberMetrics metrics) {
+    configBuilder.metrics(metrics);
+    return this;
+  }
+
   @SneakyThrows
   public JmsStubber build() {
     JmsStubber jmsStubber = embeddedBrokerService != null
@@ -1,20 +1,101 @@
 package com.github.djarosz.jmsstubber;
 
+import static com.github.djarosz.jmsstubber.DefaultJmsStubber.wireTapQueueName;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import javax.annotation.PostConstruct;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.broker.BrokerPlugin;
 import org.apache.activemq.broker.BrokerService;
+import org.apache.activemq.broker.region.DestinationInterceptor;
+import org.apache.activemq.broker.region.virtual.CompositeQueue;
+import org.apache.activemq.broker.region.virtual.VirtualDestination;
+import org.apache.activemq.broker.region.virtual.VirtualDestinationInterceptor;
+import org.apache.activemq.broker.region.virtual.VirtualTopic;
+import org.apache.activemq.command.ActiveMQQueue;
 
 @Slf4j
 public class JmsStubberWithEmbeddedBroker extends DefaultJmsStubber {
 
   private BrokerService broker;
 
+  /**
+   * Creates stubber of given broker, intercepting broker plugin is installed when stubbing mode requires it.
+   */
   @SneakyThrows
   public JmsStubberWithEmbeddedBroker(BrokerService broker, DestinationConfig config) {
     super(new ActiveMQConnectionFactory(broker.getVmConnectorURI()), config);
     this.broker = broker;
+    switch (config.getStubbingMode()) {
+      case INTERCEPT:
+        installInterceptingPlugin(false);
+        break;
+      case INTERCEPT_ASYNC:
+        installInterceptingPlugin(true);
+        break;
+      case WIRE_TAP:
+        installVirtualDestinations(config, true);
+        break;
+      default:
+        if (!config.getTopics().isEmpty()) {
+          installVirtualDestinations(config, false);
+        }
+        break;
+    }
+  }
+
+  /**
+   * Forwards copy of every message published to stubbed topic to topic consumer queue and, when wire tap is
+   * set, copy of every message sent to stubbed queue to its wire tap queue while keeping the message in the
+   * original queue.
+   */
+  private void installVirtualDestinations(DestinationConfig config, boolean wireTap) {
+    List<VirtualDestination> virtualDestinations = new ArrayList<>();
+    // keep broker default virtual topic support which is lost when destination interceptors are set
+    VirtualTopic defaultVirtualTopic = new VirtualTopic();
+    defaultVirtualTopic.setName(TopicConfig.DEFAULT_VIRTUAL_TOPIC_PREFIX + ">");
+    virtualDestinations.add(defaultVirtualTopic);
+    for (TopicConfig topicConfig : config.getTopics()) {
+      if (!topicConfig.isDefaultVirtualTopic()) {
+        VirtualTopic topic = new VirtualTopic();
+        topic.setName(topicConfig.getName());
+        topic.setPrefix(TopicConfig.CONSUMER_QUEUE_PREFIX);
+        virtualDestinations.add(topic);
+      }
+    }
+    if (wireTap) {
+      for (QueueConfig queueConfig : config.getQueues()) {
+        CompositeQueue wireTapQueue = new CompositeQueue();
+        wireTapQueue.setName(queueConfig.getName());
+        wireTapQueue.setForwardOnly(false);
+        wireTapQueue.setForwardTo(
+            Collections.singletonList(new ActiveMQQueue(wireTapQueueName(queueConfig.getName()))));
+        virtualDestinations.add(wireTapQueue);
+      }
+    }
+
+    VirtualDestinationInterceptor interceptor = new VirtualDestinationInterceptor();
+    interceptor.setVirtualDestinations(virtualDestinations.toArray(new VirtualDestination[0]));
+    DestinationInterceptor[] interceptors = broker.getDestinationInterceptors() == null
+        ? new DestinationInterceptor[0]
+        : broker.getDestinationInterceptors();
+    interceptors = Arrays.copyOf(interceptors, interceptors.length + 1);
+    interceptors[interceptors.length - 1] = interceptor;
+    broker.setDestinationInterceptors(interceptors);
+  }
+
+  private void installInterceptingPlugin(boolean async) {
+    InterceptingBrokerPlugin plugin = new InterceptingBrokerPlugin(async);
+    BrokerPlugin[] plugins = broker.getPlugins() == null ? new BrokerPlugin[0] : broker.getPlugins();
+    plugins = Arrays.copyOf(plugins, plugins.length + 1);
+    plugins[plugins.length - 1] = plugin;
+    broker.setPlugins(plugins);
+    setInterceptingBrokerPlugin(plugin);
   }
 
   @Override
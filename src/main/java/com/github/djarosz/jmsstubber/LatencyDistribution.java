@@ -0,0 +1,102 @@
+package com.github.djarosz.jmsstubber;
+
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+/**
+ * Distribution of simulated backend latency used by {@link HandlerSession#sendLater(String, String)}.
+ */
+@FunctionalInterface
+public interface LatencyDistribution {
+
+  LatencyDistribution NONE = () -> 0;
+
+  /**
+   * Returns next random latency in nanoseconds.
+   */
+  long nextNanos();
+
+  static LatencyDistribution fixed(long latency, TimeUnit unit) {
+    long nanos = unit.toNanos(latency);
+    return () -> nanos;
+  }
+
+  /**
+   * Latency uniformly distributed between min and max.
+   */
+  static LatencyDistribution uniform(long min, long max, TimeUnit unit) {
+    long minNanos = unit.toNanos(min);
+    long maxNanos = unit.toNanos(max);
+    return () -> minNanos + (long) (ThreadLocalRandom.current().nextDouble() * (maxNanos - minNanos));
+  }
+
+  /**
+   * Log-normal distribution, typical for service response times, defined by its median and 99th percentile.
+   */
+  static LatencyDistribution logNormal(long median, long p99, TimeUnit unit) {
+    // 99th percentile of standard normal distribution
+    double z99 = 2.326348;
+    double mu = Math.log(unit.toNanos(median));
+    double sigma = Math.max(0, (Math.log(unit.toNanos(p99)) - mu) / z99);
+    return () -> (long) Math.exp(mu + sigma * ThreadLocalRandom.current().nextGaussian());
+  }
+
+  /**
+   * Replays latency measured in production given as percentile (0-100) to latency map. Latencies between
+   * percentiles are interpolated linearly.
+   */
+  static LatencyDistribution percentiles(Map<Double, Long> latencyByPercentile, TimeUnit unit) {
+    if (latencyByPercentile.isEmpty()) {
+      throw new IllegalArgumentException("At least one percentile is required");
+    }
+    NavigableMap<Double, Long> nanosByPercentile = new TreeMap<>();
+    latencyByPercentile.forEach((percentile, latency) -> nanosByPercentile.put(percentile, unit.toNanos(latency)));
+    return () -> {
+      double percentile = ThreadLocalRandom.current().nextDouble() * 100;
+      Map.Entry<Double, Long> lower = nanosByPercentile.floorEntry(percentile);
+      Map.Entry<Double, Long> upper = nanosByPercentile.ceilingEntry(percentile);
+      if (lower == null) {
+        return upper.getValue();
+      }
+      if (upper == null || upper.getKey().equals(lower.getKey())) {
+        return lower.getValue();
+      }
+      double fraction = (percentile - lower.getKey()) / (upper.getKey() - lower.getKey());
+      return lower.getValue() + (long) (fraction * (upper.getValue() - lower.getValue()));
+    };
+  }
+
+  /**
+   * Parses distribution description, latencies are in milliseconds
+   * <li>fixed,50
+   * <li>uniform,10,100 - min, max
+   * <li>lognormal,20,200 - median, 99th percentile
+   * <li>percentiles,50:10,99:80,99.9:200,100:500 - percentile:latency pairs
+   */
+  static LatencyDistribution parse(String description) {
+    String[] args = description.trim().split("\\s*,\\s*");
+    ToLongFunction<String> micros = millis -> (long) (Double.parseDouble(millis) * 1000);
+    switch (args[0].toLowerCase()) {
+      case "fixed":
+        return fixed(micros.applyAsLong(args[1]), TimeUnit.MICROSECONDS);
+      case "uniform":
+        return uniform(micros.applyAsLong(args[1]), micros.applyAsLong(args[2]), TimeUnit.MICROSECONDS);
+      case "lognormal":
+        return logNormal(micros.applyAsLong(args[1]), micros.applyAsLong(args[2]), TimeUnit.MICROSECONDS);
+      case "percentiles":
+        Map<Double, Long> latencyByPercentile = new TreeMap<>();
+        for (int i = 1; i < args.length; i++) {
+          String[] percentileAndLatency = args[i].split(":");
+          latencyByPercentile.put(Double.parseDouble(percentileAndLatency[0]),
+              micros.applyAsLong(percentileAndLatency[1]));
+        }
+        return percentiles(latencyByPercentile, TimeUnit.MICROSECONDS);
+      default:
+        throw new IllegalArgumentException("Unknown latency distribution: " + description);
+    }
+  }
+}
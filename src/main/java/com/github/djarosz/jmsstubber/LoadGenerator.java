@@ -0,0 +1,316 @@
+package com.github.djarosz.jmsstubber;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.DeliveryMode;
+import javax.jms.Destination;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageListener;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.apache.activemq.command.ActiveMQDestination;
+
+/**
+ * Sends messages to stubbed queues and measures round trip latency through their handler chains.
+ *
+ * <p>Message is completed when message with the same JMSCorrelationID is received from reply destination. Without
+ * reply destination completed is the copy of processed message resent to the original queue in
+ * {@link StubbingMode#RESEND} mode. Other modes do not resend messages, so they require reply destination.
+ *
+ * <p>With rate set messages are sent at fixed rate regardless of completions (open loop) and latency is measured
+ * from the time message was scheduled to be sent, so stalls of the sender are not hidden. Without rate next
+ * message is sent as soon as one of outstanding messages completes (closed loop).
+ *
+ * <p>Properties, <i>label</i> is usually logical queue name used in {@link JmStubberPropertyConfigurer}
+ * <li>load.queue.label.name=A.QUEUE - destination to send to, defaults to queue.label.name
+ * <li>load.queue.label.template=text - text message body, ${sequence} is replaced with message number
+ * <li>load.queue.label.rate=5000 - messages per second, missing or 0 for closed loop
+ * <li>load.queue.label.outstanding=1 - max messages waiting for completion in closed loop
+ * <li>load.queue.label.reply=B.QUEUE - destination where handlers send responses with request JMSCorrelationID
+ * <li>load.duration=60 - seconds of sending
+ * <li>load.warmup=0 - seconds at the beginning not included in results
+ */
+@Slf4j
+public class LoadGenerator {
+
+  static final String SEQUENCE_PLACEHOLDER = "${sequence}";
+  private static final String DEFAULT_TEMPLATE = "load message " + SEQUENCE_PLACEHOLDER;
+  private static final String PROCESSED_SELECTOR = JmsStubber.STUBBER_PROCESSED_HEADER + " IS NOT NULL";
+  private static final long DRAIN_TIMEOUT_MS = 10_000;
+
+  private final List<QueueLoad> loads;
+  private final long durationNanos;
+  private final long warmupNanos;
+
+  /**
+   * Creates generator sending given loads for duration, measurements start after warmup.
+   */
+  public LoadGenerator(List<QueueLoad> loads, long duration, long warmup, TimeUnit unit) {
+    this.loads = loads;
+    this.durationNanos = unit.toNanos(duration);
+    this.warmupNanos = unit.toNanos(warmup);
+  }
+
+  /**
+   * Creates generator from <i>load.*</i> properties, empty when no load is configured. Fails when load without
+   * reply destination is configured and <i>stubbing.mode</i> property is other than resend.
+   */
+  public static Optional<LoadGenerator> fromProperties(Properties properties) {
+    Set<String> labels = new TreeSet<>();
+    Pattern pattern = Pattern.compile("^load\\.queue\\.(.+)\\.(name|template|rate|outstanding|reply)$");
+    for (Enumeration<?> names = properties.propertyNames(); names.hasMoreElements(); ) {
+      Matcher matcher = pattern.matcher((String) names.nextElement());
+      if (matcher.matches()) {
+        labels.add(matcher.group(1));
+      }
+    }
+    if (labels.isEmpty()) {
+      return Optional.empty();
+    }
+
+    StubbingMode stubbingMode = StubbingMode.valueOf(
+        properties.getProperty("stubbing.mode", StubbingMode.RESEND.name()).trim().toUpperCase());
+    List<QueueLoad> loads = new ArrayList<>();
+    for (String label : labels) {
+      String prefix = "load.queue." + label + ".";
+      if (properties.getProperty(prefix + "reply") == null && stubbingMode != StubbingMode.RESEND) {
+        throw new IllegalStateException(prefix + "reply is required in " + stubbingMode + " stubbing mode, "
+            + "messages are not resent so they could not be completed");
+      }
+      loads.add(QueueLoad.builder()
+          .label(label)
+          .destination(properties.getProperty(prefix + "name",
+              properties.getProperty("queue." + label + ".name", label)).trim())
+          .template(properties.getProperty(prefix + "template", DEFAULT_TEMPLATE))
+          .rate(Double.parseDouble(properties.getProperty(prefix + "rate", "0").trim()))
+          .outstanding(Integer.parseInt(properties.getProperty(prefix + "outstanding", "1").trim()))
+          .replyDestination(Optional.ofNullable(properties.getProperty(prefix + "reply")).map(String::trim)
+              .orElse(null))
+          .build());
+    }
+    return Optional.of(new LoadGenerator(loads,
+        Long.parseLong(properties.getProperty("load.duration", "60").trim()),
+        Long.parseLong(properties.getProperty("load.warmup", "0").trim()),
+        TimeUnit.SECONDS));
+  }
+
+  /**
+   * Generates load on all configured queues in parallel and returns results once all messages are completed
+   * or given up.
+   */
+  @SneakyThrows
+  public List<LoadReport> run(ConnectionFactory connectionFactory) {
+    Connection connection = connectionFactory.createConnection();
+    ExecutorService executor = Executors.newFixedThreadPool(loads.size());
+    try {
+      connection.start();
+      List<Future<LoadReport>> results = new ArrayList<>();
+      for (QueueLoad load : loads) {
+        results.add(executor.submit(new LoadRun(connection, load)));
+      }
+      List<LoadReport> reports = new ArrayList<>();
+      for (Future<LoadReport> result : results) {
+        reports.add(result.get());
+      }
+      return reports;
+    } finally {
+      executor.shutdownNow();
+      connection.close();
+    }
+  }
+
+  private static Destination destination(Session session, String name) throws Exception {
+    return name.contains("://")
+        ? ActiveMQDestination.createDestination(name, ActiveMQDestination.QUEUE_TYPE)
+        : session.createQueue(name);
+  }
+
+  /**
+   * Load sent to single destination.
+   */
+  @Getter
+  @Builder
+  public static class QueueLoad {
+    private final String label;
+    private final String destination;
+    @Builder.Default
+    private final String template = DEFAULT_TEMPLATE;
+    private final double rate;
+    @Builder.Default
+    private final int outstanding = 1;
+    private final String replyDestination;
+  }
+
+  /**
+   * Results of load sent to single destination. Latencies are in nanoseconds.
+   */
+  @Getter
+  @RequiredArgsConstructor
+  public static class LoadReport {
+    private final String label;
+    private final long sent;
+    private final long completed;
+    private final long lost;
+    private final long measuredNanos;
+    private final Histogram latency;
+
+    /**
+     * Completed messages per second excluding warmup.
+     */
+    public double getThroughput() {
+      return measuredNanos == 0 ? 0 : latency.getTotalCount() * (double) TimeUnit.SECONDS.toNanos(1) / measuredNanos;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s: sent=%d, completed=%d, lost=%d, throughput=%.1f msg/s, "
+              + "latency p50=%.3f ms, p99=%.3f ms, p999=%.3f ms, max=%.3f ms",
+          label, sent, completed, lost, getThroughput(), millis(latency.getValueAtPercentile(50)),
+          millis(latency.getValueAtPercentile(99)), millis(latency.getValueAtPercentile(99.9)),
+          millis(latency.getMaxValue()));
+    }
+
+    private static double millis(long nanos) {
+      return nanos / 1_000_000d;
+    }
+  }
+
+  private class LoadRun implements Callable<LoadReport>, MessageListener {
+    private final QueueLoad load;
+    private final String correlationPrefix;
+    private final Session producerSession;
+    private final Session consumerSession;
+    private final ConcurrentMap<String, Long> pending = new ConcurrentHashMap<>();
+    private final Recorder recorder = new Recorder(3);
+    private final LongAdder completed = new LongAdder();
+    private final Semaphore outstanding;
+    private volatile long measureFrom = Long.MAX_VALUE;
+    private long sent;
+
+    LoadRun(Connection connection, QueueLoad load) throws Exception {
+      this.load = load;
+      this.correlationPrefix = "load-" + load.getLabel() + "-";
+      this.producerSession = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+      this.consumerSession = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+      this.outstanding = new Semaphore(Math.max(1, load.getOutstanding()));
+    }
+
+    @Override
+    public LoadReport call() throws Exception {
+      Destination destination = destination(producerSession, load.getDestination());
+      String selector = "JMSCorrelationID LIKE '" + correlationPrefix + "%'";
+      MessageConsumer consumer = load.getReplyDestination() == null
+          ? consumerSession.createConsumer(destination, PROCESSED_SELECTOR + " AND " + selector)
+          : consumerSession.createConsumer(destination(consumerSession, load.getReplyDestination()), selector);
+      consumer.setMessageListener(this);
+      MessageProducer producer = producerSession.createProducer(destination);
+      producer.setDeliveryMode(DeliveryMode.NON_PERSISTENT);
+
+      log.info("Sending load to {} for {} s", load.getDestination(), TimeUnit.NANOSECONDS.toSeconds(durationNanos));
+      long startedAt = System.nanoTime();
+      measureFrom = startedAt + warmupNanos;
+      long endAt = startedAt + durationNanos;
+      if (load.getRate() > 0) {
+        sendOpenLoop(producer, startedAt, endAt);
+      } else {
+        sendClosedLoop(producer, endAt);
+      }
+
+      long drainUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DRAIN_TIMEOUT_MS);
+      while (!pending.isEmpty() && System.nanoTime() < drainUntil) {
+        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+      }
+      consumer.close();
+      producerSession.close();
+      consumerSession.close();
+
+      // late completion may still arrive, lost is derived from the same count so sent = completed + lost
+      long completedCount = completed.sum();
+      return new LoadReport(load.getLabel(), sent, completedCount, sent - completedCount,
+          Math.max(0, endAt - measureFrom), recorder.getIntervalHistogram());
+    }
+
+    private void sendOpenLoop(MessageProducer producer, long startedAt, long endAt) throws Exception {
+      double nanosPerMessage = TimeUnit.SECONDS.toNanos(1) / load.getRate();
+      for (long sequence = 0; ; sequence++) {
+        long scheduledAt = startedAt + (long) (sequence * nanosPerMessage);
+        if (scheduledAt >= endAt) {
+          return;
+        }
+        long delay;
+        while ((delay = scheduledAt - System.nanoTime()) > 0) {
+          LockSupport.parkNanos(delay);
+        }
+        send(producer, sequence, scheduledAt);
+      }
+    }
+
+    private void sendClosedLoop(MessageProducer producer, long endAt) throws Exception {
+      for (long sequence = 0; ; sequence++) {
+        long remaining = endAt - System.nanoTime();
+        if (remaining <= 0 || !outstanding.tryAcquire(remaining, TimeUnit.NANOSECONDS)) {
+          return;
+        }
+        send(producer, sequence, System.nanoTime());
+      }
+    }
+
+    private void send(MessageProducer producer, long sequence, long sentAt) throws Exception {
+      String sequenceText = Long.toString(sequence);
+      TextMessage message = producerSession.createTextMessage(
+          load.getTemplate().replace(SEQUENCE_PLACEHOLDER, sequenceText));
+      String correlationId = correlationPrefix + sequenceText;
+      message.setJMSCorrelationID(correlationId);
+      pending.put(correlationId, sentAt);
+      producer.send(message);
+      sent++;
+    }
+
+    @Override
+    @SneakyThrows
+    public void onMessage(Message message) {
+      long receivedAt = System.nanoTime();
+      // counted before removal from pending, so once pending is drained completed count is final
+      completed.increment();
+      Long sentAt = pending.remove(message.getJMSCorrelationID());
+      if (sentAt == null) {
+        completed.decrement();
+        return;
+      }
+      if (sentAt >= measureFrom) {
+        recorder.recordValue(receivedAt - sentAt);
+      }
+      if (load.getRate() <= 0) {
+        outstanding.release();
+      }
+    }
+  }
+}
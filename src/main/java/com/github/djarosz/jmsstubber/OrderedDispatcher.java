@@ -0,0 +1,163 @@
+package com.github.djarosz.jmsstubber;
+
+import com.github.djarosz.jmsstubber.metrics.QueueMetrics;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import javax.jms.Message;
+import javax.jms.MessageListener;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Dispatches messages to a fixed number of single threaded lanes. Messages with the same
+ * JMSXGroupID always go to the same lane so they are handled in the order they were received.
+ * Messages without group id are spread over lanes in round robin fashion.
+ *
+ * <p>Every lane has bounded backlog. Dispatcher of consumed messages acknowledges message once it is
+ * processed. Consumer should use individual acknowledge and prefetch not larger than {@link #LANE_BACKLOG},
+ * so messages waiting in lanes are redelivered when stubber stops or crashes and consumer is never blocked
+ * by full lane.
+ *
+ * <p>Dispatcher of intercepted messages is called by broker transport thread, which must not wait for lanes.
+ * Message which does not fit into full lane is not handled by stubber, it is only reported to
+ * {@link QueueMetrics#dropped()} and logged. Broker has already stored it, so it is still delivered to real
+ * consumers.
+ */
+@Slf4j
+class OrderedDispatcher implements MessageListener {
+
+  static final String GROUP_ID_PROPERTY = "JMSXGroupID";
+  static final int LANE_BACKLOG = 1000;
+  private static final long POLL_TIMEOUT_MS = 100;
+
+  private final List<Lane> lanes = new ArrayList<>();
+  private final AtomicInteger roundRobin = new AtomicInteger();
+  private final AtomicLong dropped = new AtomicLong();
+  private final boolean consumed;
+  private final QueueMetrics metrics;
+  private volatile boolean stopped;
+
+  /**
+   * Creates dispatcher and starts its lanes.
+   *
+   * @param consumed true when messages are consumed with individual acknowledge, false when they are intercepted
+   * @param metrics metrics of handled queue, receive dropped intercepted messages
+   */
+  OrderedDispatcher(String name, int laneCount, boolean consumed, QueueMetrics metrics,
+      Consumer<Message> messageProcessor) {
+    this.consumed = consumed;
+    this.metrics = metrics;
+    for (int i = 0; i < laneCount; i++) {
+      Lane lane = new Lane(name + "-lane-" + i, consumed, messageProcessor);
+      lanes.add(lane);
+      lane.start();
+    }
+  }
+
+  @Override
+  @SneakyThrows
+  public void onMessage(Message message) {
+    if (stopped) {
+      // not acknowledged message is redelivered once consumer session is closed
+      return;
+    }
+    String groupId = message.getStringProperty(GROUP_ID_PROPERTY);
+    int laneIndex = groupId == null
+        ? roundRobin.getAndIncrement()
+        : groupId.hashCode();
+    Lane lane = lanes.get(Math.floorMod(laneIndex, lanes.size()));
+    if (consumed) {
+      lane.backlog.put(message);
+    } else if (!lane.backlog.offer(message)) {
+      metrics.dropped();
+      long droppedCount = dropped.incrementAndGet();
+      if (droppedCount == 1 || droppedCount % LANE_BACKLOG == 0) {
+        log.warn("Backlog of {} is full, {} intercepted messages were not handled so far", lane.getName(),
+            droppedCount);
+      }
+    }
+  }
+
+  /**
+   * Number of intercepted messages which were not handled because lane backlog was full.
+   */
+  long dropped() {
+    return dropped.get();
+  }
+
+  /**
+   * Number of dispatched messages waiting in lanes.
+   */
+  int backlog() {
+    int backlog = 0;
+    for (Lane lane : lanes) {
+      backlog += lane.backlog.size();
+    }
+    return backlog;
+  }
+
+  /**
+   * Stops accepting messages, waits until already dispatched messages are handled and stops lane threads.
+   * Has to be called before consumer session is closed, so handled messages can be acknowledged.
+   */
+  void stop() throws InterruptedException {
+    stopped = true;
+    for (Lane lane : lanes) {
+      lane.running = false;
+    }
+    for (Lane lane : lanes) {
+      lane.join();
+    }
+  }
+
+  private static class Lane extends Thread {
+
+    private final BlockingQueue<Message> backlog = new ArrayBlockingQueue<>(LANE_BACKLOG);
+    private final boolean acknowledge;
+    private final Consumer<Message> messageProcessor;
+    private volatile boolean running = true;
+
+    Lane(String name, boolean acknowledge, Consumer<Message> messageProcessor) {
+      super(name);
+      setDaemon(true);
+      this.acknowledge = acknowledge;
+      this.messageProcessor = messageProcessor;
+    }
+
+    @Override
+    public void run() {
+      while (running || !backlog.isEmpty()) {
+        Message message;
+        try {
+          message = backlog.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+          return;
+        }
+        if (message != null) {
+          process(message);
+        }
+      }
+    }
+
+    private void process(Message message) {
+      try {
+        messageProcessor.accept(message);
+      } catch (RuntimeException e) {
+        log.error("Error while processing message in {}", getName(), e);
+      }
+      if (acknowledge) {
+        try {
+          message.acknowledge();
+        } catch (Exception e) {
+          log.warn("Could not acknowledge message in {}", getName(), e);
+        }
+      }
+    }
+  }
+}
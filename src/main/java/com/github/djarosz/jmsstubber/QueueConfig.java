@@ -5,15 +5,89 @@ import java.util.Collections;
 import java.util.List;
 import lombok.Getter;
 import lombok.ToString;
+import org.apache.activemq.command.ActiveMQQueue;
 
 @Getter
 @ToString
 public class QueueConfig {
+
+  /**
+   * Queue name. Queue name can be ActiveMQ wildcard (e.g. <i>ORDERS.&gt;</i>, <i>*.REQUEST</i>), handlers are
+   * then attached to every matching queue when it is created on the broker, see {@link #isWildcard()}.
+   */
   String name;
   List<MessageHandler> messageHandlers;
 
+  /**
+   * Number of consumers (sessions) handling messages from this queue in parallel.
+   * Value lower than 1 means that {@link DestinationConfig#getDefaultConcurrency()} is used.
+   */
+  int concurrency;
+
+  /**
+   * When set messages with the same JMSXGroupID are handled one by one in the order they were received.
+   */
+  boolean ordered;
+
+  /**
+   * When set handlers of this queue are executed asynchronously, see {@link AsyncMessageHandler}, and at most
+   * this number of messages is handled at once. Note that in {@link StubbingMode#RESEND} mode broker dispatches
+   * messages to other consumers of the queue while stubber is at the limit.
+   */
+  int maxInFlight;
+
+  /**
+   * Latency of delayed sends done by handlers of this queue with {@link HandlerSession#sendLater(String, String)}.
+   */
+  LatencyDistribution latency = LatencyDistribution.NONE;
+
   public QueueConfig(String queueName, MessageHandler... handlers) {
     this.name = queueName;
     this.messageHandlers = handlers == null ? Collections.emptyList() : Arrays.asList(handlers);
   }
+
+  /**
+   * Returns true when name is a wildcard. Wildcard queues are not created at start. Every queue matching the
+   * wildcard gets its own consumers, with settings of this config, when destination advisory announces it
+   * (e.g. on first message sent). Requires {@link StubbingMode#RESEND} mode.
+   *
+   * <p>Advisory is handled asynchronously, messages sent before consumers are attached wait in the queue. When
+   * other consumers already listen on matching queue these first messages may be delivered to them unstubbed,
+   * use exact queue name for such queues. Only first {@value DefaultJmsStubber#MAX_WILDCARD_QUEUE_METRICS}
+   * matching queues get their own metrics, further ones are reported under wildcard name.
+   */
+  public boolean isWildcard() {
+    return new ActiveMQQueue(name).isPattern();
+  }
+
+  /**
+   * Config of single queue matching this wildcard config.
+   */
+  QueueConfig copyFor(String queueName) {
+    return new QueueConfig(queueName, messageHandlers.toArray(new MessageHandler[0]))
+        .withConcurrency(concurrency)
+        .withOrdered(ordered)
+        .withMaxInFlight(maxInFlight)
+        .withLatency(latency);
+  }
+
+  public QueueConfig withConcurrency(int concurrency) {
+    this.concurrency = concurrency;
+    return this;
+  }
+
+  public QueueConfig withOrdered(boolean ordered) {
+    this.ordered = ordered;
+    return this;
+  }
+
+  public QueueConfig withMaxInFlight(int maxInFlight) {
+    this.maxInFlight = maxInFlight;
+    return this;
+  }
+
+  public QueueConfig withLatency(LatencyDistribution latency) {
+    this.latency = latency;
+    return this;
+  }
 }
@@ -0,0 +1,59 @@
+package com.github.djarosz.jmsstubber;
+
+import com.github.djarosz.jmsstubber.metrics.QueueMetrics;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongSupplier;
+
+/**
+ * Metrics shared by handler chains of several queues, e.g. queues matching wildcard queue config over
+ * metrics limit. Measurements are reported to single delegate, backlog is the sum of backlogs of all queues.
+ */
+class SharedQueueMetrics implements QueueMetrics {
+
+  private final QueueMetrics delegate;
+  private final List<LongSupplier> backlogs = new CopyOnWriteArrayList<>();
+
+  SharedQueueMetrics(QueueMetrics delegate) {
+    this.delegate = delegate;
+    delegate.backlogGauge(this::backlog);
+  }
+
+  @Override
+  public void chainStarted() {
+    delegate.chainStarted();
+  }
+
+  @Override
+  public void chainFinished(long nanos) {
+    delegate.chainFinished(nanos);
+  }
+
+  @Override
+  public void handlerFinished(int handlerIndex, long nanos, boolean failed) {
+    delegate.handlerFinished(handlerIndex, nanos, failed);
+  }
+
+  @Override
+  public void resendFinished(long nanos, boolean failed) {
+    delegate.resendFinished(nanos, failed);
+  }
+
+  @Override
+  public void dropped() {
+    delegate.dropped();
+  }
+
+  @Override
+  public void backlogGauge(LongSupplier backlog) {
+    backlogs.add(backlog);
+  }
+
+  private long backlog() {
+    long backlog = 0;
+    for (LongSupplier queueBacklog : backlogs) {
+      backlog += queueBacklog.getAsLong();
+    }
+    return backlog;
+  }
+}
@@ -0,0 +1,33 @@
+package com.github.djarosz.jmsstubber;
+
+/**
+ * Defines how stubber gets hold of messages sent to stubbed queues.
+ */
+public enum StubbingMode {
+
+  /**
+   * Message is consumed by high priority stubber consumer, handled and then its copy is resent to the
+   * original queue marked with {@link JmsStubber#STUBBER_PROCESSED_HEADER}. Works with any ActiveMQ broker.
+   */
+  RESEND,
+
+  /**
+   * Handlers are executed by embedded broker plugin in the send path, before message is stored in the
+   * queue. Original message reaches consumers untouched. Requires embedded broker.
+   */
+  INTERCEPT,
+
+  /**
+   * Like {@link #INTERCEPT} but message is stored in the queue first and handlers are executed
+   * asynchronously by stubber threads. Requires embedded broker.
+   */
+  INTERCEPT_ASYNC,
+
+  /**
+   * Every stubbed queue is mirrored to stubber private queue (<i>jms-stubber.tap.{queueName}</i>) and
+   * handlers consume messages from the mirror. Original message reaches consumers untouched and without
+   * delay. Embedded broker is configured automatically, remote broker needs composite queue forwarding
+   * (forwardOnly=false) to be configured for every stubbed queue.
+   */
+  WIRE_TAP
+}
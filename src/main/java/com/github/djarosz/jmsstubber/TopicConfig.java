@@ -0,0 +1,58 @@
+package com.github.djarosz.jmsstubber;
+
+import lombok.ToString;
+
+/**
+ * Stubbed topic. Topic already fans messages out to every subscriber, so messages are not resent. Stubber
+ * consumes copies of published messages from its private queue (see {@link #getConsumerQueueName()}) fed by
+ * broker virtual topic, so the topic can be served by pool of consumers and all queue settings apply.
+ *
+ * <p>Embedded broker is configured automatically. Topics named <i>VirtualTopic.*</i> work with broker default
+ * virtual topic configuration, for other names remote broker needs virtual topic with
+ * <i>jms-stubber.topic.</i> prefix.
+ */
+@ToString(callSuper = true)
+public class TopicConfig extends QueueConfig {
+
+  static final String CONSUMER_QUEUE_PREFIX = "jms-stubber.topic.";
+  static final String DEFAULT_VIRTUAL_TOPIC_PREFIX = "VirtualTopic.";
+
+  public TopicConfig(String topicName, MessageHandler... handlers) {
+    super(topicName, handlers);
+  }
+
+  /**
+   * Name of the queue receiving copies of messages published to the topic.
+   */
+  public String getConsumerQueueName() {
+    return isDefaultVirtualTopic() ? "Consumer.jms-stubber." + name : CONSUMER_QUEUE_PREFIX + name;
+  }
+
+  boolean isDefaultVirtualTopic() {
+    return name.startsWith(DEFAULT_VIRTUAL_TOPIC_PREFIX);
+  }
+
+  @Override
+  public TopicConfig withConcurrency(int concurrency) {
+    super.withConcurrency(concurrency);
+    return this;
+  }
+
+  @Override
+  public TopicConfig withOrdered(boolean ordered) {
+    super.withOrdered(ordered);
+    return this;
+  }
+
+  @Override
+  public TopicConfig withMaxInFlight(int maxInFlight) {
+    super.withMaxInFlight(maxInFlight);
+    return this;
+  }
+
+  @Override
+  public TopicConfig withLatency(LatencyDistribution latency) {
+    super.withLatency(latency);
+    return this;
+  }
+}
@@ -0,0 +1,46 @@
+package com.github.djarosz.jmsstubber;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Handler executor backed by virtual thread per task executor created reflectively, see
+ * {@link HandlerExecutor#virtualThreads()}.
+ */
+class VirtualThreadExecutor implements HandlerExecutor {
+
+  private final Method factory;
+  private volatile ExecutorService executor;
+
+  VirtualThreadExecutor(Method factory) {
+    this.factory = factory;
+  }
+
+  @Override
+  public void execute(Runnable messageHandling) {
+    ExecutorService current = executor;
+    (current != null ? current : getExecutor()).execute(messageHandling);
+  }
+
+  @Override
+  public synchronized void close() {
+    if (executor != null) {
+      executor.shutdown();
+      executor = null;
+    }
+  }
+
+  /**
+   * Creates executor on first execution after start or {@link #close()}.
+   */
+  private synchronized ExecutorService getExecutor() {
+    if (executor == null) {
+      try {
+        executor = (ExecutorService) factory.invoke(null);
+      } catch (ReflectiveOperationException e) {
+        throw new IllegalStateException("Could not create virtual thread executor", e);
+      }
+    }
+    return executor;
+  }
+}
@@ -1,24 +1,37 @@
 package com.github.djarosz.jmsstubber.handler;
 
+import com.github.djarosz.jmsstubber.AsyncMessageHandler;
 import com.github.djarosz.jmsstubber.HandlerSession;
-import com.github.djarosz.jmsstubber.MessageHandler;
-import groovy.json.JsonSlurper;
+import com.github.djarosz.jmsstubber.util.JsonPath;
+import com.github.djarosz.jmsstubber.util.XmlPath;
 import groovy.lang.Binding;
-import groovy.lang.GroovyShell;
 import groovy.lang.Script;
 import groovy.util.XmlSlurper;
 import groovy.util.slurpersupport.GPathResult;
+import groovy.xml.FactorySupport;
+import java.io.Closeable;
 import java.io.File;
+import java.io.IOException;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 import java.util.stream.Stream;
+import javax.jms.JMSException;
 import javax.jms.Message;
 import javax.jms.TextMessage;
-import lombok.AllArgsConstructor;
+import javax.xml.XMLConstants;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
 import lombok.NonNull;
 import lombok.SneakyThrows;
 import lombok.experimental.Delegate;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.activemq.command.ActiveMQDestination;
+import org.codehaus.groovy.runtime.InvokerHelper;
+import org.w3c.dom.Document;
 
 
 /**
@@ -26,6 +39,9 @@ import org.apache.activemq.command.ActiveMQDestination;
  * This allows to dynamically alter jms-stubber behaviour with out need for restart
  * and reconfiguration.
  *
+ * <p>Scripts are compiled once and cached (see {@link GroovyScriptCache}). Script is
+ * recompiled when its file changes. Every message gets its own script instance and binding.
+ *
  * <p>Handler requires script location. If specified location is a File
  * then this script will be used.
  *
@@ -34,24 +50,63 @@ import org.apache.activemq.command.ActiveMQDestination;
  * <li>default.groovy - script will be called if it exists
  *
  * <p>These variables are available during script execution:
- * <li> msg - received JMS message
+ * <li> msg - received JMS message, text message is extended with body parsing, see {@link ExtendedTextMessage}
  * <li> session - HandlerSession
  * <li> log - slf4j logger
+ *
+ * <p>On queues with max in flight limit script returning {@link CompletionStage} finishes handling of the
+ * message when the stage completes, see {@link AsyncMessageHandler}. Elsewhere script result is ignored, so
+ * script ending with e.g. <i>session.sendLater(...)</i> does not hold consumer thread for the delay.
+ *
+ * <p>Closing the handler stops watching script directory, see {@link GroovyScriptCache#close()}.
  */
-@AllArgsConstructor
 @Slf4j
-public class GroovyHandler implements MessageHandler {
+public class GroovyHandler implements AsyncMessageHandler, Closeable {
 
   private static final String DEFAULT_GROOVY_SCRIPT = "default.groovy";
+  private static final ThreadLocal<SAXParser> XML_PARSER = ThreadLocal.withInitial(GroovyHandler::newXmlParser);
+  /**
+   * Number of compiled paths cached by handler, paths built by scripts from message values are compiled on
+   * every call once cache is full.
+   */
+  private static final int MAX_CACHED_PATHS = 1000;
 
-  @NonNull
-  private File scriptFileOrDirectory;
+  private final File scriptFileOrDirectory;
+  private final GroovyScriptCache scriptCache;
+  private final Map<String, Optional<File>> scriptFileByDestination = new ConcurrentHashMap<>();
+  private final Map<String, JsonPath> jsonPaths = new ConcurrentHashMap<>();
+  private final Map<String, XmlPath> xmlPaths = new ConcurrentHashMap<>();
+
+  /**
+   * Creates handler running given script, or script of message destination found in given directory.
+   */
+  public GroovyHandler(@NonNull File scriptFileOrDirectory) {
+    this.scriptFileOrDirectory = scriptFileOrDirectory;
+    this.scriptCache = new GroovyScriptCache(scriptFileOrDirectory);
+    this.scriptCache.onInvalidation(scriptFileByDestination::clear);
+  }
 
+  @Override
+  public CompletionStage<?> handleAsync(HandlerSession session, Message message) throws Throwable {
+    Object result = runScript(session, message);
+    return result instanceof CompletionStage
+        ? (CompletionStage<?>) result
+        : CompletableFuture.completedFuture(result);
+  }
+
+  /**
+   * Executes script without waiting for stage it returns.
+   */
   @Override
   public void handle(HandlerSession session, Message message) throws Throwable {
+    runScript(session, message);
+  }
+
+  private Object runScript(HandlerSession session, Message message) throws Exception {
     Optional<File> scriptFile = getScriptFile(message);
     if (!scriptFile.isPresent()) {
-      log.warn("[{}]: No groovy script found.");
+      log.warn("[{}]: No groovy script found.", message.getJMSDestination());
+      return null;
     }
 
     log.info("[{}]: Executing script: {}", message.getJMSDestination(), scriptFile.get().getAbsoluteFile());
@@ -61,20 +116,40 @@ public class GroovyHandler implements MessageHandler {
     binding.setVariable("log", log);
     binding.setVariable("msg", enhanceMessage(message));
 
-    GroovyShell shell = new GroovyShell(binding);
-    Script script = shell.parse(scriptFile.get());
-
-    script.setBinding(binding);
-    script.run();
+    Script script = InvokerHelper.createScript(scriptCache.getScriptClass(scriptFile.get()), binding);
+    Object result = script.run();
 
     log.info("[{}]: Script executed", message.getJMSDestination());
+    return result;
+  }
+
+  /**
+   * Returns cache of compiled scripts. Can be used to inspect cache hit/miss/recompile counts.
+   */
+  public GroovyScriptCache getScriptCache() {
+    return scriptCache;
+  }
+
+  @Override
+  public void close() throws IOException {
+    scriptCache.close();
+    scriptFileByDestination.clear();
+    jsonPaths.clear();
+    xmlPaths.clear();
   }
 
   private Optional<File> getScriptFile(Message message) throws Exception {
     ActiveMQDestination destination = (ActiveMQDestination) message.getJMSDestination();
+    if (!scriptCache.isWatching()) {
+      return resolveScriptFile(destination.getPhysicalName());
+    }
+    return scriptFileByDestination.computeIfAbsent(destination.getPhysicalName(), this::resolveScriptFile);
+  }
+
+  private Optional<File> resolveScriptFile(String destinationName) {
     return Stream.of(
         scriptFileOrDirectory,
-        new File(scriptFileOrDirectory, destination.getPhysicalName() + ".groovy"),
+        new File(scriptFileOrDirectory, destinationName + ".groovy"),
         new File(scriptFileOrDirectory, DEFAULT_GROOVY_SCRIPT))
         .filter(File::exists)
         .filter(File::isFile)
@@ -88,21 +163,131 @@ public class GroovyHandler implements MessageHandler {
     return message;
   }
 
-  @AllArgsConstructor
+  private static <T> T compiled(Map<String, T> cache, String expression, Function<String, T> compiler) {
+    T compiled = cache.get(expression);
+    if (compiled != null) {
+      return compiled;
+    }
+    return cache.size() < MAX_CACHED_PATHS
+        ? cache.computeIfAbsent(expression, compiler)
+        : compiler.apply(expression);
+  }
+
+  /**
+   * Parser configured like default {@link XmlSlurper} one.
+   */
+  @SneakyThrows
+  private static SAXParser newXmlParser() {
+    SAXParserFactory factory = FactorySupport.createSaxParserFactory();
+    factory.setNamespaceAware(true);
+    factory.setValidating(false);
+    factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+    factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+    return factory.newSAXParser();
+  }
+
+  /**
+   * Text message with body parsed on first access to {@link #getXml()} or {@link #getJson()}, parsed body is
+   * kept until text changes. Parsers are reused by the thread.
+   *
+   * <p>Single values can be read with {@link #jsonPath(String)} and {@link #xpath(String)} without parsing
+   * whole body, reading stops once the value is found. Compiled paths are cached by the handler.
+   */
   public class ExtendedTextMessage implements TextMessage {
 
-    @Delegate
-    private TextMessage message;
+    @Delegate(excludes = BodyWriter.class)
+    private final TextMessage message;
+    private GPathResult xml;
+    private Object json;
+    private Document document;
+
+    public ExtendedTextMessage(TextMessage message) {
+      this.message = message;
+    }
 
+    /**
+     * Returns body parsed as XML.
+     */
     @SneakyThrows
     public GPathResult getXml() {
-      return new XmlSlurper().parseText(message.getText());
+      if (xml == null) {
+        xml = parseXml(getText());
+      }
+      return xml;
     }
 
+    /**
+     * Returns body parsed as JSON, maps, lists and simple values.
+     */
     @SneakyThrows
     public Object getJson() {
-      return new JsonSlurper().parseText(message.getText());
+      if (json == null) {
+        json = JsonPath.parse(getText());
+      }
+      return json;
+    }
+
+    /**
+     * Returns value at JSON path, e.g. <i>$.order.items[0].id</i>, or null when body does not contain it. See
+     * {@link JsonPath}.
+     */
+    @SneakyThrows
+    public Object jsonPath(String path) {
+      JsonPath jsonPath = compiled(jsonPaths, path, JsonPath::compile);
+      return json != null ? jsonPath.read(json) : jsonPath.readText(getText());
+    }
+
+    /**
+     * Returns text value of XPath expression, e.g. <i>/order/id</i>, or empty string when body does not contain
+     * it. Simple absolute paths are read from the body, other expressions are evaluated on document parsed once
+     * per message. See {@link XmlPath}.
+     */
+    @SneakyThrows
+    public String xpath(String expression) {
+      XmlPath xmlPath = compiled(xmlPaths, expression, XmlPath::compile);
+      if (document == null && xmlPath.isStreaming()) {
+        return xmlPath.evaluate(getText());
+      }
+      if (document == null) {
+        document = XmlPath.parse(getText());
+      }
+      return xmlPath.evaluate(document);
+    }
+
+    @Override
+    public void setText(String text) throws JMSException {
+      message.setText(text);
+      forgetParsedBody();
+    }
+
+    @Override
+    public void clearBody() throws JMSException {
+      message.clearBody();
+      forgetParsedBody();
     }
+
+    private void forgetParsedBody() {
+      xml = null;
+      json = null;
+      document = null;
+    }
+
+    @SneakyThrows
+    private GPathResult parseXml(String text) {
+      try {
+        return new XmlSlurper(XML_PARSER.get()).parseText(text);
+      } catch (Exception e) {
+        // parser may be left in unknown state
+        XML_PARSER.remove();
+        throw e;
+      }
+    }
+  }
+
+  private interface BodyWriter {
+    void setText(String text) throws JMSException;
+
+    void clearBody() throws JMSException;
   }
 
 }
@@ -0,0 +1,284 @@
+package com.github.djarosz.jmsstubber.handler;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import groovy.lang.GroovyClassLoader;
+import groovy.lang.GroovyCodeSource;
+import groovy.lang.GroovyShell;
+import groovy.lang.Script;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Holds compiled groovy script classes keyed by script file.
+ *
+ * <p>Script is compiled only when it is requested for the first time or when its content has changed.
+ * Changes are detected by {@link WatchService} registered on script directory. When watcher could not
+ * be registered file modification time and size are checked on every lookup instead.
+ *
+ * <p>Every compilation uses a fresh class loader so classes of replaced scripts can be unloaded.
+ *
+ * <p>{@link #close()} stops the watcher. Watcher is started again by the next {@link #getScriptClass(File)},
+ * e.g. when stubber is restarted, all scripts are then checked for changes once.
+ */
+@Slf4j
+public class GroovyScriptCache implements Closeable {
+
+  private final Path watchedDirectory;
+  private final Map<Path, CompiledScript> scripts = new ConcurrentHashMap<>();
+  private final List<Runnable> invalidationListeners = new CopyOnWriteArrayList<>();
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder recompiles = new LongAdder();
+
+  private volatile boolean watching;
+  private volatile boolean closed;
+  private WatchService watchService;
+  private Thread watcherThread;
+
+  /**
+   * Creates cache watching given script directory, or the directory of given script file.
+   */
+  public GroovyScriptCache(File scriptFileOrDirectory) {
+    File directory = scriptFileOrDirectory.isDirectory()
+        ? scriptFileOrDirectory
+        : scriptFileOrDirectory.getAbsoluteFile().getParentFile();
+    this.watchedDirectory = directory == null ? null : toKey(directory);
+    startWatcher();
+  }
+
+  /**
+   * Returns compiled script class for given file. Script is compiled if it is not cached yet
+   * or when it has changed since it was compiled.
+   */
+  public Class<? extends Script> getScriptClass(File scriptFile) throws IOException {
+    if (closed) {
+      restartWatcher();
+    }
+    Path key = toKey(scriptFile);
+    CompiledScript compiled = scripts.get(key);
+    if (compiled != null && compiled.isValid(key, watching)) {
+      hits.increment();
+      return compiled.scriptClass;
+    }
+
+    synchronized (this) {
+      compiled = scripts.get(key);
+      if (compiled != null && compiled.isValid(key, watching)) {
+        hits.increment();
+        return compiled.scriptClass;
+      }
+
+      compiled = compile(key, compiled);
+      scripts.put(key, compiled);
+      return compiled.scriptClass;
+    }
+  }
+
+  /**
+   * Registers callback executed whenever any file in watched directory changes.
+   */
+  public void onInvalidation(Runnable listener) {
+    invalidationListeners.add(listener);
+  }
+
+  public long getHits() {
+    return hits.sum();
+  }
+
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  public long getRecompiles() {
+    return recompiles.sum();
+  }
+
+  public boolean isWatching() {
+    return watching;
+  }
+
+  /**
+   * Stops watching script directory and waits for watcher thread to finish.
+   */
+  @Override
+  public void close() throws IOException {
+    WatchService closedWatchService;
+    Thread stoppedWatcherThread;
+    synchronized (this) {
+      closed = true;
+      closedWatchService = watchService;
+      stoppedWatcherThread = watcherThread;
+      watchService = null;
+      watcherThread = null;
+      watching = false;
+    }
+    if (closedWatchService == null) {
+      return;
+    }
+    closedWatchService.close();
+    try {
+      stoppedWatcherThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    log.debug("Stopped watching groovy scripts in: {}", watchedDirectory);
+  }
+
+  /**
+   * Starts watching again after {@link #close()}. Scripts could change while nobody watched them, so all
+   * of them are checked once.
+   */
+  private synchronized void restartWatcher() {
+    if (!closed) {
+      return;
+    }
+    closed = false;
+    startWatcher();
+    invalidateAll();
+    invalidationListeners.forEach(Runnable::run);
+  }
+
+  @SuppressWarnings("unchecked")
+  private CompiledScript compile(Path scriptFile, CompiledScript previous) throws IOException {
+    long lastModified = Files.getLastModifiedTime(scriptFile).toMillis();
+    long length = Files.size(scriptFile);
+    byte[] content = Files.readAllBytes(scriptFile);
+
+    if (previous != null && Arrays.equals(previous.content, content)) {
+      log.debug("Script {} touched but content not changed. Reusing compiled class.", scriptFile);
+      hits.increment();
+      return new CompiledScript(previous.scriptClass, lastModified, length, content);
+    }
+
+    if (previous == null) {
+      misses.increment();
+    } else {
+      recompiles.increment();
+    }
+
+    log.info("Compiling groovy script: {}", scriptFile);
+    String scriptText = new String(content, StandardCharsets.UTF_8);
+    String scriptName = scriptFile.getFileName().toString();
+    GroovyCodeSource codeSource = new GroovyCodeSource(scriptText, scriptName, GroovyShell.DEFAULT_CODE_BASE);
+    codeSource.setCachable(false);
+    GroovyClassLoader classLoader = new GroovyClassLoader(getClass().getClassLoader());
+    Class<? extends Script> scriptClass = classLoader.parseClass(codeSource);
+
+    return new CompiledScript(scriptClass, lastModified, length, content);
+  }
+
+  private synchronized void invalidate(Path file) {
+    CompiledScript compiled = scripts.get(file);
+    if (compiled != null) {
+      compiled.stale = true;
+    }
+  }
+
+  private synchronized void invalidateAll() {
+    scripts.values().forEach(compiled -> compiled.stale = true);
+  }
+
+  private void startWatcher() {
+    if (watchedDirectory == null || !Files.isDirectory(watchedDirectory)) {
+      return;
+    }
+
+    try {
+      watchService = watchedDirectory.getFileSystem().newWatchService();
+      watchedDirectory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+      WatchService service = watchService;
+      watcherThread = new Thread(() -> watch(service), "groovy-script-watcher");
+      watcherThread.setDaemon(true);
+      watcherThread.start();
+      watching = true;
+      log.debug("Watching groovy scripts in: {}", watchedDirectory);
+    } catch (IOException | UnsupportedOperationException e) {
+      log.warn("Could not watch {}. Falling back to modification time checks.", watchedDirectory, e);
+      closeQuietly(watchService);
+      watchService = null;
+    }
+  }
+
+  private void watch(WatchService watchService) {
+    try {
+      while (true) {
+        WatchKey key = watchService.take();
+        for (WatchEvent<?> event : key.pollEvents()) {
+          if (event.kind() == OVERFLOW) {
+            invalidateAll();
+          } else {
+            Path changed = watchedDirectory.resolve((Path) event.context());
+            log.debug("Groovy script changed: {}", changed);
+            invalidate(changed);
+          }
+        }
+        invalidationListeners.forEach(Runnable::run);
+
+        if (!key.reset()) {
+          log.warn("Groovy script directory {} is no longer accessible.", watchedDirectory);
+          watching = false;
+          invalidateAll();
+          return;
+        }
+      }
+    } catch (InterruptedException | ClosedWatchServiceException e) {
+      watching = false;
+    }
+  }
+
+  private static void closeQuietly(WatchService service) {
+    try {
+      if (service != null) {
+        service.close();
+      }
+    } catch (IOException e) {
+      log.debug("Could not close watch service", e);
+    }
+  }
+
+  private static Path toKey(File file) {
+    return file.toPath().toAbsolutePath().normalize();
+  }
+
+  @RequiredArgsConstructor
+  private static class CompiledScript {
+    final Class<? extends Script> scriptClass;
+    final long lastModified;
+    final long length;
+    // compared with new content when file is touched, scripts are small
+    final byte[] content;
+    volatile boolean stale;
+
+    boolean isValid(Path scriptFile, boolean watching) {
+      if (stale) {
+        return false;
+      }
+      if (watching) {
+        return true;
+      }
+      File file = scriptFile.toFile();
+      return file.lastModified() == lastModified && file.length() == length;
+    }
+  }
+}
@@ -2,22 +2,154 @@ package com.github.djarosz.jmsstubber.handler;
 
 import com.github.djarosz.jmsstubber.HandlerSession;
 import com.github.djarosz.jmsstubber.MessageHandler;
+import com.github.djarosz.jmsstubber.util.MessageFormatter;
+import java.io.Closeable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import javax.jms.Message;
+import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.builder.ToStringBuilder;
-import org.apache.commons.lang3.builder.ToStringStyle;
+import org.apache.activemq.command.ActiveMQMessage;
 
 /**
- * Logs message received message attributes.
+ * Logs received message headers, properties and body truncated to configured length.
+ *
+ * <p>Messages are formatted and logged asynchronously by single background thread so logging never slows
+ * down message handling. Handler passes cheap copy of ActiveMQ message (body is shared, not copied) to bounded
+ * queue. When queue is full message is not logged, number of such messages is logged periodically instead.
+ *
+ * <p>Background thread is started by the first handled message and stopped by {@link #close()}, which stubber
+ * calls when it stops.
  */
 @Slf4j
-public class LoggingHandler implements MessageHandler<Message> {
+public class LoggingHandler implements MessageHandler<Message>, Closeable {
 
   public static final LoggingHandler INSTANCE = new LoggingHandler();
 
+  static final int DEFAULT_MAX_BODY_LENGTH = 1024;
+  static final int DEFAULT_QUEUE_CAPACITY = 10_000;
+  private static final long POLL_TIMEOUT_MS = 1000;
+  private static final Message STOP = new ActiveMQMessage();
+
+  private final int maxBodyLength;
+  private final BlockingQueue<Message> pending;
+  private final LongAdder dropped = new LongAdder();
+  private volatile Thread writer;
+  private long reportedDropped;
+
+  public LoggingHandler() {
+    this(DEFAULT_MAX_BODY_LENGTH, DEFAULT_QUEUE_CAPACITY);
+  }
+
+  /**
+   * Creates handler with given max logged body length and max number of messages waiting to be logged.
+   * Null means default value.
+   */
+  public LoggingHandler(Integer maxBodyLength, Integer queueCapacity) {
+    this.maxBodyLength = maxBodyLength == null ? DEFAULT_MAX_BODY_LENGTH : maxBodyLength;
+    this.pending = new ArrayBlockingQueue<>(queueCapacity == null ? DEFAULT_QUEUE_CAPACITY : queueCapacity);
+  }
+
   @Override
   public void handle(HandlerSession session, Message message) throws Throwable {
-    log.info("[{}]: Received: {}", message.getJMSDestination(),
-        ToStringBuilder.reflectionToString(message, ToStringStyle.MULTI_LINE_STYLE));
+    if (!log.isInfoEnabled()) {
+      return;
+    }
+    if (!(message instanceof ActiveMQMessage)) {
+      // other messages can not be cheaply copied, later handlers could interfere with reading their body
+      logMessage(message);
+      return;
+    }
+
+    startWriter();
+    if (!pending.offer((Message) ((ActiveMQMessage) message).copy())) {
+      dropped.increment();
+    }
+  }
+
+  /**
+   * Number of messages which were not logged because logging queue was full.
+   */
+  public long getDroppedCount() {
+    return dropped.sum();
+  }
+
+  private void startWriter() {
+    if (writer == null) {
+      synchronized (this) {
+        if (writer == null) {
+          Thread thread = new Thread(this::writeLogs, "jms-stubber-logging-handler");
+          thread.setDaemon(true);
+          writer = thread;
+          thread.start();
+        }
+      }
+    }
+  }
+
+  /**
+   * Logs messages waiting in the queue and stops background thread. Handler can still be used, thread is
+   * started again by the next handled message.
+   */
+  @Override
+  @SneakyThrows
+  public void close() {
+    Thread thread;
+    synchronized (this) {
+      thread = writer;
+      writer = null;
+    }
+    if (thread == null) {
+      return;
+    }
+    // wakes up waiting writer, which then sees it is no longer current one
+    pending.offer(STOP);
+    thread.join();
+
+    Message message;
+    while ((message = pending.poll()) != null) {
+      if (message != STOP) {
+        logMessage(message);
+      }
+    }
+    reportDropped();
+  }
+
+  private void writeLogs() {
+    while (writer == Thread.currentThread()) {
+      Message message;
+      try {
+        message = pending.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        return;
+      }
+      if (message == STOP) {
+        continue;
+      }
+      if (message != null) {
+        logMessage(message);
+      }
+      if (message == null || pending.isEmpty()) {
+        reportDropped();
+      }
+    }
+  }
+
+  private synchronized void reportDropped() {
+    long totalDropped = dropped.sum();
+    if (totalDropped != reportedDropped) {
+      log.warn("Logging queue full, {} messages were not logged", totalDropped - reportedDropped);
+      reportedDropped = totalDropped;
+    }
+  }
+
+  private void logMessage(Message message) {
+    try {
+      log.info("[{}]: Received: {}", message.getJMSDestination(), MessageFormatter.format(message, maxBodyLength));
+    } catch (Exception e) {
+      log.warn("Could not log message", e);
+    }
   }
 }
@@ -2,53 +2,308 @@ package com.github.djarosz.jmsstubber.handler;
 
 import com.github.djarosz.jmsstubber.HandlerSession;
 import com.github.djarosz.jmsstubber.MessageHandler;
+import java.io.Closeable;
+import java.io.File;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
 import javax.jms.Message;
+import lombok.SneakyThrows;
 import org.apache.activemq.command.ActiveMQDestination;
 
 /**
  * Stores every received message.
+ *
+ * <p>Messages are kept per destination in lock free append only logs. Number of kept messages can be limited
+ * by count, total message size and age, oldest messages are evicted first. Returned lists are immutable
+ * snapshots which are not affected by messages received later.
+ *
+ * <p>Tests can wait for messages without polling. {@link #awaitCount(String, int, long, TimeUnit)} blocks until
+ * destination received given number of messages, {@link #nextMatching(String, Predicate)} and
+ * {@link #firstMatching(String, Predicate)} return futures completed by common fork join pool thread when
+ * matching message is received, so dependent actions should be attached with async methods. Futures no longer
+ * needed should be cancelled.
+ *
+ * <p>Messages are indexed by JMSMessageID, JMSCorrelationID and properties selected with
+ * {@link #indexProperties(String...)}.
+ *
+ * <p>For long running tests messages can be kept outside of java heap, see {@link #withDirectStorage()} and
+ * {@link #withMappedStorage(File)}. Only small per message index stays on heap then. Stored messages are
+ * unmarshalled when read, so every read returns new message instance. Closing the handler deletes segment
+ * files, see {@link #close()}.
  */
-public class MessageCollectingHandler<T extends Message> implements MessageHandler<T> {
+public class MessageCollectingHandler<T extends Message> implements MessageHandler<T>, Closeable {
 
-  private Map<String, List<T>> receivedByQueue = Collections.synchronizedMap(new HashMap<>());
+  private final ConcurrentMap<String, MessageLog<T>> receivedByDestination = new ConcurrentHashMap<>();
+  private final int maxMessages;
+  private final long maxBytes;
+  private final long maxAgeMillis;
+  private final Set<String> indexedProperties = ConcurrentHashMap.newKeySet();
+  private volatile boolean offHeapStorage;
+  private volatile File storageDirectory;
+  private volatile int maxSegmentSize = MessageSegments.DEFAULT_MAX_SEGMENT_SIZE;
+
+  public MessageCollectingHandler() {
+    this(null, null, null);
+  }
+
+  /**
+   * Creates handler keeping limited number of messages per destination. Null limit means no limit.
+   *
+   * @param maxMessages max number of messages kept per destination
+   * @param maxBytes max total size of messages kept per destination
+   * @param maxAgeMillis max time message is kept
+   */
+  public MessageCollectingHandler(Integer maxMessages, Long maxBytes, Long maxAgeMillis) {
+    this.maxMessages = maxMessages == null ? 0 : maxMessages;
+    this.maxBytes = maxBytes == null ? 0 : maxBytes;
+    this.maxAgeMillis = maxAgeMillis == null ? 0 : maxAgeMillis;
+  }
+
+  /**
+   * Creates handler keeping limited number of messages per destination in memory mapped files.
+   *
+   * @param storageDirectory directory for memory mapped files, when null messages are kept on heap
+   * @see #MessageCollectingHandler(Integer, Long, Long)
+   */
+  public MessageCollectingHandler(Integer maxMessages, Long maxBytes, Long maxAgeMillis, File storageDirectory) {
+    this(maxMessages, maxBytes, maxAgeMillis);
+    if (storageDirectory != null) {
+      withMappedStorage(storageDirectory);
+    }
+  }
+
+  /**
+   * Keeps OpenWire marshalled messages in direct byte buffers. Applies to destinations which have not
+   * received any message yet.
+   */
+  public MessageCollectingHandler<T> withDirectStorage() {
+    storageDirectory = null;
+    offHeapStorage = true;
+    return this;
+  }
+
+  /**
+   * Keeps OpenWire marshalled messages in memory mapped segment files created in given directory. Files are
+   * deleted when all their messages are evicted. Applies to destinations which have not received any
+   * message yet.
+   */
+  public MessageCollectingHandler<T> withMappedStorage(File directory) {
+    storageDirectory = directory;
+    offHeapStorage = true;
+    return this;
+  }
+
+  /**
+   * Sets max size of off heap segment, 16 MB by default. Every destination starts with 64 KB segment, next
+   * segments are twice as big up to this size. Applies to destinations which have not received any message yet.
+   */
+  public MessageCollectingHandler<T> withMaxSegmentSize(int maxSegmentSize) {
+    if (maxSegmentSize <= 0) {
+      throw new IllegalArgumentException("Segment size has to be positive: " + maxSegmentSize);
+    }
+    this.maxSegmentSize = maxSegmentSize;
+    return this;
+  }
+
+  /**
+   * Indexes messages by given properties so {@link #receivedByProperty(String, String, Object)} does not scan
+   * all messages. Applies to destinations which have not received any message yet.
+   */
+  public MessageCollectingHandler<T> indexProperties(String... properties) {
+    indexedProperties.addAll(Arrays.asList(properties));
+    return this;
+  }
 
   @Override
   public void handle(HandlerSession session, T message) throws Throwable {
     ActiveMQDestination destination = (ActiveMQDestination) message.getJMSDestination();
-    String destinationName = destination.getPhysicalName();
-    if (!receivedByQueue.containsKey(destinationName)) {
-      receivedByQueue.put(destinationName, Collections.synchronizedList(new LinkedList<>()));
-    }
+    logOf(destination.getPhysicalName()).append(message);
+  }
 
-    receivedByQueue.get(destinationName).add(message);
+  private MessageLog<T> logOf(String destinationName) {
+    return receivedByDestination.computeIfAbsent(destinationName,
+        name -> new MessageLog<>(maxMessages, maxBytes, maxAgeMillis, indexedProperties,
+            offHeapStorage ? new MessageSegments(storageDirectory, maxSegmentSize) : null));
+  }
+
+  /**
+   * Deletes off heap segment files of all destinations. Collected messages stay readable, new messages are
+   * stored in new segments, so handler can be used again when stubber is restarted.
+   */
+  @Override
+  public void close() {
+    receivedByDestination.values().forEach(MessageLog::close);
   }
 
   /**
    * Returns list of messages received on specified queue or topic
    */
   public List<T> received(String destinationName) {
-    List<T> messages = receivedByQueue.get(destinationName);
-    return messages == null ? Collections.emptyList() : messages;
+    MessageLog<T> messages = receivedByDestination.get(destinationName);
+    return messages == null ? Collections.emptyList() : messages.snapshot();
+  }
+
+  /**
+   * Returns list of messages received on specified queue or topic between given times (inclusive).
+   */
+  public List<T> received(String destinationName, long fromMillis, long toMillis) {
+    MessageLog<T> messages = receivedByDestination.get(destinationName);
+    return messages == null ? Collections.emptyList() : messages.snapshot(fromMillis, toMillis);
   }
 
   /**
    * Returns all received messages on any destination.
    */
   public List<T> receivedAll() {
-    if (receivedByQueue.isEmpty()) {
-      return Collections.emptyList();
-    } else {
-      return receivedByQueue.values().stream()
-          .reduce(new LinkedList<>(), (acc, received) -> {
-            acc.addAll(received);
-            return acc;
-          });
+    List<List<T>> snapshots = new ArrayList<>();
+    for (MessageLog<T> messages : receivedByDestination.values()) {
+      List<T> snapshot = messages.snapshot();
+      if (!snapshot.isEmpty()) {
+        snapshots.add(snapshot);
+      }
+    }
+    return snapshots.size() == 1 ? snapshots.get(0) : new ConcatenatedList<>(snapshots);
+  }
+
+  /**
+   * Returns number of messages received on specified queue or topic.
+   */
+  public int count(String destinationName) {
+    MessageLog<T> messages = receivedByDestination.get(destinationName);
+    return messages == null ? 0 : messages.size();
+  }
+
+  /**
+   * Waits until specified queue or topic received at least {@code count} messages.
+   *
+   * @return false if timeout elapsed before messages were received
+   */
+  public boolean awaitCount(String destinationName, int count, long timeout, TimeUnit unit)
+      throws InterruptedException {
+    return await(logOf(destinationName).countReached(count), timeout, unit);
+  }
+
+  /**
+   * Waits for the first message already received or received within timeout which matches predicate.
+   */
+  public Optional<T> awaitMatching(String destinationName, Predicate<? super T> predicate, long timeout,
+      TimeUnit unit) throws InterruptedException {
+    CompletableFuture<T> matching = firstMatching(destinationName, predicate);
+    return await(matching, timeout, unit) ? Optional.of(matching.getNow(null)) : Optional.empty();
+  }
+
+  /**
+   * Returns future completed with the first message received on specified destination after this call which
+   * matches predicate.
+   */
+  public CompletableFuture<T> nextMatching(String destinationName, Predicate<? super T> predicate) {
+    return logOf(destinationName).matching(predicate, Optional::empty);
+  }
+
+  /**
+   * Returns future completed with the first message already received or received later on specified
+   * destination which matches predicate.
+   */
+  public CompletableFuture<T> firstMatching(String destinationName, Predicate<? super T> predicate) {
+    MessageLog<T> messages = logOf(destinationName);
+    return messages.matching(predicate, () -> messages.snapshot().stream().filter(predicate).findFirst());
+  }
+
+  /**
+   * Returns future completed with the first message already received or received later on specified
+   * destination which has given JMSCorrelationID. Already received messages are found using index.
+   */
+  public CompletableFuture<T> firstByCorrelationId(String destinationName, String correlationId) {
+    MessageLog<T> messages = logOf(destinationName);
+    return messages.matching(
+        message -> correlationId.equals(getCorrelationId(message)),
+        () -> messages.findByCorrelationId(correlationId).stream().findFirst());
+  }
+
+  public Optional<T> receivedByMessageId(String destinationName, String messageId) {
+    MessageLog<T> messages = receivedByDestination.get(destinationName);
+    return messages == null ? Optional.empty() : messages.findByMessageId(messageId).stream().findFirst();
+  }
+
+  public List<T> receivedByCorrelationId(String destinationName, String correlationId) {
+    MessageLog<T> messages = receivedByDestination.get(destinationName);
+    return messages == null ? Collections.emptyList() : messages.findByCorrelationId(correlationId);
+  }
+
+  /**
+   * Returns messages with property equal to value. Properties not selected with
+   * {@link #indexProperties(String...)} are looked up by scanning all messages.
+   */
+  public List<T> receivedByProperty(String destinationName, String property, Object value) {
+    Objects.requireNonNull(value, "value");
+    MessageLog<T> messages = receivedByDestination.get(destinationName);
+    return messages == null ? Collections.emptyList() : messages.findByProperty(property, value);
+  }
+
+  /**
+   * Waits for future completion. Future is cancelled when timeout elapses so its waiter is dropped.
+   */
+  @SneakyThrows
+  private static boolean await(CompletableFuture<?> future, long timeout, TimeUnit unit)
+      throws InterruptedException {
+    try {
+      future.get(timeout, unit);
+      return true;
+    } catch (TimeoutException e) {
+      return false;
+    } catch (ExecutionException e) {
+      throw e.getCause();
+    } finally {
+      future.cancel(false);
     }
   }
 
+  @SneakyThrows
+  private static String getCorrelationId(Message message) {
+    return message.getJMSCorrelationID();
+  }
+
+  private static class ConcatenatedList<T> extends AbstractList<T> implements RandomAccess {
+
+    private final List<List<T>> lists;
+    private final int[] offsets;
+
+    ConcatenatedList(List<List<T>> lists) {
+      this.lists = lists;
+      this.offsets = new int[lists.size() + 1];
+      for (int i = 0; i < lists.size(); i++) {
+        offsets[i + 1] = offsets[i] + lists.get(i).size();
+      }
+    }
+
+    @Override
+    public T get(int index) {
+      if (index < 0 || index >= size()) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+      }
+      // lists are never empty so offsets are unique
+      int found = Arrays.binarySearch(offsets, index);
+      int list = found >= 0 ? found : -found - 2;
+      return lists.get(list).get(index - offsets[list]);
+    }
+
+    @Override
+    public int size() {
+      return offsets[offsets.length - 1];
+    }
+  }
 }
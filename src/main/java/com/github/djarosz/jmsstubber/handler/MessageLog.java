@@ -0,0 +1,595 @@
+package com.github.djarosz.jmsstubber.handler;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.RandomAccess;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import lombok.SneakyThrows;
+import org.apache.activemq.command.ActiveMQMessage;
+
+/**
+ * Append only log of messages received on one destination.
+ *
+ * <p>Messages are kept in fixed size chunks addressed by message sequence number. Appending thread
+ * reserves next sequence number, stores message in its chunk slot and marks the slot ready. Ready slots are
+ * published in sequence order by whichever appending thread gets to it first, nobody waits for slower
+ * appenders. Slot is marked ready even when append fails, so one failed append never blocks later messages.
+ * Readers never lock, they always see gap free sequence of published messages.
+ *
+ * <p>Oldest messages are evicted when log exceeds max number of messages, max total message size or
+ * max message age. Evicted slot is cleared right away, so evicted message is no longer reachable from the log.
+ * Chunk is released when all its messages are evicted.
+ *
+ * <p>Messages are indexed by JMSMessageID, JMSCorrelationID and selected properties. Index maps key to
+ * sequence numbers of messages with that key. Index keys are read once, when message is appended, and kept
+ * in its slot, so evicted message is removed from indexes without being unmarshalled. Waiters registered for
+ * future messages are notified in sequence order by common fork join pool, so their callbacks never slow down
+ * or break appending threads.
+ *
+ * <p>Messages can be kept outside of java heap in {@link MessageSegments}. Log then keeps only small handle
+ * of every message and messages are unmarshalled when read.
+ */
+class MessageLog<T extends Message> {
+
+  static final int CHUNK_SIZE = 1024;
+  private static final Executor NOTIFIER = ForkJoinPool.commonPool();
+
+  private final int maxMessages;
+  private final long maxBytes;
+  private final long maxAgeMillis;
+
+  private final ConcurrentMap<Long, Chunk> chunks = new ConcurrentHashMap<>();
+  private final AtomicLong reserved = new AtomicLong();
+  private final AtomicLong retainedBytes = new AtomicLong();
+  private final AtomicBoolean publishing = new AtomicBoolean();
+  private final AtomicBoolean notifying = new AtomicBoolean();
+  private final AtomicBoolean evicting = new AtomicBoolean();
+  private volatile long published;
+  private volatile long head;
+  private long lastTimestamp;
+  private final MessageSegments segments;
+
+  private final SequenceIndex byMessageId = new SequenceIndex();
+  private final SequenceIndex byCorrelationId = new SequenceIndex();
+  private final String[] indexedProperties;
+  private final SequenceIndex[] byProperty;
+  private final Queue<Waiter<T>> waiters = new ConcurrentLinkedQueue<>();
+  private final Queue<T> notifications = new ConcurrentLinkedQueue<>();
+
+  /**
+   * Creates log with given limits. Non positive limit means no limit. Messages are kept on heap when
+   * {@code segments} is null.
+   */
+  MessageLog(int maxMessages, long maxBytes, long maxAgeMillis, Collection<String> indexedProperties,
+      MessageSegments segments) {
+    this.segments = segments;
+    this.maxMessages = maxMessages > 0 ? maxMessages : Integer.MAX_VALUE;
+    this.maxBytes = maxBytes > 0 ? maxBytes : Long.MAX_VALUE;
+    this.maxAgeMillis = maxAgeMillis > 0 ? maxAgeMillis : Long.MAX_VALUE;
+    this.indexedProperties = indexedProperties.toArray(new String[0]);
+    this.byProperty = new SequenceIndex[this.indexedProperties.length];
+    for (int i = 0; i < byProperty.length; i++) {
+      byProperty[i] = new SequenceIndex();
+    }
+  }
+
+  void append(T message) {
+    // read and stored before sequence is reserved, failure leaves no slot behind
+    Object[] keys = indexKeys(message);
+    Object stored = segments == null ? message : segments.write(message);
+    long now = System.currentTimeMillis();
+    long sequence = reserved.getAndIncrement();
+    Chunk chunk = chunks.computeIfAbsent(sequence / CHUNK_SIZE, index -> new Chunk());
+    int slot = slotOf(sequence);
+    try {
+      chunk.appended[slot] = message;
+      chunk.messages[slot] = stored;
+      int size = sizeOf(message);
+      chunk.timestamps[slot] = now;
+      chunk.sizes[slot] = size;
+      chunk.keys[slot] = keys;
+      retainedBytes.addAndGet(size);
+      index(keys, sequence);
+    } finally {
+      chunk.ready.set(slot, 1);
+      publishReady();
+    }
+    evict(now);
+  }
+
+  /**
+   * Publishes ready slots following the last published one. Only one thread publishes at a time, slot which
+   * gets ready while other thread publishes is picked up by that thread before it gives up.
+   */
+  @SuppressWarnings("unchecked")
+  private void publishReady() {
+    boolean notify = false;
+    do {
+      if (!publishing.compareAndSet(false, true)) {
+        break;
+      }
+      try {
+        Chunk chunk;
+        long next = published;
+        while ((chunk = readyChunk(next)) != null) {
+          int slot = slotOf(next);
+          final T message = (T) chunk.appended[slot];
+          chunk.appended[slot] = null;
+          // timestamps never decrease in sequence order so messages can be looked up by time
+          lastTimestamp = Math.max(chunk.timestamps[slot], lastTimestamp);
+          chunk.timestamps[slot] = lastTimestamp;
+          published = ++next;
+          // waiter registered after this check looks the message up as already received
+          if (message != null && !waiters.isEmpty()) {
+            notifications.add(message);
+            notify = true;
+          }
+        }
+      } finally {
+        publishing.set(false);
+      }
+    } while (readyChunk(published) != null);
+
+    if (notify) {
+      NOTIFIER.execute(this::notifyWaiters);
+    }
+  }
+
+  private Chunk readyChunk(long sequence) {
+    if (sequence >= reserved.get()) {
+      return null;
+    }
+    Chunk chunk = chunks.get(sequence / CHUNK_SIZE);
+    return chunk != null && chunk.ready.get(slotOf(sequence)) == 1 ? chunk : null;
+  }
+
+  /**
+   * Returns future completed with the first message received after this call which matches predicate,
+   * or with already received message if {@code alreadyReceived} finds one.
+   */
+  CompletableFuture<T> matching(Predicate<? super T> predicate, Supplier<Optional<T>> alreadyReceived) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    waiters.add(new Waiter<>(future, message -> {
+      if (predicate.test(message)) {
+        future.complete(message);
+      }
+    }));
+    // waiter is already registered, messages published after this lookup will notify it
+    alreadyReceived.get().ifPresent(future::complete);
+    return future;
+  }
+
+  /**
+   * Returns future completed when number of messages kept in the log reaches {@code count}.
+   */
+  CompletableFuture<Void> countReached(int count) {
+    CompletableFuture<Void> future = new CompletableFuture<>();
+    waiters.add(new Waiter<>(future, message -> {
+      if (size() >= count) {
+        future.complete(null);
+      }
+    }));
+    if (size() >= count) {
+      future.complete(null);
+    }
+    return future;
+  }
+
+  List<T> findByMessageId(String messageId) {
+    return find(byMessageId, messageId);
+  }
+
+  List<T> findByCorrelationId(String correlationId) {
+    return find(byCorrelationId, correlationId);
+  }
+
+  /**
+   * Finds messages with property value. Not indexed properties are looked up by scanning all kept messages.
+   */
+  List<T> findByProperty(String property, Object value) {
+    for (int i = 0; i < indexedProperties.length; i++) {
+      if (indexedProperties[i].equals(property)) {
+        return find(byProperty[i], value);
+      }
+    }
+    List<T> found = new ArrayList<>();
+    for (T message : snapshot()) {
+      if (value.equals(getProperty(message, property))) {
+        found.add(message);
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Number of messages currently kept.
+   */
+  int size() {
+    evictExpired();
+    return (int) (published - head);
+  }
+
+  /**
+   * Returns immutable list of messages kept at the time of the call. References to messages are copied,
+   * messages themselves are not.
+   */
+  List<T> snapshot() {
+    return takeSnapshot();
+  }
+
+  /**
+   * Returns immutable view of messages received between given times (inclusive).
+   */
+  List<T> snapshot(long fromMillis, long toMillis) {
+    Snapshot<T> snapshot = takeSnapshot();
+    int from = snapshot.indexOfFirstAfter(fromMillis - 1);
+    int to = snapshot.indexOfFirstAfter(toMillis);
+    return from < to ? snapshot.subList(from, to) : Collections.emptyList();
+  }
+
+  private Snapshot<T> takeSnapshot() {
+    evictExpired();
+    long first = head;
+    long last = published;
+    Object[] stored = new Object[(int) (last - first)];
+    long[] timestamps = new long[stored.length];
+    int size = 0;
+    Chunk chunk = null;
+    for (long sequence = first; sequence < last; sequence++) {
+      int slot = slotOf(sequence);
+      if (chunk == null || slot == 0) {
+        chunk = chunks.get(sequence / CHUNK_SIZE);
+      }
+      Object message = chunk == null ? null : chunk.messages[slot];
+      // slots evicted while copying are cleared, evicted messages are the oldest ones
+      if (message != null) {
+        stored[size] = message;
+        timestamps[size++] = chunk.timestamps[slot];
+      }
+    }
+    return new Snapshot<>(stored, timestamps, size);
+  }
+
+  private List<T> find(SequenceIndex index, Object key) {
+    List<T> found = new ArrayList<>();
+    for (long sequence : index.get(key)) {
+      T message = get(sequence);
+      if (message != null) {
+        found.add(message);
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Returns published and not yet evicted message with given sequence number.
+   */
+  private T get(long sequence) {
+    if (sequence < head || sequence >= published) {
+      return null;
+    }
+    Chunk chunk = chunks.get(sequence / CHUNK_SIZE);
+    return chunk == null ? null : load(chunk.messages[slotOf(sequence)]);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> T load(Object stored) {
+    return stored instanceof MessageSegments.StoredMessage
+        ? (T) ((MessageSegments.StoredMessage) stored).load()
+        : (T) stored;
+  }
+
+  /**
+   * Returns JMSMessageID, JMSCorrelationID and values of indexed properties of the message.
+   */
+  @SneakyThrows
+  private Object[] indexKeys(Message message) {
+    Object[] keys = new Object[2 + indexedProperties.length];
+    keys[0] = message.getJMSMessageID();
+    keys[1] = message.getJMSCorrelationID();
+    for (int i = 0; i < indexedProperties.length; i++) {
+      keys[2 + i] = getProperty(message, indexedProperties[i]);
+    }
+    return keys;
+  }
+
+  private void index(Object[] keys, long sequence) {
+    byMessageId.add(keys[0], sequence);
+    byCorrelationId.add(keys[1], sequence);
+    for (int i = 0; i < byProperty.length; i++) {
+      byProperty[i].add(keys[2 + i], sequence);
+    }
+  }
+
+  private void unindex(Object[] keys, long sequence) {
+    byMessageId.remove(keys[0], sequence);
+    byCorrelationId.remove(keys[1], sequence);
+    for (int i = 0; i < byProperty.length; i++) {
+      byProperty[i].remove(keys[2 + i], sequence);
+    }
+  }
+
+  private static Object getProperty(Message message, String property) {
+    try {
+      return message.getObjectProperty(property);
+    } catch (JMSException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Notifies waiters about published messages. Only one thread notifies at a time, so messages are passed to
+   * waiters in sequence order.
+   */
+  private void notifyWaiters() {
+    do {
+      if (!notifying.compareAndSet(false, true)) {
+        return;
+      }
+      try {
+        T message;
+        while ((message = notifications.poll()) != null) {
+          notifyWaiters(message);
+        }
+      } finally {
+        notifying.set(false);
+      }
+    } while (!notifications.isEmpty());
+  }
+
+  private void notifyWaiters(T message) {
+    for (Iterator<Waiter<T>> iterator = waiters.iterator(); iterator.hasNext(); ) {
+      Waiter<T> waiter = iterator.next();
+      if (!waiter.future.isDone()) {
+        waiter.onMessage(message);
+      }
+      // completed, cancelled or timed out waiters are dropped
+      if (waiter.future.isDone()) {
+        iterator.remove();
+      }
+    }
+  }
+
+  private void evictExpired() {
+    if (maxAgeMillis != Long.MAX_VALUE) {
+      evict(System.currentTimeMillis());
+    }
+  }
+
+  /**
+   * Evicts oldest messages exceeding limits. Only one thread evicts at a time, others skip eviction.
+   */
+  private void evict(long now) {
+    if (!evicting.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      long first = head;
+      while (first < published && exceedsLimits(first, now)) {
+        Chunk chunk = chunks.get(first / CHUNK_SIZE);
+        int slot = slotOf(first);
+        Object stored = chunk.messages[slot];
+        retainedBytes.addAndGet(-chunk.sizes[slot]);
+        unindex(chunk.keys[slot], first);
+        if (stored instanceof MessageSegments.StoredMessage) {
+          ((MessageSegments.StoredMessage) stored).release();
+        }
+        chunk.messages[slot] = null;
+        chunk.keys[slot] = null;
+        first++;
+        head = first;
+        if (slotOf(first) == 0) {
+          chunks.remove(first / CHUNK_SIZE - 1);
+        }
+      }
+    } finally {
+      evicting.set(false);
+    }
+  }
+
+  private boolean exceedsLimits(long first, long now) {
+    return published - first > maxMessages
+        || retainedBytes.get() > maxBytes
+        || now - chunks.get(first / CHUNK_SIZE).timestamps[slotOf(first)] > maxAgeMillis;
+  }
+
+  /**
+   * Deletes files of off heap segments, see {@link MessageSegments#close()}.
+   */
+  void close() {
+    if (segments != null) {
+      segments.close();
+    }
+  }
+
+  private static int slotOf(long sequence) {
+    return (int) (sequence % CHUNK_SIZE);
+  }
+
+  private static int sizeOf(Message message) {
+    return message instanceof ActiveMQMessage ? ((ActiveMQMessage) message).getSize() : 0;
+  }
+
+  private static class Chunk {
+    private final Object[] messages = new Object[CHUNK_SIZE];
+    // appended messages kept until they are published and passed to waiters, stored message may be evicted then
+    private final Object[] appended = new Object[CHUNK_SIZE];
+    private final AtomicIntegerArray ready = new AtomicIntegerArray(CHUNK_SIZE);
+    private final long[] timestamps = new long[CHUNK_SIZE];
+    private final int[] sizes = new int[CHUNK_SIZE];
+    private final Object[][] keys = new Object[CHUNK_SIZE][];
+  }
+
+  private static class Waiter<T> {
+
+    private final CompletableFuture<?> future;
+    private final Consumer<T> onMessage;
+
+    Waiter(CompletableFuture<?> future, Consumer<T> onMessage) {
+      this.future = future;
+      this.onMessage = onMessage;
+    }
+
+    void onMessage(T message) {
+      try {
+        onMessage.accept(message);
+      } catch (RuntimeException e) {
+        future.completeExceptionally(e);
+      }
+    }
+  }
+
+  /**
+   * Maps key to sequence numbers of messages with that key. Null keys are not indexed. Single sequence is kept
+   * as boxed long and more sequences in {@link Sequences} array, so unique keys like JMSMessageID cost one map
+   * entry per message.
+   */
+  private static class SequenceIndex {
+
+    private final ConcurrentMap<Object, Object> sequencesByKey = new ConcurrentHashMap<>();
+
+    void add(Object key, long sequence) {
+      if (key != null) {
+        sequencesByKey.merge(key, sequence, (sequences, added) -> sequences instanceof Sequences
+            ? ((Sequences) sequences).add((Long) added)
+            : new Sequences((Long) sequences).add((Long) added));
+      }
+    }
+
+    void remove(Object key, long sequence) {
+      if (key != null) {
+        sequencesByKey.computeIfPresent(key, (k, sequences) -> sequences instanceof Sequences
+            ? ((Sequences) sequences).remove(sequence)
+            : (Long) sequences == sequence ? null : sequences);
+      }
+    }
+
+    long[] get(Object key) {
+      Object sequences = sequencesByKey.get(key);
+      if (sequences == null) {
+        return new long[0];
+      }
+      return sequences instanceof Sequences ? ((Sequences) sequences).toArray() : new long[] {(Long) sequences};
+    }
+  }
+
+  /**
+   * Growing array of sequence numbers in append order. Sequences are removed in order of eviction, so removed
+   * sequence is nearly always the first one.
+   */
+  private static class Sequences {
+
+    private long[] sequences = new long[4];
+    private int first;
+    private int size;
+
+    Sequences(long sequence) {
+      add(sequence);
+    }
+
+    synchronized Sequences add(long sequence) {
+      if (first + size == sequences.length) {
+        long[] grown = size * 2 > sequences.length ? new long[sequences.length * 2] : sequences;
+        System.arraycopy(sequences, first, grown, 0, size);
+        sequences = grown;
+        first = 0;
+      }
+      sequences[first + size++] = sequence;
+      return this;
+    }
+
+    /**
+     * Removes sequence, returns null when no sequence is left.
+     */
+    synchronized Sequences remove(long sequence) {
+      for (int i = first; i < first + size; i++) {
+        if (sequences[i] == sequence) {
+          System.arraycopy(sequences, first, sequences, first + 1, i - first);
+          first++;
+          size--;
+          break;
+        }
+      }
+      return size == 0 ? null : this;
+    }
+
+    synchronized long[] toArray() {
+      return Arrays.copyOfRange(sequences, first, first + size);
+    }
+  }
+
+  /**
+   * Copy of stored messages and their timestamps, stored messages are unmarshalled when read.
+   */
+  private static class Snapshot<T> extends AbstractList<T> implements RandomAccess {
+
+    private final Object[] stored;
+    private final long[] timestamps;
+    private final int size;
+
+    Snapshot(Object[] stored, long[] timestamps, int size) {
+      this.stored = stored;
+      this.timestamps = timestamps;
+      this.size = size;
+    }
+
+    @Override
+    public T get(int index) {
+      checkIndex(index);
+      return load(stored[index]);
+    }
+
+    long timestamp(int index) {
+      checkIndex(index);
+      return timestamps[index];
+    }
+
+    /**
+     * Returns index of the first message received after given time or size if there is no such message.
+     */
+    int indexOfFirstAfter(long millis) {
+      int low = 0;
+      int high = size;
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        if (timestamp(middle) > millis) {
+          high = middle;
+        } else {
+          low = middle + 1;
+        }
+      }
+      return low;
+    }
+
+    private void checkIndex(int index) {
+      if (index < 0 || index >= size) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+      }
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+  }
+}
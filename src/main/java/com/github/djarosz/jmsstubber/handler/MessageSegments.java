@@ -0,0 +1,182 @@
+package com.github.djarosz.jmsstubber.handler;
+
+import com.github.djarosz.jmsstubber.util.OpenWireCodec;
+import java.io.Closeable;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.jms.Message;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.activemq.util.ByteSequence;
+
+/**
+ * Keeps OpenWire marshalled messages of one destination outside of java heap, either in memory mapped
+ * segment files or in direct byte buffers.
+ *
+ * <p>Message is written as length prefixed record into current segment. New segment is started when
+ * current one is full, first segment is small and every next one is twice as big up to max segment size, so
+ * destinations receiving few messages take little memory. Segment is released (and its file deleted) when all
+ * its messages are released. Only small {@link StoredMessage} handle is kept on heap, message is unmarshalled
+ * every time it is read.
+ */
+@Slf4j
+class MessageSegments implements Closeable {
+
+  static final int INITIAL_SEGMENT_SIZE = 64 * 1024;
+  static final int DEFAULT_MAX_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+  private final File directory;
+  private final int maxSegmentSize;
+  private final Set<Segment> segments = ConcurrentHashMap.newKeySet();
+  private int nextSegmentSize;
+  private Segment current;
+
+  /**
+   * Creates storage writing segments to files in given directory or to direct buffers when directory is null.
+   */
+  MessageSegments(File directory, int maxSegmentSize) {
+    if (maxSegmentSize <= 0) {
+      throw new IllegalArgumentException("Segment size has to be positive: " + maxSegmentSize);
+    }
+    this.directory = directory;
+    this.maxSegmentSize = maxSegmentSize;
+    this.nextSegmentSize = Math.min(INITIAL_SEGMENT_SIZE, maxSegmentSize);
+  }
+
+  StoredMessage write(Message message) {
+    ByteSequence bytes = OpenWireCodec.marshal(message);
+    int recordLength = Integer.BYTES + bytes.getLength();
+
+    Segment segment;
+    int offset;
+    synchronized (this) {
+      if (current == null || current.capacity - current.position < recordLength) {
+        if (current != null) {
+          current.seal();
+        }
+        current = new Segment(Math.max(nextSegmentSize, recordLength));
+        nextSegmentSize = (int) Math.min((long) nextSegmentSize * 2, maxSegmentSize);
+      }
+      segment = current;
+      offset = segment.position;
+      segment.position += recordLength;
+      segment.liveMessages.incrementAndGet();
+    }
+
+    ByteBuffer buffer = segment.buffer.duplicate();
+    buffer.position(offset);
+    buffer.putInt(bytes.getLength());
+    buffer.put(bytes.getData(), bytes.getOffset(), bytes.getLength());
+    return new StoredMessage(segment, offset);
+  }
+
+  /**
+   * Deletes files of all segments and starts next write in new small segment. Stored messages stay readable,
+   * mapping stays valid after its file is deleted, memory is reclaimed when their handles are dropped.
+   */
+  @Override
+  public synchronized void close() {
+    current = null;
+    nextSegmentSize = Math.min(INITIAL_SEGMENT_SIZE, maxSegmentSize);
+    for (Segment segment : segments) {
+      segment.free();
+    }
+  }
+
+  private class Segment {
+
+    private final ByteBuffer buffer;
+    private final Path file;
+    private final int capacity;
+    private final AtomicInteger liveMessages = new AtomicInteger();
+    private final AtomicBoolean freed = new AtomicBoolean();
+    private volatile boolean sealed;
+    private int position;
+
+    @SneakyThrows
+    Segment(int capacity) {
+      this.capacity = capacity;
+      if (directory == null) {
+        file = null;
+        buffer = ByteBuffer.allocateDirect(capacity);
+      } else {
+        Files.createDirectories(directory.toPath());
+        file = Files.createTempFile(directory.toPath(), "messages-", ".segment");
+        log.debug("Mapping message segment: {}", file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+          buffer = channel.map(MapMode.READ_WRITE, 0, capacity);
+        }
+      }
+      segments.add(this);
+    }
+
+    void seal() {
+      sealed = true;
+      freeIfUnused();
+    }
+
+    void release() {
+      liveMessages.decrementAndGet();
+      freeIfUnused();
+    }
+
+    private void freeIfUnused() {
+      if (sealed && liveMessages.get() == 0) {
+        free();
+      }
+    }
+
+    /**
+     * Deletes segment file. Buffer itself is reclaimed by garbage collector once no snapshot refers to it,
+     * mapping stays valid after file is deleted.
+     */
+    @SneakyThrows
+    private void free() {
+      if (freed.compareAndSet(false, true)) {
+        segments.remove(this);
+        if (file != null) {
+          log.debug("Deleting message segment: {}", file);
+          Files.deleteIfExists(file);
+        }
+      }
+    }
+  }
+
+  /**
+   * Handle of message stored in segment.
+   */
+  static final class StoredMessage {
+
+    private final Segment segment;
+    private final int offset;
+
+    private StoredMessage(Segment segment, int offset) {
+      this.segment = segment;
+      this.offset = offset;
+    }
+
+    /**
+     * Unmarshalls stored message. Every call returns new read only message instance.
+     */
+    Message load() {
+      ByteBuffer buffer = segment.buffer.duplicate();
+      buffer.position(offset);
+      byte[] bytes = new byte[buffer.getInt()];
+      buffer.get(bytes);
+      return OpenWireCodec.unmarshal(new ByteSequence(bytes));
+    }
+
+    void release() {
+      segment.release();
+    }
+  }
+}
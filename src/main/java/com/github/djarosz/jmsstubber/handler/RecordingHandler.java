@@ -0,0 +1,140 @@
+package com.github.djarosz.jmsstubber.handler;
+
+import com.github.djarosz.jmsstubber.HandlerSession;
+import com.github.djarosz.jmsstubber.MessageHandler;
+import com.github.djarosz.jmsstubber.util.OpenWireCodec;
+import java.io.Closeable;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import javax.jms.Message;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.activemq.command.ActiveMQDestination;
+import org.apache.activemq.util.ByteSequence;
+
+/**
+ * Records every received message so it can be replayed later with {@link RecordingReplayer}.
+ *
+ * <p>Messages are appended to rolling segment files <i>recording-NNNNN.jmsrec</i> in specified directory.
+ * Segment starts with magic number and format version, followed by records:
+ * <li>int - length of the rest of the record
+ * <li>long - receive time in millis
+ * <li>short + UTF-8 bytes - qualified destination name, e.g. <i>queue://in</i>
+ * <li>OpenWire marshalled message
+ *
+ * <p>New segment is started when current one would exceed max segment size. Existing segments in the
+ * directory are never overwritten, recording continues with the next segment number.
+ */
+@Slf4j
+public class RecordingHandler implements MessageHandler<Message>, Closeable {
+
+  static final int MAGIC = 0x4a4d5352;
+  static final int FORMAT_VERSION = 1;
+  static final int SEGMENT_HEADER_SIZE = 2 * Integer.BYTES;
+  static final long DEFAULT_MAX_SEGMENT_SIZE = 256L * 1024 * 1024;
+  private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+  private static final int MAX_DESTINATION_LENGTH = 0xFFFF;
+
+  private final File directory;
+  private final long maxSegmentSize;
+  private ByteBuffer buffer = ByteBuffer.allocateDirect(INITIAL_BUFFER_SIZE);
+  private FileChannel segment;
+  private long segmentSize;
+  private int segmentNumber;
+
+  public RecordingHandler(File directory) {
+    this(directory, null);
+  }
+
+  /**
+   * Creates handler recording to given directory.
+   *
+   * @param maxSegmentSize max segment file size in bytes, null for default 256 MB. Replayer maps whole
+   *     segments, so it can not exceed {@link Integer#MAX_VALUE}.
+   */
+  @SneakyThrows
+  public RecordingHandler(File directory, Long maxSegmentSize) {
+    if (maxSegmentSize != null && (maxSegmentSize <= SEGMENT_HEADER_SIZE || maxSegmentSize > Integer.MAX_VALUE)) {
+      throw new IllegalArgumentException("Max segment size has to be between " + (SEGMENT_HEADER_SIZE + 1)
+          + " and " + Integer.MAX_VALUE + " bytes: " + maxSegmentSize);
+    }
+    this.directory = directory;
+    this.maxSegmentSize = maxSegmentSize == null ? DEFAULT_MAX_SEGMENT_SIZE : maxSegmentSize;
+    Files.createDirectories(directory.toPath());
+    List<Path> existingSegments = RecordingReplayer.segments(directory);
+    if (!existingSegments.isEmpty()) {
+      segmentNumber = RecordingReplayer.segmentNumber(existingSegments.get(existingSegments.size() - 1)) + 1;
+    }
+  }
+
+  @Override
+  public void handle(HandlerSession session, Message message) throws Throwable {
+    long receivedAt = System.currentTimeMillis();
+    String destination = ((ActiveMQDestination) message.getJMSDestination()).getQualifiedName();
+    ByteSequence bytes = OpenWireCodec.marshal(message);
+    write(receivedAt, destination.getBytes(StandardCharsets.UTF_8), bytes);
+  }
+
+  private synchronized void write(long receivedAt, byte[] destination, ByteSequence bytes) throws Exception {
+    if (destination.length > MAX_DESTINATION_LENGTH) {
+      throw new IllegalArgumentException("Destination name longer than " + MAX_DESTINATION_LENGTH
+          + " bytes can not be recorded");
+    }
+    int recordLength = Long.BYTES + Short.BYTES + destination.length + bytes.getLength();
+    int totalLength = Integer.BYTES + recordLength;
+    if (segment == null || segmentSize + totalLength > maxSegmentSize) {
+      startSegment();
+    }
+    if (buffer.capacity() < totalLength) {
+      buffer = ByteBuffer.allocateDirect(totalLength);
+    }
+
+    buffer.clear();
+    buffer.putInt(recordLength);
+    buffer.putLong(receivedAt);
+    buffer.putShort((short) destination.length);
+    buffer.put(destination);
+    buffer.put(bytes.getData(), bytes.getOffset(), bytes.getLength());
+    buffer.flip();
+    writeFully(buffer);
+    segmentSize += totalLength;
+  }
+
+  private void startSegment() throws Exception {
+    close();
+    Path file = directory.toPath().resolve(RecordingReplayer.segmentName(segmentNumber++));
+    log.info("Recording messages to: {}", file);
+    segment = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+
+    buffer.clear();
+    buffer.putInt(MAGIC);
+    buffer.putInt(FORMAT_VERSION);
+    buffer.flip();
+    writeFully(buffer);
+    segmentSize = SEGMENT_HEADER_SIZE;
+  }
+
+  private void writeFully(ByteBuffer data) throws Exception {
+    while (data.hasRemaining()) {
+      segment.write(data);
+    }
+  }
+
+  /**
+   * Closes current segment. Next recorded message starts new segment.
+   */
+  @Override
+  @SneakyThrows
+  public synchronized void close() {
+    if (segment != null) {
+      segment.close();
+      segment = null;
+    }
+  }
+}
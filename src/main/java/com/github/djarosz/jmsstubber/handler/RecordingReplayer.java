@@ -0,0 +1,190 @@
+package com.github.djarosz.jmsstubber.handler;
+
+import com.github.djarosz.jmsstubber.util.MessageUtils;
+import com.github.djarosz.jmsstubber.util.OpenWireCodec;
+import java.io.File;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.DeliveryMode;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.activemq.command.ActiveMQDestination;
+import org.apache.activemq.util.ByteSequence;
+
+/**
+ * Replays messages recorded by {@link RecordingHandler}, e.g. to stubbed queues of running JmsStubber.
+ *
+ * <p>Messages are sent to their original destinations in recorded order. Replay speed is relative to the
+ * original pace of messages: 1 keeps original delays between messages, 2 halves them, 0 sends messages as
+ * fast as possible.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class RecordingReplayer {
+
+  private static final String SEGMENT_PREFIX = "recording-";
+  private static final String SEGMENT_SUFFIX = ".jmsrec";
+
+  private final File directory;
+  private double speed = 1;
+
+  /**
+   * Sets replay speed relative to original pace of messages. 0 means as fast as possible.
+   */
+  public RecordingReplayer withSpeed(double speed) {
+    this.speed = speed;
+    return this;
+  }
+
+  /**
+   * Sends all recorded messages and returns number of sent messages.
+   */
+  @SneakyThrows
+  public long replay(ConnectionFactory connectionFactory) {
+    Connection connection = connectionFactory.createConnection();
+    try {
+      Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+      MessageProducer producer = session.createProducer(null);
+      Pacer pacer = new Pacer();
+      AtomicLong sent = new AtomicLong();
+      forEach(recorded -> {
+        pacer.awaitTurn(recorded.getReceivedAt());
+        send(session, producer, recorded);
+        sent.incrementAndGet();
+      });
+      log.info("Replayed {} messages from {}", sent, directory);
+      return sent.get();
+    } finally {
+      connection.close();
+    }
+  }
+
+  /**
+   * Reads all recorded messages in recorded order.
+   */
+  @SneakyThrows
+  public void forEach(Consumer<RecordedMessage> consumer) {
+    for (Path segment : segments(directory)) {
+      readSegment(segment, consumer);
+    }
+  }
+
+  @SneakyThrows
+  private static void send(Session session, MessageProducer producer, RecordedMessage recorded) {
+    Message message = MessageUtils.createCopy(session, recorded.getMessage());
+    int deliveryMode = recorded.getMessage().getJMSDeliveryMode() == DeliveryMode.PERSISTENT
+        ? DeliveryMode.PERSISTENT
+        : DeliveryMode.NON_PERSISTENT;
+    producer.send(recorded.getDestination(), message, deliveryMode, recorded.getMessage().getJMSPriority(),
+        Message.DEFAULT_TIME_TO_LIVE);
+  }
+
+  private static void readSegment(Path segment, Consumer<RecordedMessage> consumer) throws Exception {
+    MappedByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+      buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+    }
+    if (buffer.remaining() < RecordingHandler.SEGMENT_HEADER_SIZE
+        || buffer.getInt() != RecordingHandler.MAGIC
+        || buffer.getInt() != RecordingHandler.FORMAT_VERSION) {
+      throw new IllegalStateException("Not a recording segment: " + segment);
+    }
+
+    while (buffer.remaining() >= Integer.BYTES) {
+      int recordLength = buffer.getInt();
+      if (buffer.remaining() < recordLength) {
+        log.warn("Ignoring incomplete record at the end of {}", segment);
+        return;
+      }
+      long receivedAt = buffer.getLong();
+      byte[] destination = new byte[buffer.getShort() & 0xFFFF];
+      buffer.get(destination);
+      byte[] message = new byte[recordLength - Long.BYTES - Short.BYTES - destination.length];
+      buffer.get(message);
+
+      consumer.accept(new RecordedMessage(receivedAt,
+          ActiveMQDestination.createDestination(new String(destination, StandardCharsets.UTF_8),
+              ActiveMQDestination.QUEUE_TYPE),
+          OpenWireCodec.unmarshal(new ByteSequence(message))));
+    }
+  }
+
+  static String segmentName(int segmentNumber) {
+    return String.format("%s%05d%s", SEGMENT_PREFIX, segmentNumber, SEGMENT_SUFFIX);
+  }
+
+  static int segmentNumber(Path segment) {
+    String name = segment.getFileName().toString();
+    return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+  }
+
+  /**
+   * Returns recording segments in directory in recording order.
+   */
+  static List<Path> segments(File directory) throws Exception {
+    if (!directory.isDirectory()) {
+      return Collections.emptyList();
+    }
+    try (Stream<Path> files = Files.list(directory.toPath())) {
+      return files
+          .filter(file -> file.getFileName().toString().matches(SEGMENT_PREFIX + "\\d+" + SEGMENT_SUFFIX))
+          .sorted((first, second) -> Integer.compare(segmentNumber(first), segmentNumber(second)))
+          .collect(Collectors.toList());
+    }
+  }
+
+  /**
+   * Recorded message with its destination and receive time.
+   */
+  @Getter
+  @RequiredArgsConstructor
+  public static class RecordedMessage {
+    private final long receivedAt;
+    private final ActiveMQDestination destination;
+    private final Message message;
+  }
+
+  /**
+   * Delays sending so messages keep recorded pace scaled by replay speed.
+   */
+  private class Pacer {
+    private long firstRecordedAt = -1;
+    private long startedAt;
+
+    void awaitTurn(long recordedAt) {
+      if (speed <= 0) {
+        return;
+      }
+      if (firstRecordedAt < 0) {
+        firstRecordedAt = recordedAt;
+        startedAt = System.nanoTime();
+        return;
+      }
+      long dueAt = startedAt + (long) (TimeUnit.MILLISECONDS.toNanos(recordedAt - firstRecordedAt) / speed);
+      long delay;
+      while ((delay = dueAt - System.nanoTime()) > 0) {
+        LockSupport.parkNanos(delay);
+      }
+    }
+  }
+}
@@ -0,0 +1,275 @@
+package com.github.djarosz.jmsstubber.handler;
+
+import com.github.djarosz.jmsstubber.AsyncMessageHandler;
+import com.github.djarosz.jmsstubber.HandlerSession;
+import com.github.djarosz.jmsstubber.MessageHandler;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import javax.jms.InvalidSelectorException;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import lombok.Getter;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.activemq.ActiveMQMessageTransformation;
+import org.apache.activemq.filter.BooleanExpression;
+import org.apache.activemq.filter.ComparisonExpression;
+import org.apache.activemq.filter.ConstantExpression;
+import org.apache.activemq.filter.Expression;
+import org.apache.activemq.filter.LogicExpression;
+import org.apache.activemq.filter.MessageEvaluationContext;
+import org.apache.activemq.filter.NonCachedMessageEvaluationContext;
+import org.apache.activemq.filter.PropertyExpression;
+import org.apache.activemq.selector.SelectorParser;
+
+/**
+ * Executes handlers of the first route matching received message, so single queue carrying many operation
+ * types does not need one script branching on message properties. Route is a JMS selector or property match
+ * with its own list of handlers, see {@link Builder}.
+ *
+ * <p>Routes are compiled once. Routes matching single property against constants (<i>operation = 'CREATE'</i>,
+ * <i>operation = 'CREATE' OR operation = 'UPDATE'</i>) are indexed by that property so finding a route is
+ * a hash lookup. Other selectors are evaluated in order, only when they are defined before the route found
+ * in the index.
+ *
+ * <p>Handlers of the route are executed in order, asynchronous handlers are chained, see
+ * {@link AsyncMessageHandler}. When this handler is executed synchronously route handlers are executed
+ * synchronously too. Error in route handler stops the route and is reported as error of this handler.
+ */
+@Slf4j
+public class RoutingHandler implements AsyncMessageHandler<Message> {
+
+  @Getter
+  private final List<Route> routes;
+  private final List<PropertyIndex> indexes = new ArrayList<>();
+  private final List<Route> selectorRoutes = new ArrayList<>();
+
+  private RoutingHandler(List<Route> routes) {
+    this.routes = Collections.unmodifiableList(routes);
+    Map<String, PropertyIndex> indexByProperty = new LinkedHashMap<>();
+    for (Route route : routes) {
+      Map<Object, PropertyExpression> values = route.matchedValues();
+      if (values == null) {
+        selectorRoutes.add(route);
+        continue;
+      }
+      values.forEach((value, property) -> indexByProperty
+          .computeIfAbsent(property.getName(), name -> new PropertyIndex(property))
+          .positions.putIfAbsent(indexKey(value), route.position));
+    }
+    indexes.addAll(indexByProperty.values());
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  @Override
+  public CompletionStage<?> handleAsync(HandlerSession session, Message message) throws Throwable {
+    Route route = route(message);
+    if (route == null) {
+      log.debug("[{}]: No route matches message", message.getJMSDestination());
+      return CompletableFuture.completedFuture(null);
+    }
+    log.debug("[{}]: Routing message to: {}", message.getJMSDestination(), route);
+    return executeFrom(0, route.handlers, session, message);
+  }
+
+  @Override
+  public void handle(HandlerSession session, Message message) throws Throwable {
+    Route route = route(message);
+    if (route == null) {
+      log.debug("[{}]: No route matches message", message.getJMSDestination());
+      return;
+    }
+    log.debug("[{}]: Routing message to: {}", message.getJMSDestination(), route);
+    for (MessageHandler handler : route.handlers) {
+      handler.handle(session, message);
+    }
+  }
+
+  /**
+   * Returns first route matching the message or null.
+   */
+  public Route route(Message message) throws JMSException {
+    MessageEvaluationContext context = new NonCachedMessageEvaluationContext();
+    context.setMessageReference(ActiveMQMessageTransformation.transformMessage(message, null));
+
+    int best = routes.size();
+    for (PropertyIndex index : indexes) {
+      Integer position = index.positions.get(indexKey(index.property.evaluate(context)));
+      if (position != null && position < best) {
+        best = position;
+      }
+    }
+    for (Route route : selectorRoutes) {
+      if (route.position >= best) {
+        break;
+      }
+      if (route.selector == null || route.selector.matches(context)) {
+        best = route.position;
+        break;
+      }
+    }
+    return best < routes.size() ? routes.get(best) : null;
+  }
+
+  @SneakyThrows
+  private static CompletionStage<?> executeFrom(int first, List<MessageHandler> handlers, HandlerSession session,
+      Message message) {
+    for (int i = first; i < handlers.size(); i++) {
+      MessageHandler handler = handlers.get(i);
+      if (handler instanceof AsyncMessageHandler) {
+        CompletionStage<?> stage = ((AsyncMessageHandler) handler).handleAsync(session, message);
+        if (stage != null) {
+          int next = i + 1;
+          return stage.thenCompose(result -> executeFrom(next, handlers, session, message));
+        }
+      } else {
+        handler.handle(session, message);
+      }
+    }
+    return CompletableFuture.completedFuture(null);
+  }
+
+  /**
+   * Selector constants are parsed as Integer, Long or Double, message properties can be of any numeric type.
+   * Numbers equal in selector (<i>code = 1.0</i> matches int 1) have equal keys: integral values are Long keys,
+   * other values are Double keys.
+   */
+  private static Object indexKey(Object value) {
+    if (value instanceof Byte || value instanceof Short || value instanceof Integer || value instanceof Long) {
+      return ((Number) value).longValue();
+    }
+    if (value instanceof Float || value instanceof Double) {
+      double number = ((Number) value).doubleValue();
+      long integral = (long) number;
+      // longs far from zero are not exact doubles, keep their double key
+      return integral == number && Math.abs(integral) < 1L << 53 ? (Object) integral : (Object) number;
+    }
+    return value;
+  }
+
+  private static class PropertyIndex {
+    private final PropertyExpression property;
+    private final Map<Object, Integer> positions = new HashMap<>();
+
+    PropertyIndex(PropertyExpression property) {
+      this.property = property;
+    }
+  }
+
+  /**
+   * Route of messages matching selector. Route without selector matches every message.
+   */
+  public static class Route {
+    private final int position;
+    @Getter
+    private final String description;
+    private final BooleanExpression selector;
+    private final Map<Object, PropertyExpression> propertyMatch;
+    @Getter
+    private final List<MessageHandler> handlers;
+
+    Route(int position, String description, BooleanExpression selector, Map<Object, PropertyExpression> propertyMatch,
+        List<MessageHandler> handlers) {
+      this.position = position;
+      this.description = description;
+      this.selector = selector;
+      this.propertyMatch = propertyMatch;
+      this.handlers = handlers;
+    }
+
+    /**
+     * Returns constants matched by this route keyed by value when route matches single property against
+     * constants, otherwise null.
+     */
+    private Map<Object, PropertyExpression> matchedValues() {
+      if (propertyMatch != null) {
+        return propertyMatch;
+      }
+      if (selector == null) {
+        return null;
+      }
+      Map<Object, PropertyExpression> values = new HashMap<>();
+      return collectEqualities(selector, values) ? values : null;
+    }
+
+    private static boolean collectEqualities(Expression expression, Map<Object, PropertyExpression> values) {
+      if (expression instanceof LogicExpression && "OR".equals(((LogicExpression) expression).getExpressionSymbol())) {
+        LogicExpression or = (LogicExpression) expression;
+        return collectEqualities(or.getLeft(), values) && collectEqualities(or.getRight(), values);
+      }
+      if (!(expression instanceof ComparisonExpression)
+          || !"=".equals(((ComparisonExpression) expression).getExpressionSymbol())) {
+        return false;
+      }
+      ComparisonExpression equal = (ComparisonExpression) expression;
+      Expression left = equal.getLeft();
+      Expression right = equal.getRight();
+      Expression constant = left instanceof PropertyExpression ? right : left;
+      if (!(left instanceof PropertyExpression || right instanceof PropertyExpression)
+          || !(constant instanceof ConstantExpression) || ((ConstantExpression) constant).getValue() == null) {
+        return false;
+      }
+      PropertyExpression property = (PropertyExpression) (left instanceof PropertyExpression ? left : right);
+      // all equalities have to test the same property
+      boolean sameProperty = values.values().stream().allMatch(p -> p.getName().equals(property.getName()));
+      values.put(((ConstantExpression) constant).getValue(), property);
+      return sameProperty;
+    }
+
+    @Override
+    public String toString() {
+      return description;
+    }
+  }
+
+  public static class Builder {
+    private final List<Route> routes = new ArrayList<>();
+
+    /**
+     * Adds route of messages matching JMS selector, e.g. <i>operation = 'CREATE' AND JMSType = 'order'</i>.
+     */
+    public Builder route(String selector, MessageHandler... handlers) {
+      try {
+        return add(new Route(routes.size(), selector, SelectorParser.parse(selector), null, Arrays.asList(handlers)));
+      } catch (InvalidSelectorException e) {
+        throw new IllegalArgumentException("Invalid route selector: " + selector, e);
+      }
+    }
+
+    /**
+     * Adds route of messages with property (or header) equal to given value. Value is compared like selector
+     * constant: number matches equal number of any numeric type, string matches only string property, so
+     * <i>"42"</i> does not match int property 42.
+     */
+    public Builder routeByProperty(String property, Object value, MessageHandler... handlers) {
+      return add(new Route(routes.size(), property + " = " + value, null,
+          Collections.singletonMap(value, new PropertyExpression(property)), Arrays.asList(handlers)));
+    }
+
+    /**
+     * Adds route of every message not matched by previous routes.
+     */
+    public Builder otherwise(MessageHandler... handlers) {
+      return add(new Route(routes.size(), "otherwise", null, null, Arrays.asList(handlers)));
+    }
+
+    public RoutingHandler build() {
+      return new RoutingHandler(new ArrayList<>(routes));
+    }
+
+    private Builder add(Route route) {
+      routes.add(route);
+      return this;
+    }
+  }
+}
@@ -0,0 +1,228 @@
+package com.github.djarosz.jmsstubber.handler;
+
+import com.github.djarosz.jmsstubber.HandlerSession;
+import com.github.djarosz.jmsstubber.MessageHandler;
+import com.github.djarosz.jmsstubber.util.JsonPath;
+import com.github.djarosz.jmsstubber.util.XmlPath;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.TextMessage;
+import lombok.NonNull;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.activemq.ActiveMQMessageTransformation;
+import org.apache.activemq.filter.MessageEvaluationContext;
+import org.apache.activemq.filter.NonCachedMessageEvaluationContext;
+import org.apache.activemq.filter.PropertyExpression;
+import org.w3c.dom.Document;
+
+/**
+ * Replies to received message with text built from template, without scripting. Template is loaded and split
+ * into literal and placeholder segments once, expressions of placeholders are compiled once too. Message body
+ * is parsed at most once per message and only when template reads it.
+ *
+ * <p>Placeholders, missing values and values of body which can not be parsed are replaced with empty text
+ * <li>${header:JMSMessageID} - JMS header (JMSMessageID, JMSCorrelationID, JMSType, JMSPriority, ...)
+ * <li>${property:operation} - message property
+ * <li>${json:$.order.id} - value from JSON text body, see {@link JsonPath}
+ * <li>${xpath:/order/id} - value from XML text body, see {@link XmlPath}
+ * <li>${body} - whole text body
+ *
+ * <p>Reply is sent to JMSReplyTo of received message or, when not set, to default reply destination. Reply
+ * JMSCorrelationID is JMSCorrelationID of received message or its JMSMessageID when not set.
+ *
+ * <p>Can be configured as <i>queue.x.handler.1=...TemplateReplyHandler,templates/reply.xml,reply.queue</i>.
+ */
+@Slf4j
+public class TemplateReplyHandler implements MessageHandler<Message> {
+
+  private final List<Segment> segments;
+  private final String defaultReplyTo;
+
+  public TemplateReplyHandler(@NonNull File template) {
+    this(template, null);
+  }
+
+  /**
+   * Creates handler with template loaded from file.
+   *
+   * @param defaultReplyTo destination used when message has no JMSReplyTo, null to skip such messages
+   */
+  public TemplateReplyHandler(@NonNull File template, String defaultReplyTo) {
+    this(read(template), defaultReplyTo);
+  }
+
+  private TemplateReplyHandler(String template, String defaultReplyTo) {
+    this.segments = parse(template);
+    this.defaultReplyTo = defaultReplyTo;
+  }
+
+  /**
+   * Creates handler with given template text.
+   */
+  public static TemplateReplyHandler fromText(@NonNull String template, String defaultReplyTo) {
+    return new TemplateReplyHandler(template, defaultReplyTo);
+  }
+
+  @Override
+  public void handle(HandlerSession session, Message message) throws Throwable {
+    Destination replyTo = message.getJMSReplyTo();
+    if (replyTo == null && defaultReplyTo == null) {
+      log.warn("[{}]: Message has no JMSReplyTo, reply not sent", message.getJMSDestination());
+      return;
+    }
+
+    TextMessage reply = session.getJmsSession().createTextMessage(render(message));
+    reply.setJMSCorrelationID(message.getJMSCorrelationID() != null
+        ? message.getJMSCorrelationID()
+        : message.getJMSMessageID());
+
+    log.debug("[{}]: Replying to: {}", message.getJMSDestination(), replyTo != null ? replyTo : defaultReplyTo);
+    if (replyTo != null) {
+      session.send(replyTo, reply);
+    } else {
+      session.send(defaultReplyTo, reply);
+    }
+  }
+
+  /**
+   * Returns reply text built from template for the message, without sending it.
+   */
+  public String render(Message message) throws Exception {
+    Request request = new Request(message);
+    StringBuilder text = new StringBuilder(256);
+    for (Segment segment : segments) {
+      segment.appendTo(text, request);
+    }
+    return text.toString();
+  }
+
+  @SneakyThrows
+  private static String read(File template) {
+    return new String(Files.readAllBytes(template.toPath()), StandardCharsets.UTF_8);
+  }
+
+  private static List<Segment> parse(String template) {
+    List<Segment> segments = new ArrayList<>();
+    int literalStart = 0;
+    int placeholderStart;
+    while ((placeholderStart = template.indexOf("${", literalStart)) >= 0) {
+      int placeholderEnd = template.indexOf('}', placeholderStart);
+      if (placeholderEnd < 0) {
+        throw new IllegalArgumentException("Unclosed placeholder at " + placeholderStart + " in template");
+      }
+      if (placeholderStart > literalStart) {
+        String literal = template.substring(literalStart, placeholderStart);
+        segments.add((text, request) -> text.append(literal));
+      }
+      segments.add(placeholder(template.substring(placeholderStart + 2, placeholderEnd).trim()));
+      literalStart = placeholderEnd + 1;
+    }
+    if (literalStart < template.length()) {
+      String literal = template.substring(literalStart);
+      segments.add((text, request) -> text.append(literal));
+    }
+    return segments;
+  }
+
+  private static Segment placeholder(String placeholder) {
+    if (placeholder.equals("body")) {
+      return (text, request) -> text.append(request.body());
+    }
+    int colon = placeholder.indexOf(':');
+    String kind = colon < 0 ? placeholder : placeholder.substring(0, colon);
+    String expression = colon < 0 ? "" : placeholder.substring(colon + 1).trim();
+    switch (kind) {
+      case "header":
+      case "property":
+        PropertyExpression property = new PropertyExpression(expression);
+        return (text, request) -> appendValue(text, property.evaluate(request.evaluationContext()));
+      case "json":
+        JsonPath jsonPath = JsonPath.compile(expression);
+        return (text, request) -> appendValue(text, jsonPath.read(request.json()));
+      case "xpath":
+        XmlPath xmlPath = XmlPath.compile(expression);
+        return (text, request) -> {
+          Document xml = request.xml();
+          if (xml != null) {
+            text.append(xmlPath.evaluate(xml));
+          }
+        };
+      default:
+        throw new IllegalArgumentException("Unknown placeholder: ${" + placeholder + "}");
+    }
+  }
+
+  private static void appendValue(StringBuilder text, Object value) {
+    if (value != null) {
+      text.append(value);
+    }
+  }
+
+  @FunctionalInterface
+  private interface Segment {
+    void appendTo(StringBuilder text, Request request) throws Exception;
+  }
+
+  /**
+   * Received message with lazily parsed body. Body which can not be parsed is parsed once too, as null.
+   */
+  private static class Request {
+    private final Message message;
+    private MessageEvaluationContext evaluationContext;
+    private boolean jsonParsed;
+    private Object json;
+    private boolean xmlParsed;
+    private Document xml;
+
+    Request(Message message) {
+      this.message = message;
+    }
+
+    String body() throws JMSException {
+      return message instanceof TextMessage ? ((TextMessage) message).getText() : "";
+    }
+
+    MessageEvaluationContext evaluationContext() throws JMSException {
+      if (evaluationContext == null) {
+        evaluationContext = new NonCachedMessageEvaluationContext();
+        evaluationContext.setMessageReference(ActiveMQMessageTransformation.transformMessage(message, null));
+      }
+      return evaluationContext;
+    }
+
+    Object json() throws JMSException {
+      if (!jsonParsed) {
+        jsonParsed = true;
+        String body = body();
+        try {
+          json = JsonPath.parse(body);
+        } catch (RuntimeException e) {
+          log.warn("[{}]: Body is not JSON, json placeholders are empty: {}", message.getJMSDestination(),
+              e.getMessage());
+        }
+      }
+      return json;
+    }
+
+    Document xml() throws JMSException {
+      if (!xmlParsed) {
+        xmlParsed = true;
+        String body = body();
+        try {
+          xml = XmlPath.parse(body);
+        } catch (Exception e) {
+          log.warn("[{}]: Body is not XML, xpath placeholders are empty: {}", message.getJMSDestination(),
+              e.getMessage());
+        }
+      }
+      return xml;
+    }
+  }
+}
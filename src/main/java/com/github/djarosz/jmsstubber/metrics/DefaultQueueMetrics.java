@@ -0,0 +1,108 @@
+package com.github.djarosz.jmsstubber.metrics;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * Lock free metrics of single queue kept by {@link DefaultStubberMetrics}.
+ */
+@Getter
+public class DefaultQueueMetrics implements QueueMetrics {
+
+  private final String queueName;
+  private final List<HandlerMetrics> handlers;
+  private final LatencyHistogram chainTime = new LatencyHistogram();
+  private final LatencyHistogram resendTime = new LatencyHistogram();
+  @Getter(AccessLevel.NONE)
+  private final LongAdder received = new LongAdder();
+  @Getter(AccessLevel.NONE)
+  private final LongAdder inFlight = new LongAdder();
+  @Getter(AccessLevel.NONE)
+  private final LongAdder errors = new LongAdder();
+  @Getter(AccessLevel.NONE)
+  private final LongAdder dropped = new LongAdder();
+  @Getter(AccessLevel.NONE)
+  private volatile LongSupplier backlog = () -> 0;
+
+  DefaultQueueMetrics(String queueName, List<String> handlerNames) {
+    this.queueName = queueName;
+    this.handlers = Collections.unmodifiableList(handlerNames.stream()
+        .map(HandlerMetrics::new)
+        .collect(Collectors.toList()));
+  }
+
+  @Override
+  public void chainStarted() {
+    received.increment();
+    inFlight.increment();
+  }
+
+  @Override
+  public void chainFinished(long nanos) {
+    inFlight.decrement();
+    chainTime.record(nanos);
+  }
+
+  @Override
+  public void handlerFinished(int handlerIndex, long nanos, boolean failed) {
+    handlers.get(handlerIndex).record(nanos, failed);
+    if (failed) {
+      errors.increment();
+    }
+  }
+
+  @Override
+  public void resendFinished(long nanos, boolean failed) {
+    resendTime.record(nanos);
+    if (failed) {
+      errors.increment();
+    }
+  }
+
+  @Override
+  public void dropped() {
+    dropped.increment();
+  }
+
+  @Override
+  public void backlogGauge(LongSupplier backlog) {
+    this.backlog = backlog;
+  }
+
+  public long getReceived() {
+    return received.sum();
+  }
+
+  /**
+   * Number of messages which handler chain is currently executed for.
+   */
+  public long getInFlight() {
+    return inFlight.sum();
+  }
+
+  /**
+   * Number of failed handler executions and resends.
+   */
+  public long getErrors() {
+    return errors.sum();
+  }
+
+  /**
+   * Number of intercepted messages which were not handled because stubber backlog was full.
+   */
+  public long getDropped() {
+    return dropped.sum();
+  }
+
+  /**
+   * Number of messages received by stubber and waiting to be handled.
+   */
+  public long getBacklog() {
+    return backlog.getAsLong();
+  }
+}
@@ -0,0 +1,136 @@
+package com.github.djarosz.jmsstubber.metrics;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Default metrics implementation. Counters are {@link java.util.concurrent.atomic.LongAdder}s and latencies are
+ * recorded to HdrHistogram recorders so measuring does not add contention between stubber threads.
+ *
+ * <p>Metrics can be read directly, as text in Prometheus exposition format (see {@link #toText()}) or through
+ * JMX MBeans <i>com.github.djarosz.jmsstubber:type=Queue,queue=...</i> when enabled with {@link #withJmx()}.
+ */
+public class DefaultStubberMetrics implements StubberMetrics {
+
+  private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+  private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  private final ConcurrentMap<String, DefaultQueueMetrics> queues = new ConcurrentSkipListMap<>();
+  private volatile boolean jmx;
+
+  /**
+   * Registers metrics of every queue as MBeans in platform MBean server.
+   */
+  public DefaultStubberMetrics withJmx() {
+    jmx = true;
+    queues.values().forEach(MetricsMBeans::register);
+    return this;
+  }
+
+  @Override
+  public QueueMetrics forQueue(String queueName, List<String> handlerNames) {
+    DefaultQueueMetrics metrics = new DefaultQueueMetrics(queueName, handlerNames);
+    queues.put(queueName, metrics);
+    if (jmx) {
+      MetricsMBeans.register(metrics);
+    }
+    return metrics;
+  }
+
+  public Collection<DefaultQueueMetrics> getQueues() {
+    return Collections.unmodifiableCollection(queues.values());
+  }
+
+  public Optional<DefaultQueueMetrics> getQueue(String queueName) {
+    return Optional.ofNullable(queues.get(queueName));
+  }
+
+  /**
+   * Formats all metrics in Prometheus text exposition format. Latencies are in seconds.
+   */
+  public String toText() {
+    StringBuilder text = new StringBuilder(4096);
+    text.append("# TYPE jms_stubber_received_total counter\n");
+    queues.values().forEach(queue -> appendValue(text, "jms_stubber_received_total", labels(queue),
+        queue.getReceived()));
+    text.append("# TYPE jms_stubber_errors_total counter\n");
+    queues.values().forEach(queue -> appendValue(text, "jms_stubber_errors_total", labels(queue),
+        queue.getErrors()));
+    text.append("# TYPE jms_stubber_dropped_total counter\n");
+    queues.values().forEach(queue -> appendValue(text, "jms_stubber_dropped_total", labels(queue),
+        queue.getDropped()));
+    text.append("# TYPE jms_stubber_in_flight gauge\n");
+    queues.values().forEach(queue -> appendValue(text, "jms_stubber_in_flight", labels(queue),
+        queue.getInFlight()));
+    text.append("# TYPE jms_stubber_backlog gauge\n");
+    queues.values().forEach(queue -> appendValue(text, "jms_stubber_backlog", labels(queue),
+        queue.getBacklog()));
+    Map<String, LatencyHistogram> chainTimes = new LinkedHashMap<>();
+    Map<String, LatencyHistogram> resendTimes = new LinkedHashMap<>();
+    Map<String, LatencyHistogram> handlerTimes = new LinkedHashMap<>();
+    queues.values().forEach(queue -> {
+      chainTimes.put(labels(queue), queue.getChainTime());
+      resendTimes.put(labels(queue), queue.getResendTime());
+      queue.getHandlers().forEach(handler -> handlerTimes.put(labels(queue, handler), handler.getTime()));
+    });
+    appendSummaries(text, "jms_stubber_chain_seconds", chainTimes);
+    appendSummaries(text, "jms_stubber_resend_seconds", resendTimes);
+    appendSummaries(text, "jms_stubber_handler_seconds", handlerTimes);
+    text.append("# TYPE jms_stubber_handler_errors_total counter\n");
+    queues.values().forEach(queue -> queue.getHandlers().forEach(handler -> appendValue(text,
+        "jms_stubber_handler_errors_total", labels(queue, handler), handler.getErrors())));
+    return text.toString();
+  }
+
+  private static String labels(DefaultQueueMetrics queue) {
+    return "queue=\"" + escape(queue.getQueueName()) + "\"";
+  }
+
+  private static String labels(DefaultQueueMetrics queue, HandlerMetrics handler) {
+    return labels(queue) + ",handler=\"" + escape(handler.getName()) + "\"";
+  }
+
+  private static String escape(String value) {
+    return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+
+  /**
+   * Appends summary family with quantiles, sum and count of every histogram, followed by gauge family
+   * <i>name_max</i> with maximum values.
+   */
+  private static void appendSummaries(StringBuilder text, String name, Map<String, LatencyHistogram> latencies) {
+    Map<String, Histogram> snapshots = new LinkedHashMap<>();
+    text.append("# TYPE ").append(name).append(" summary\n");
+    latencies.forEach((labels, latency) -> {
+      Histogram histogram = latency.snapshot();
+      snapshots.put(labels, histogram);
+      for (double quantile : QUANTILES) {
+        appendValue(text, name, labels + ",quantile=\"" + quantile + "\"",
+            histogram.getValueAtPercentile(quantile * 100) / NANOS_PER_SECOND);
+      }
+      appendValue(text, name + "_sum", labels, latency.getSum() / NANOS_PER_SECOND);
+      appendValue(text, name + "_count", labels, histogram.getTotalCount());
+    });
+    text.append("# TYPE ").append(name).append("_max gauge\n");
+    snapshots.forEach((labels, histogram) ->
+        appendValue(text, name + "_max", labels, histogram.getMaxValue() / NANOS_PER_SECOND));
+  }
+
+  private static void appendValue(StringBuilder text, String name, String labels, long value) {
+    text.append(name).append('{').append(labels).append("} ").append(value).append('\n');
+  }
+
+  private static void appendValue(StringBuilder text, String name, String labels, double value) {
+    text.append(name).append('{').append(labels).append("} ")
+        .append(String.format(Locale.ROOT, "%.9f", value)).append('\n');
+  }
+}
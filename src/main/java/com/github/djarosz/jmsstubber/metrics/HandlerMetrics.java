@@ -0,0 +1,30 @@
+package com.github.djarosz.jmsstubber.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Execution time and errors of single handler in handler chain of a queue.
+ */
+@Getter
+@RequiredArgsConstructor
+public class HandlerMetrics {
+
+  private final String name;
+  private final LatencyHistogram time = new LatencyHistogram();
+  @Getter(AccessLevel.NONE)
+  private final LongAdder errors = new LongAdder();
+
+  void record(long nanos, boolean failed) {
+    time.record(nanos);
+    if (failed) {
+      errors.increment();
+    }
+  }
+
+  public long getErrors() {
+    return errors.sum();
+  }
+}
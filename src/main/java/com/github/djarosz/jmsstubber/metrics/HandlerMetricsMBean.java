@@ -0,0 +1,21 @@
+package com.github.djarosz.jmsstubber.metrics;
+
+/**
+ * JMX view of {@link HandlerMetrics}. Times are in microseconds.
+ */
+public interface HandlerMetricsMBean {
+
+  String getName();
+
+  long getCount();
+
+  long getErrors();
+
+  double getTimeP50();
+
+  double getTimeP99();
+
+  double getTimeP999();
+
+  double getTimeMax();
+}
@@ -0,0 +1,44 @@
+package com.github.djarosz.jmsstubber.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Histogram of latencies in nanoseconds. Recording is wait free, values recorded since previous read are merged
+ * into total histogram when it is read. Exact sum of recorded values is kept aside, histogram values are rounded.
+ */
+public class LatencyHistogram {
+
+  private static final int SIGNIFICANT_DIGITS = 3;
+
+  private final Recorder recorder = new Recorder(SIGNIFICANT_DIGITS);
+  private final Histogram total = new Histogram(SIGNIFICANT_DIGITS);
+  private final LongAdder sum = new LongAdder();
+  private Histogram interval;
+
+  /**
+   * Records latency, negative values are recorded as 0.
+   */
+  public void record(long nanos) {
+    long value = Math.max(0, nanos);
+    recorder.recordValue(value);
+    sum.add(value);
+  }
+
+  /**
+   * Returns sum of all values recorded so far in nanoseconds.
+   */
+  public long getSum() {
+    return sum.sum();
+  }
+
+  /**
+   * Returns copy of all values recorded so far.
+   */
+  public synchronized Histogram snapshot() {
+    interval = recorder.getIntervalHistogram(interval);
+    total.add(interval);
+    return total.copy();
+  }
+}
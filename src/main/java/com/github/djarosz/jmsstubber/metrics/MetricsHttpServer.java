@@ -0,0 +1,58 @@
+package com.github.djarosz.jmsstubber.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.Closeable;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Serves {@link DefaultStubberMetrics#toText()} over HTTP at <i>/metrics</i>.
+ */
+@Slf4j
+public class MetricsHttpServer implements Closeable {
+
+  private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+  private final DefaultStubberMetrics metrics;
+  private final HttpServer server;
+
+  /**
+   * Starts server listening on given port, 0 means any free port.
+   */
+  @SneakyThrows
+  public MetricsHttpServer(DefaultStubberMetrics metrics, int port) {
+    this.metrics = metrics;
+    this.server = HttpServer.create(new InetSocketAddress(port), 0);
+    server.createContext("/metrics", this::writeMetrics);
+    server.start();
+    log.info("Serving metrics at http://localhost:{}/metrics", getPort());
+  }
+
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  private void writeMetrics(HttpExchange exchange) {
+    try {
+      byte[] body = metrics.toText().getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    } catch (Exception e) {
+      log.warn("Could not write metrics", e);
+    } finally {
+      exchange.close();
+    }
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+  }
+}
@@ -0,0 +1,148 @@
+package com.github.djarosz.jmsstubber.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Registers {@link DefaultQueueMetrics} in platform MBean server.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+abstract class MetricsMBeans {
+
+  static final String DOMAIN = "com.github.djarosz.jmsstubber";
+  private static final double NANOS_PER_MICRO = 1000d;
+
+  @SneakyThrows
+  static void register(DefaultQueueMetrics metrics) {
+    String queue = ObjectName.quote(metrics.getQueueName());
+    register(new ObjectName(DOMAIN + ":type=Queue,queue=" + queue),
+        new StandardMBean(new QueueView(metrics), QueueMetricsMBean.class));
+    List<HandlerMetrics> handlers = metrics.getHandlers();
+    for (HandlerMetrics handler : handlers) {
+      register(new ObjectName(DOMAIN + ":type=Handler,queue=" + queue + ",handler="
+              + ObjectName.quote(handler.getName())),
+          new StandardMBean(new HandlerView(handler), HandlerMetricsMBean.class));
+    }
+  }
+
+  private static void register(ObjectName name, StandardMBean mbean) throws Exception {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    // metrics of restarted stubber replace previous ones
+    if (server.isRegistered(name)) {
+      server.unregisterMBean(name);
+    }
+    server.registerMBean(mbean, name);
+  }
+
+  private static double micros(Histogram histogram, double percentile) {
+    return histogram.getValueAtPercentile(percentile) / NANOS_PER_MICRO;
+  }
+
+  @RequiredArgsConstructor
+  private static class QueueView implements QueueMetricsMBean {
+    private final DefaultQueueMetrics metrics;
+
+    @Override
+    public String getQueueName() {
+      return metrics.getQueueName();
+    }
+
+    @Override
+    public long getReceived() {
+      return metrics.getReceived();
+    }
+
+    @Override
+    public long getErrors() {
+      return metrics.getErrors();
+    }
+
+    @Override
+    public long getInFlight() {
+      return metrics.getInFlight();
+    }
+
+    @Override
+    public long getBacklog() {
+      return metrics.getBacklog();
+    }
+
+    @Override
+    public long getDropped() {
+      return metrics.getDropped();
+    }
+
+    @Override
+    public double getChainTimeP50() {
+      return micros(metrics.getChainTime().snapshot(), 50);
+    }
+
+    @Override
+    public double getChainTimeP99() {
+      return micros(metrics.getChainTime().snapshot(), 99);
+    }
+
+    @Override
+    public double getChainTimeP999() {
+      return micros(metrics.getChainTime().snapshot(), 99.9);
+    }
+
+    @Override
+    public double getChainTimeMax() {
+      return micros(metrics.getChainTime().snapshot(), 100);
+    }
+
+    @Override
+    public double getResendTimeP99() {
+      return micros(metrics.getResendTime().snapshot(), 99);
+    }
+  }
+
+  @RequiredArgsConstructor
+  private static class HandlerView implements HandlerMetricsMBean {
+    private final HandlerMetrics metrics;
+
+    @Override
+    public String getName() {
+      return metrics.getName();
+    }
+
+    @Override
+    public long getCount() {
+      return metrics.getTime().snapshot().getTotalCount();
+    }
+
+    @Override
+    public long getErrors() {
+      return metrics.getErrors();
+    }
+
+    @Override
+    public double getTimeP50() {
+      return micros(metrics.getTime().snapshot(), 50);
+    }
+
+    @Override
+    public double getTimeP99() {
+      return micros(metrics.getTime().snapshot(), 99);
+    }
+
+    @Override
+    public double getTimeP999() {
+      return micros(metrics.getTime().snapshot(), 99.9);
+    }
+
+    @Override
+    public double getTimeMax() {
+      return micros(metrics.getTime().snapshot(), 100);
+    }
+  }
+}
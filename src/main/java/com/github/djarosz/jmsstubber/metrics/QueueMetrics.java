@@ -0,0 +1,47 @@
+package com.github.djarosz.jmsstubber.metrics;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Receives measurements of message handling on single stubbed queue. Methods are called concurrently by all
+ * stubber threads handling the queue so implementations have to be thread safe and cheap.
+ * Times are in nanoseconds.
+ */
+public interface QueueMetrics {
+
+  QueueMetrics NONE = new QueueMetrics() {
+  };
+
+  /**
+   * Message was received and its handler chain is started.
+   */
+  default void chainStarted() {
+  }
+
+  /**
+   * Handler chain, including resending of processed message, finished.
+   */
+  default void chainFinished(long nanos) {
+  }
+
+  default void handlerFinished(int handlerIndex, long nanos, boolean failed) {
+  }
+
+  /**
+   * Processed message was copied and resent to the stubbed queue.
+   */
+  default void resendFinished(long nanos, boolean failed) {
+  }
+
+  /**
+   * Intercepted message was not handled because stubber backlog was full.
+   */
+  default void dropped() {
+  }
+
+  /**
+   * Registers gauge of messages already received by stubber and waiting to be handled.
+   */
+  default void backlogGauge(LongSupplier backlog) {
+  }
+}
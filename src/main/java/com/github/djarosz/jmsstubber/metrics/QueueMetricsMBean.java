@@ -0,0 +1,29 @@
+package com.github.djarosz.jmsstubber.metrics;
+
+/**
+ * JMX view of {@link DefaultQueueMetrics}. Times are in microseconds.
+ */
+public interface QueueMetricsMBean {
+
+  String getQueueName();
+
+  long getReceived();
+
+  long getErrors();
+
+  long getInFlight();
+
+  long getBacklog();
+
+  long getDropped();
+
+  double getChainTimeP50();
+
+  double getChainTimeP99();
+
+  double getChainTimeP999();
+
+  double getChainTimeMax();
+
+  double getResendTimeP99();
+}
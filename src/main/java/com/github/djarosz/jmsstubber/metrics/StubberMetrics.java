@@ -0,0 +1,22 @@
+package com.github.djarosz.jmsstubber.metrics;
+
+import java.util.List;
+
+/**
+ * Metrics SPI. Stubber asks for metrics of every stubbed queue once, when it is started, and reports handling
+ * of every message received on the queue to returned {@link QueueMetrics}.
+ */
+@FunctionalInterface
+public interface StubberMetrics {
+
+  StubberMetrics NONE = (queueName, handlerNames) -> QueueMetrics.NONE;
+
+  /**
+   * Returns metrics of stubbed queue.
+   *
+   * @param handlerNames names of handlers in the order they are executed, handler index reported
+   *     to {@link QueueMetrics#handlerFinished(int, long, boolean)} refers to this list
+   */
+  QueueMetrics forQueue(String queueName, List<String> handlerNames);
+
+}
@@ -0,0 +1,149 @@
+package com.github.djarosz.jmsstubber.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Timer executing large number of short delayed tasks with single thread. Tasks are kept in a wheel of buckets,
+ * every tick thread executes due tasks of one bucket (hashed timing wheel, Varghese and Lauck). Pending task costs
+ * one bucket entry, delays are rounded up to whole ticks.
+ *
+ * <p>Scheduling is lock free. Tasks are executed by timer thread so they should be short and must not block.
+ */
+@Slf4j
+public class HashedWheelTimer {
+
+  private final long tickNanos;
+  private final int mask;
+  private final List<Queue<Timeout>> wheel;
+  private final Queue<Timeout> scheduled = new ConcurrentLinkedQueue<>();
+  private final Thread worker;
+  private final long startedAt;
+  private volatile boolean stopped;
+  private long tick;
+
+  /**
+   * Creates and starts timer.
+   *
+   * @param wheelSize number of buckets, rounded up to power of two
+   */
+  public HashedWheelTimer(String name, long tickDuration, TimeUnit unit, int wheelSize) {
+    this.tickNanos = Math.max(1, unit.toNanos(tickDuration));
+    int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+    this.mask = size - 1;
+    this.wheel = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      wheel.add(new ArrayDeque<>());
+    }
+    this.startedAt = System.nanoTime();
+    this.worker = new Thread(this::run, name);
+    worker.setDaemon(true);
+    worker.start();
+  }
+
+  /**
+   * Executes task after given delay. Returned future completes when task is executed, cancelling it before
+   * prevents execution.
+   */
+  public CompletableFuture<Void> schedule(Runnable task, long delay, TimeUnit unit) {
+    Timeout timeout = new Timeout(task, System.nanoTime() + Math.max(0, unit.toNanos(delay)));
+    if (stopped) {
+      timeout.completeExceptionally(new IllegalStateException("Timer is stopped"));
+      return timeout;
+    }
+    scheduled.add(timeout);
+    if (stopped && scheduled.remove(timeout)) {
+      // timer stopped after the check above and will not see this task
+      timeout.completeExceptionally(new IllegalStateException("Timer is stopped"));
+    }
+    return timeout;
+  }
+
+  /**
+   * Stops timer thread. Tasks which were not executed yet are completed exceptionally.
+   */
+  public void stop() throws InterruptedException {
+    stopped = true;
+    worker.interrupt();
+    worker.join();
+  }
+
+  private void run() {
+    while (!stopped) {
+      long delay;
+      while ((delay = startedAt + (tick + 1) * tickNanos - System.nanoTime()) > 0 && !stopped) {
+        LockSupport.parkNanos(delay);
+      }
+      tick++;
+      transferScheduled();
+      expire(wheel.get((int) (tick & mask)));
+    }
+    cancelPending();
+  }
+
+  private void transferScheduled() {
+    Timeout timeout;
+    while ((timeout = scheduled.poll()) != null) {
+      long dueTick = Math.max(tick, (timeout.deadline - startedAt + tickNanos - 1) / tickNanos);
+      timeout.rounds = (dueTick - tick) / wheel.size();
+      wheel.get((int) (dueTick & mask)).add(timeout);
+    }
+  }
+
+  private static void expire(Queue<Timeout> bucket) {
+    for (int i = bucket.size(); i > 0; i--) {
+      Timeout timeout = bucket.poll();
+      if (timeout.rounds > 0) {
+        timeout.rounds--;
+        bucket.add(timeout);
+      } else if (!timeout.isDone()) {
+        timeout.execute();
+      }
+    }
+  }
+
+  private void cancelPending() {
+    IllegalStateException stoppedException = new IllegalStateException("Timer is stopped");
+    Timeout timeout;
+    while ((timeout = scheduled.poll()) != null) {
+      timeout.completeExceptionally(stoppedException);
+    }
+    int pending = 0;
+    for (Queue<Timeout> bucket : wheel) {
+      while ((timeout = bucket.poll()) != null) {
+        pending += timeout.completeExceptionally(stoppedException) ? 1 : 0;
+      }
+    }
+    if (pending > 0) {
+      log.warn("Timer stopped with {} pending tasks", pending);
+    }
+  }
+
+  private static class Timeout extends CompletableFuture<Void> {
+    private final Runnable task;
+    private final long deadline;
+    private long rounds;
+
+    Timeout(Runnable task, long deadline) {
+      this.task = task;
+      this.deadline = deadline;
+    }
+
+    void execute() {
+      try {
+        task.run();
+        complete(null);
+      } catch (Throwable e) {
+        // also checked exceptions thrown sneakily, timer thread must survive failing task
+        completeExceptionally(e);
+      }
+    }
+  }
+}
@@ -0,0 +1,376 @@
+package com.github.djarosz.jmsstubber.util;
+
+import groovy.json.JsonException;
+import groovy.json.JsonSlurper;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiled path to a value in parsed JSON document (maps and lists returned by {@link JsonSlurper}). Supports
+ * child names and array indexes: <i>$.order.items[0].id</i>, <i>$['order']['id']</i>.
+ *
+ * <p>Path is compiled once, reading value is a walk through the document without any parsing. Value can also
+ * be read directly from JSON text, see {@link #readText(String)}.
+ */
+public final class JsonPath {
+
+  /**
+   * Slurper creates new parser for every text, so it can be shared. Index overlay and lax parsers are faster
+   * but do not decode escapes in field names.
+   */
+  private static final JsonSlurper SLURPER = new JsonSlurper();
+
+  private final String expression;
+  private final Object[] steps;
+
+  private JsonPath(String expression, Object[] steps) {
+    this.expression = expression;
+    this.steps = steps;
+  }
+
+  /**
+   * Compiles path.
+   *
+   * @throws IllegalArgumentException when path is not valid
+   */
+  public static JsonPath compile(String expression) {
+    String path = expression.trim();
+    if (!path.startsWith("$")) {
+      throw new IllegalArgumentException("JSON path has to start with $: " + expression);
+    }
+    List<Object> steps = new ArrayList<>();
+    int i = 1;
+    while (i < path.length()) {
+      char c = path.charAt(i);
+      if (c == '.') {
+        int end = i + 1;
+        while (end < path.length() && path.charAt(end) != '.' && path.charAt(end) != '[') {
+          end++;
+        }
+        if (end == i + 1) {
+          throw new IllegalArgumentException("Empty name in JSON path: " + expression);
+        }
+        steps.add(path.substring(i + 1, end));
+        i = end;
+      } else if (c == '[') {
+        int end = path.indexOf(']', i);
+        if (end < 0) {
+          throw new IllegalArgumentException("Unclosed [ in JSON path: " + expression);
+        }
+        String step = path.substring(i + 1, end).trim();
+        if (step.length() > 1 && (step.charAt(0) == '\'' || step.charAt(0) == '"')) {
+          steps.add(step.substring(1, step.length() - 1));
+        } else {
+          try {
+            steps.add(Integer.parseInt(step));
+          } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid index in JSON path: " + expression, e);
+          }
+        }
+        i = end + 1;
+      } else {
+        throw new IllegalArgumentException("Unexpected '" + c + "' in JSON path: " + expression);
+      }
+    }
+    return new JsonPath(expression, steps.toArray());
+  }
+
+  /**
+   * Parses JSON text to maps and lists.
+   */
+  public static Object parse(String json) {
+    return SLURPER.parseText(json);
+  }
+
+  /**
+   * Returns value at this path or null when document does not contain it.
+   */
+  public Object read(Object json) {
+    Object node = json;
+    for (Object step : steps) {
+      if (step instanceof String && node instanceof Map) {
+        node = ((Map<?, ?>) node).get(step);
+      } else if (step instanceof Integer && node instanceof List) {
+        List<?> list = (List<?>) node;
+        int index = (Integer) step;
+        node = index >= 0 && index < list.size() ? list.get(index) : null;
+      } else {
+        return null;
+      }
+    }
+    return node;
+  }
+
+  /**
+   * Returns value at this path read from JSON text or null when text does not contain it. Text is scanned only
+   * up to the value, values not on the path are skipped without parsing, only object or array found at the
+   * path is parsed.
+   *
+   * @throws JsonException when text is not valid JSON up to the value
+   */
+  public Object readText(String json) {
+    Scanner scanner = new Scanner(json);
+    for (Object step : steps) {
+      if (!(step instanceof String ? scanner.toField((String) step) : scanner.toElement((Integer) step))) {
+        return null;
+      }
+    }
+    return scanner.value();
+  }
+
+  @Override
+  public String toString() {
+    return expression;
+  }
+
+  /**
+   * Walks JSON text, position is always at the start of value or at the end of text.
+   */
+  private static class Scanner {
+    private final String text;
+    private int pos;
+    private boolean escapedString;
+
+    Scanner(String text) {
+      this.text = text;
+      skipWhitespace();
+    }
+
+    /**
+     * Moves to the value of field in object at current position, false when there is no object or field.
+     */
+    boolean toField(String name) {
+      if (!at('{')) {
+        return false;
+      }
+      pos++;
+      while (true) {
+        skipWhitespace();
+        if (at('}')) {
+          return false;
+        }
+        if (!at('"')) {
+          throw error("field name");
+        }
+        int keyStart = pos;
+        skipString();
+        final boolean matches = escapedString
+            ? name.equals(decodeString(keyStart))
+            : pos - keyStart - 2 == name.length() && text.startsWith(name, keyStart + 1);
+        skipWhitespace();
+        expect(':');
+        skipWhitespace();
+        if (matches) {
+          return true;
+        }
+        skipValue();
+        if (!nextMember('}')) {
+          return false;
+        }
+      }
+    }
+
+    /**
+     * Moves to the element of array at current position, false when there is no array or element.
+     */
+    boolean toElement(int index) {
+      if (!at('[') || index < 0) {
+        return false;
+      }
+      pos++;
+      skipWhitespace();
+      if (at(']')) {
+        return false;
+      }
+      for (int i = 0; i < index; i++) {
+        skipValue();
+        if (!nextMember(']')) {
+          return false;
+        }
+        skipWhitespace();
+      }
+      return true;
+    }
+
+    /**
+     * Returns value at current position, converted like {@link JsonSlurper} does.
+     */
+    Object value() {
+      if (pos >= text.length()) {
+        throw error("value");
+      }
+      int start = pos;
+      char c = text.charAt(pos);
+      if (c == '"') {
+        return decodeString(start);
+      }
+      if (c == '{' || c == '[') {
+        skipValue();
+        return parse(text.substring(start, pos));
+      }
+      skipValue();
+      String literal = text.substring(start, pos);
+      switch (literal) {
+        case "true":
+          return Boolean.TRUE;
+        case "false":
+          return Boolean.FALSE;
+        case "null":
+          return null;
+        default:
+          return number(literal);
+      }
+    }
+
+    private Object number(String literal) {
+      try {
+        if (literal.indexOf('.') >= 0 || literal.indexOf('e') >= 0 || literal.indexOf('E') >= 0) {
+          return new BigDecimal(literal);
+        }
+        BigInteger number = new BigInteger(literal);
+        if (number.bitLength() < Integer.SIZE) {
+          return number.intValue();
+        }
+        return number.bitLength() < Long.SIZE ? (Object) number.longValue() : number;
+      } catch (NumberFormatException e) {
+        throw error("value");
+      }
+    }
+
+    /**
+     * Skips separator after member of object or array, false when it was the last member.
+     */
+    private boolean nextMember(char end) {
+      skipWhitespace();
+      if (at(',')) {
+        pos++;
+        return true;
+      }
+      expect(end);
+      return false;
+    }
+
+    private void skipValue() {
+      if (pos >= text.length()) {
+        throw error("value");
+      }
+      char c = text.charAt(pos);
+      if (c == '"') {
+        skipString();
+      } else if (c == '{' || c == '[') {
+        int depth = 0;
+        do {
+          c = text.charAt(pos);
+          if (c == '"') {
+            skipString();
+            continue;
+          }
+          if (c == '{' || c == '[') {
+            depth++;
+          } else if (c == '}' || c == ']') {
+            depth--;
+          }
+          pos++;
+        } while (depth > 0 && pos < text.length());
+        if (depth > 0) {
+          throw error("end of object or array");
+        }
+      } else {
+        int start = pos;
+        while (pos < text.length() && ",}] \t\r\n".indexOf(text.charAt(pos)) < 0) {
+          pos++;
+        }
+        if (pos == start) {
+          throw error("value");
+        }
+      }
+    }
+
+    private void skipString() {
+      escapedString = false;
+      pos++;
+      while (pos < text.length()) {
+        char c = text.charAt(pos++);
+        if (c == '"') {
+          return;
+        }
+        if (c == '\\') {
+          escapedString = true;
+          pos++;
+        }
+      }
+      throw error("end of string");
+    }
+
+    private String decodeString(int start) {
+      StringBuilder value = new StringBuilder();
+      int i = start + 1;
+      while (i < text.length()) {
+        char c = text.charAt(i++);
+        if (c == '"') {
+          pos = i;
+          return value.toString();
+        }
+        if (c != '\\') {
+          value.append(c);
+          continue;
+        }
+        if (i >= text.length()) {
+          break;
+        }
+        char escaped = text.charAt(i++);
+        switch (escaped) {
+          case 'b':
+            value.append('\b');
+            break;
+          case 'f':
+            value.append('\f');
+            break;
+          case 'n':
+            value.append('\n');
+            break;
+          case 'r':
+            value.append('\r');
+            break;
+          case 't':
+            value.append('\t');
+            break;
+          case 'u':
+            if (i + 4 > text.length()) {
+              throw error("unicode escape");
+            }
+            value.append((char) Integer.parseInt(text.substring(i, i + 4), 16));
+            i += 4;
+            break;
+          default:
+            value.append(escaped);
+        }
+      }
+      throw error("end of string");
+    }
+
+    private void skipWhitespace() {
+      while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+        pos++;
+      }
+    }
+
+    private boolean at(char c) {
+      return pos < text.length() && text.charAt(pos) == c;
+    }
+
+    private void expect(char c) {
+      if (!at(c)) {
+        throw error("'" + c + "'");
+      }
+      pos++;
+    }
+
+    private JsonException error(String expected) {
+      return new JsonException("Expected " + expected + " at position " + pos + " of JSON text");
+    }
+  }
+}
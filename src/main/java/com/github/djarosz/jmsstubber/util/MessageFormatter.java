@@ -0,0 +1,119 @@
+package com.github.djarosz.jmsstubber.util;
+
+import java.util.Enumeration;
+import javax.jms.BytesMessage;
+import javax.jms.DeliveryMode;
+import javax.jms.MapMessage;
+import javax.jms.Message;
+import javax.jms.ObjectMessage;
+import javax.jms.StreamMessage;
+import javax.jms.TextMessage;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.SneakyThrows;
+
+/**
+ * Formats JMS message as a single line of readable text. Only JMS headers, properties and body are read
+ * through JMS API, body is truncated to specified length.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public abstract class MessageFormatter {
+
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  /**
+   * Formats message headers, properties and body truncated to max body length.
+   */
+  @SneakyThrows
+  public static String format(Message message, int maxBodyLength) {
+    StringBuilder text = new StringBuilder(256);
+    text.append("headers={");
+    appendHeader(text, "JMSMessageID", message.getJMSMessageID());
+    appendHeader(text, "JMSCorrelationID", message.getJMSCorrelationID());
+    appendHeader(text, "JMSDestination", message.getJMSDestination());
+    appendHeader(text, "JMSReplyTo", message.getJMSReplyTo());
+    appendHeader(text, "JMSType", message.getJMSType());
+    appendHeader(text, "JMSDeliveryMode",
+        message.getJMSDeliveryMode() == DeliveryMode.PERSISTENT ? "PERSISTENT" : "NON_PERSISTENT");
+    appendHeader(text, "JMSPriority", message.getJMSPriority());
+    appendHeader(text, "JMSTimestamp", message.getJMSTimestamp());
+    appendHeader(text, "JMSExpiration", message.getJMSExpiration() == 0 ? null : message.getJMSExpiration());
+    appendHeader(text, "JMSRedelivered", message.getJMSRedelivered() ? Boolean.TRUE : null);
+    closeBrace(text);
+
+    text.append(", properties={");
+    for (Enumeration<?> names = message.getPropertyNames(); names.hasMoreElements(); ) {
+      String name = (String) names.nextElement();
+      appendHeader(text, name, message.getObjectProperty(name));
+    }
+    closeBrace(text);
+
+    text.append(", body=");
+    appendBody(text, message, maxBodyLength);
+    return text.toString();
+  }
+
+  private static void appendHeader(StringBuilder text, String name, Object value) {
+    if (value != null) {
+      text.append(name).append('=').append(value).append(", ");
+    }
+  }
+
+  private static void closeBrace(StringBuilder text) {
+    if (text.charAt(text.length() - 1) == ' ') {
+      text.setLength(text.length() - 2);
+    }
+    text.append('}');
+  }
+
+  private static void appendBody(StringBuilder text, Message message, int maxBodyLength) throws Exception {
+    if (message instanceof TextMessage) {
+      appendTruncated(text, ((TextMessage) message).getText(), maxBodyLength);
+    } else if (message instanceof BytesMessage) {
+      appendBytes(text, (BytesMessage) message, maxBodyLength);
+    } else if (message instanceof MapMessage) {
+      MapMessage mapMessage = (MapMessage) message;
+      StringBuilder map = new StringBuilder("{");
+      for (Enumeration<?> names = mapMessage.getMapNames(); names.hasMoreElements(); ) {
+        String name = (String) names.nextElement();
+        appendHeader(map, name, mapMessage.getObject(name));
+      }
+      closeBrace(map);
+      appendTruncated(text, map.toString(), maxBodyLength);
+    } else if (message instanceof ObjectMessage) {
+      // deserializing object could be expensive or fail on missing classes
+      text.append("<object>");
+    } else if (message instanceof StreamMessage) {
+      text.append("<stream>");
+    } else {
+      text.append("<none>");
+    }
+  }
+
+  private static void appendTruncated(StringBuilder text, String value, int maxLength) {
+    if (value == null) {
+      text.append("null");
+    } else if (value.length() <= maxLength) {
+      text.append(value);
+    } else {
+      text.append(value, 0, maxLength).append("...(").append(value.length()).append(" chars)");
+    }
+  }
+
+  private static void appendBytes(StringBuilder text, BytesMessage message, int maxLength) throws Exception {
+    message.reset();
+    long length = message.getBodyLength();
+    byte[] bytes = new byte[(int) Math.min(length, maxLength / 2)];
+    message.readBytes(bytes);
+    message.reset();
+
+    text.append('<').append(length).append(" bytes:");
+    for (byte value : bytes) {
+      text.append(HEX_DIGITS[(value >> 4) & 0xf]).append(HEX_DIGITS[value & 0xf]);
+    }
+    if (bytes.length < length) {
+      text.append("...");
+    }
+    text.append('>');
+  }
+}
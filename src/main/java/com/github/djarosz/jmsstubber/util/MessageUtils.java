@@ -5,6 +5,7 @@ import java.util.function.BiConsumer;
 import javax.jms.BytesMessage;
 import javax.jms.MapMessage;
 import javax.jms.Message;
+import javax.jms.MessageEOFException;
 import javax.jms.ObjectMessage;
 import javax.jms.Session;
 import javax.jms.StreamMessage;
@@ -12,15 +13,29 @@ import javax.jms.TextMessage;
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
 import lombok.SneakyThrows;
+import org.apache.activemq.ActiveMQSession;
+import org.apache.activemq.command.ActiveMQMessage;
 
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 public abstract class MessageUtils {
 
+  private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+  private static final int MAX_RETAINED_BUFFER_SIZE = 4 * 1024 * 1024;
+  private static final ThreadLocal<byte[]> COPY_BUFFER = ThreadLocal.withInitial(() -> new byte[INITIAL_BUFFER_SIZE]);
+
   /**
-   * Creates copy of a JMS message.
+   * Creates copy of a JMS message. Copy has the same body, properties and JMSCorrelationID, JMSReplyTo
+   * and JMSType headers as the original message.
+   *
+   * <p>ActiveMQ messages created within ActiveMQ session are copied without copying their body. Copy
+   * shares marshalled content with the original and gets its own content only when it is modified.
    */
   @SneakyThrows
   public static <T extends Message> T createCopy(Session session, T message) {
+    if (message instanceof ActiveMQMessage && session instanceof ActiveMQSession) {
+      return (T) createActiveMqCopy((ActiveMQSession) session, (ActiveMQMessage) message);
+    }
+
     Message copy = null;
     if (message instanceof ObjectMessage) {
       copy = copy(session::createObjectMessage, MessageUtils::copyObjectMessage, (ObjectMessage) message);
@@ -42,32 +57,81 @@ public abstract class MessageUtils {
     T get() throws Throwable;
   }
 
+  private static ActiveMQMessage createActiveMqCopy(ActiveMQSession session, ActiveMQMessage message) {
+    ActiveMQMessage copy = (ActiveMQMessage) message.copy();
+    // reset state related to delivery of the original message
+    copy.setMessageId(null);
+    copy.setProducerId(null);
+    copy.setTransactionId(null);
+    copy.setOriginalDestination(null);
+    copy.setOriginalTransactionId(null);
+    copy.setRedeliveryCounter(0);
+    copy.setBrokerPath(null);
+    copy.setCluster(null);
+    copy.setArrival(0);
+    copy.setBrokerInTime(0);
+    copy.setBrokerOutTime(0);
+    copy.setJMSXGroupFirstForConsumer(false);
+    copy.setAcknowledgeCallback(null);
+    copy.setConnection(session.getConnection());
+    copy.setReadOnlyBody(false);
+    copy.setReadOnlyProperties(false);
+    return copy;
+  }
+
   @SneakyThrows
   private static <T extends Message> T copy(MessageCreator<T> creator, BiConsumer<T, T> copier, T message) {
     T copy = creator.get();
+    copyMessageHeaders(copy, message);
     copyMessageAttributes(copy, message);
     copier.accept(copy, message);
     return copy;
   }
 
+  /**
+   * Copies stream message field by field so field types are preserved.
+   */
   @SneakyThrows
   private static void copyStreamMessage(StreamMessage dst, StreamMessage src) {
-    byte[] buffer = new byte[1024];
-    int count = 0;
-    do {
-      count = src.readBytes(buffer);
-      dst.writeBytes(buffer, 0, count);
-    } while (count == buffer.length);
+    src.reset();
+    try {
+      while (true) {
+        dst.writeObject(src.readObject());
+      }
+    } catch (MessageEOFException expected) {
+      // all fields copied
+    } finally {
+      src.reset();
+    }
   }
 
+  /**
+   * Copies bytes message body using single thread local buffer sized from message body length.
+   * Bodies larger than {@link #MAX_RETAINED_BUFFER_SIZE} are copied in chunks.
+   */
   @SneakyThrows
   private static void copyBytesMessage(BytesMessage dst, BytesMessage src) {
-    byte[] buffer = new byte[1024];
-    int count = 0;
-    do {
-      count = src.readBytes(buffer);
+    src.reset();
+    long remaining = src.getBodyLength();
+    byte[] buffer = copyBuffer(remaining);
+    while (remaining > 0) {
+      int count = src.readBytes(buffer, (int) Math.min(buffer.length, remaining));
+      if (count <= 0) {
+        break;
+      }
       dst.writeBytes(buffer, 0, count);
-    } while (count == buffer.length);
+      remaining -= count;
+    }
+    src.reset();
+  }
+
+  private static byte[] copyBuffer(long bodyLength) {
+    byte[] buffer = COPY_BUFFER.get();
+    if (buffer.length < bodyLength && buffer.length < MAX_RETAINED_BUFFER_SIZE) {
+      buffer = new byte[(int) Math.min(bodyLength, MAX_RETAINED_BUFFER_SIZE)];
+      COPY_BUFFER.set(buffer);
+    }
+    return buffer;
   }
 
   @SneakyThrows
@@ -89,6 +153,13 @@ public abstract class MessageUtils {
     dst.setObject(src.getObject());
   }
 
+  @SneakyThrows
+  private static <T extends Message> void copyMessageHeaders(T dst, T src) {
+    dst.setJMSCorrelationID(src.getJMSCorrelationID());
+    dst.setJMSReplyTo(src.getJMSReplyTo());
+    dst.setJMSType(src.getJMSType());
+  }
+
   @SneakyThrows
   private static <T extends Message> void copyMessageAttributes(T dst, T src) {
     for (Enumeration<String> propNameEnum = src.getPropertyNames(); propNameEnum.hasMoreElements(); ) {
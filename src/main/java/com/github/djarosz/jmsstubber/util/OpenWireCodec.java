@@ -0,0 +1,41 @@
+package com.github.djarosz.jmsstubber.util;
+
+import javax.jms.Message;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.SneakyThrows;
+import org.apache.activemq.ActiveMQMessageTransformation;
+import org.apache.activemq.command.ActiveMQMessage;
+import org.apache.activemq.openwire.OpenWireFormat;
+import org.apache.activemq.util.ByteSequence;
+
+/**
+ * Marshals messages to and from ActiveMQ OpenWire format. Every thread uses its own wire format instance
+ * so marshalling does not contend on wire format lock.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public abstract class OpenWireCodec {
+
+  private static final ThreadLocal<OpenWireFormat> WIRE_FORMAT = ThreadLocal.withInitial(OpenWireFormat::new);
+
+  /**
+   * Marshals message, converting it to ActiveMQ message first if needed. Returned sequence is backed by thread
+   * local buffer, it is valid until next call made by the same thread.
+   */
+  @SneakyThrows
+  public static ByteSequence marshal(Message message) {
+    ActiveMQMessage amqMessage = ActiveMQMessageTransformation.transformMessage(message, null);
+    return WIRE_FORMAT.get().marshal(amqMessage);
+  }
+
+  /**
+   * Unmarshals read only message.
+   */
+  @SneakyThrows
+  public static ActiveMQMessage unmarshal(ByteSequence bytes) {
+    ActiveMQMessage message = (ActiveMQMessage) WIRE_FORMAT.get().unmarshal(bytes);
+    message.setReadOnlyBody(true);
+    message.setReadOnlyProperties(true);
+    return message;
+  }
+}
@@ -0,0 +1,207 @@
+package com.github.djarosz.jmsstubber.util;
+
+import java.io.StringReader;
+import java.util.regex.Pattern;
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+import lombok.SneakyThrows;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Compiled XPath expression evaluated to text, e.g. <i>/order/id</i> or <i>count(//item)</i>.
+ *
+ * <p>JAXP parsers and compiled expressions are not thread safe, so every thread parses documents with its own
+ * reused parser and evaluates expression compiled once by that thread.
+ *
+ * <p>Simple absolute paths (<i>/order/id</i>, <i>/order/customer/@id</i>) can be evaluated directly on XML text,
+ * see {@link #evaluate(String)}.
+ */
+public final class XmlPath {
+
+  private static final Pattern SIMPLE_PATH = Pattern.compile("(/[A-Za-z_][\\w.-]*)+(/@[A-Za-z_][\\w.-]*)?");
+  private static final XMLInputFactory INPUT_FACTORY = newInputFactory();
+
+  private static final ThreadLocal<DocumentBuilder> DOCUMENT_BUILDER = ThreadLocal.withInitial(
+      XmlPath::newDocumentBuilder);
+  private static final ThreadLocal<XPathFactory> XPATH_FACTORY = ThreadLocal.withInitial(XPathFactory::newInstance);
+
+  private final String expression;
+  private final ThreadLocal<XPathExpression> compiled;
+  private final String[] elements;
+  private final String attribute;
+
+  private XmlPath(String expression) {
+    this.expression = expression;
+    this.compiled = ThreadLocal.withInitial(() -> compileForThread(expression));
+    String path = expression.trim();
+    if (SIMPLE_PATH.matcher(path).matches()) {
+      int attributeStart = path.indexOf("/@");
+      this.elements = (attributeStart < 0 ? path : path.substring(0, attributeStart)).substring(1).split("/");
+      this.attribute = attributeStart < 0 ? null : path.substring(attributeStart + 2);
+    } else {
+      this.elements = null;
+      this.attribute = null;
+    }
+  }
+
+  /**
+   * Compiles expression.
+   *
+   * @throws IllegalArgumentException when expression is not valid
+   */
+  public static XmlPath compile(String expression) {
+    XmlPath xmlPath = new XmlPath(expression);
+    xmlPath.compiled.get();
+    return xmlPath;
+  }
+
+  /**
+   * Parses XML text with parser of the current thread.
+   */
+  @SneakyThrows
+  public static Document parse(String xml) {
+    return DOCUMENT_BUILDER.get().parse(new InputSource(new StringReader(xml)));
+  }
+
+  /**
+   * Returns text value of the expression, empty string when document does not contain it.
+   */
+  @SneakyThrows
+  public String evaluate(Document document) {
+    return (String) compiled.get().evaluate(document, XPathConstants.STRING);
+  }
+
+  /**
+   * Returns text value of the expression evaluated on XML text, empty string when text does not contain it.
+   * Simple absolute path is evaluated while reading the text, reading stops at the first matching element
+   * and nothing is kept in memory. Other expressions are evaluated on parsed document.
+   */
+  @SneakyThrows
+  public String evaluate(String xml) {
+    if (elements == null) {
+      return evaluate(parse(xml));
+    }
+    XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(new StringReader(xml));
+    try {
+      return stream(reader);
+    } finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * Returns whether expression is evaluated while reading XML text, without parsing whole document.
+   */
+  public boolean isStreaming() {
+    return elements != null;
+  }
+
+  private String stream(XMLStreamReader reader) throws XMLStreamException {
+    // number of open elements and how many of them match path from the root
+    int depth = 0;
+    int matched = 0;
+    while (reader.hasNext()) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        if (matched == depth && matched < elements.length && matches(reader.getLocalName(), elements[matched])) {
+          matched++;
+          if (matched == elements.length) {
+            if (attribute == null) {
+              return readText(reader);
+            }
+            String value = readAttribute(reader);
+            if (value != null) {
+              return value;
+            }
+          }
+        }
+        depth++;
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        depth--;
+        matched = Math.min(matched, depth);
+      }
+    }
+    return "";
+  }
+
+  private String readAttribute(XMLStreamReader reader) {
+    for (int i = 0; i < reader.getAttributeCount(); i++) {
+      if (matches(reader.getAttributeLocalName(i), attribute)) {
+        return reader.getAttributeValue(i);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Reads string value of element at current position, text of the element and all its descendants.
+   */
+  private static String readText(XMLStreamReader reader) throws XMLStreamException {
+    StringBuilder text = new StringBuilder();
+    int depth = 1;
+    while (depth > 0) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        depth++;
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        depth--;
+      } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+          || event == XMLStreamConstants.SPACE) {
+        text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+      }
+    }
+    return text.toString();
+  }
+
+  /**
+   * Documents are parsed without namespaces and XPath matches name of such node with its local part.
+   */
+  private static boolean matches(String localName, String name) {
+    return name.equals(localName);
+  }
+
+  private static XMLInputFactory newInputFactory() {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    return factory;
+  }
+
+  private static XPathExpression compileForThread(String expression) {
+    try {
+      return XPATH_FACTORY.get().newXPath().compile(expression);
+    } catch (XPathExpressionException e) {
+      throw new IllegalArgumentException("Invalid XPath: " + expression, e);
+    }
+  }
+
+  @SneakyThrows(ParserConfigurationException.class)
+  private static DocumentBuilder newDocumentBuilder() {
+    DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+    factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+    // documents with DOCTYPE are rejected, so entities are neither expanded nor loaded
+    factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+    factory.setExpandEntityReferences(false);
+    DocumentBuilder documentBuilder = factory.newDocumentBuilder();
+    // report errors only by exceptions, default handler prints them to stderr
+    documentBuilder.setErrorHandler(new DefaultHandler());
+    return documentBuilder;
+  }
+
+  @Override
+  public String toString() {
+    return expression;
+  }
+}
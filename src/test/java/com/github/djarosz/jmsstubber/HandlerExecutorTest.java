@@ -0,0 +1,47 @@
+package com.github.djarosz.jmsstubber;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class HandlerExecutorTest {
+
+  @Test
+  public void shouldExecuteOnVirtualThreadsOnlyWhenRuntimeSupportsThem() throws Exception {
+    boolean virtualThreadsSupported = Double.parseDouble(System.getProperty("java.specification.version")) >= 21;
+    if (!virtualThreadsSupported) {
+      assertThatThrownBy(HandlerExecutor::virtualThreads).isInstanceOf(UnsupportedOperationException.class);
+      assertThatThrownBy(() -> HandlerExecutor.parse("virtual")).isInstanceOf(UnsupportedOperationException.class);
+      return;
+    }
+
+    HandlerExecutor executor = HandlerExecutor.parse("virtual");
+    assertThat(isVirtualThread(executor)).isEqualTo(true);
+    // closed executor is used again when stubber is restarted
+    executor.close();
+    assertThat(isVirtualThread(executor)).isEqualTo(true);
+    executor.close();
+  }
+
+  private static Object isVirtualThread(HandlerExecutor executor) throws Exception {
+    CompletableFuture<Object> isVirtual = new CompletableFuture<>();
+    executor.execute(() -> {
+      try {
+        isVirtual.complete(Thread.class.getMethod("isVirtual").invoke(Thread.currentThread()));
+      } catch (ReflectiveOperationException e) {
+        isVirtual.completeExceptionally(e);
+      }
+    });
+    return isVirtual.get(5, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void shouldExecuteOnCallingThreadByDefault() {
+    Thread[] executedBy = new Thread[1];
+    HandlerExecutor.parse("consumer").execute(() -> executedBy[0] = Thread.currentThread());
+    assertThat(executedBy[0]).isSameAs(Thread.currentThread());
+  }
+}
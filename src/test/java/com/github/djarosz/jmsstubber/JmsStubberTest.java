@@ -6,17 +6,47 @@ import com.github.djarosz.jmsstubber.handler.ForwardingHandler;
 import com.github.djarosz.jmsstubber.handler.GroovyHandler;
 import com.github.djarosz.jmsstubber.handler.LoggingHandler;
 import com.github.djarosz.jmsstubber.handler.MessageCollectingHandler;
+import com.github.djarosz.jmsstubber.metrics.DefaultQueueMetrics;
+import com.github.djarosz.jmsstubber.metrics.DefaultStubberMetrics;
 import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.jms.Connection;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageProducer;
 import javax.jms.Session;
 import javax.jms.TextMessage;
+import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.broker.BrokerService;
+import org.apache.activemq.broker.region.DestinationStatistics;
+import org.apache.activemq.command.ActiveMQQueue;
+import org.apache.activemq.management.CountStatisticImpl;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 @Slf4j
 public class JmsStubberTest extends BaseJmsStubberTest {
 
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
   @Test
   public void shouldStartStubber() throws Exception {
     MessageCollectingHandler<TextMessage> messageStore = new MessageCollectingHandler<>();
@@ -57,6 +87,8 @@ public class JmsStubberTest extends BaseJmsStubberTest {
     session.close();
     connection.stop();
     stubber.stop();
+    assertThat(Thread.getAllStackTraces().keySet()).extracting(Thread::getName)
+        .as("logging handler writer stopped").doesNotContain("jms-stubber-logging-handler");
   }
 
   @Test
@@ -148,6 +180,675 @@ public class JmsStubberTest extends BaseJmsStubberTest {
     stubber.stop();
   }
 
+  @Test
+  public void shouldReuseCompiledGroovyScriptUntilItChanges() throws Exception {
+    File scriptDir = temporaryFolder.newFolder();
+    File script = new File(scriptDir, "default.groovy");
+    Files.write(script.toPath(), "session.send('out', 'first')".getBytes(StandardCharsets.UTF_8));
+
+    GroovyHandler groovyHandler = new GroovyHandler(scriptDir);
+    JmsStubber stubber = JmsStubberBuilder.embeddedBroker()
+        .withQueues()
+          .withQueue("out")
+          .withQueue("in", groovyHandler)
+        .build();
+
+    stubber.start();
+
+    Connection connection = stubber.getConnectionFactory().createConnection();
+    connection.start();
+    Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+
+    MessageConsumer out = session.createConsumer(session.createQueue("out"));
+    sendMessage(session, "in", "1");
+    sendMessage(session, "in", "2");
+    assertThat(((TextMessage) out.receive(5000)).getText()).isEqualTo("first");
+    assertThat(((TextMessage) out.receive(5000)).getText()).isEqualTo("first");
+
+    assertThat(groovyHandler.getScriptCache().getMisses()).isEqualTo(1);
+    assertThat(groovyHandler.getScriptCache().getHits()).isEqualTo(1);
+
+    Files.write(script.toPath(), "session.send('out', 'second')".getBytes(StandardCharsets.UTF_8));
+
+    long deadline = System.currentTimeMillis() + 10_000;
+    String text;
+    do {
+      assertThat(System.currentTimeMillis()).as("script recompiled in time").isLessThan(deadline);
+      Thread.sleep(100);
+      sendMessage(session, "in", "3");
+      TextMessage reply = (TextMessage) out.receive(5000);
+      assertThat(reply).isNotNull();
+      text = reply.getText();
+    } while (!"second".equals(text));
+
+    assertThat(groovyHandler.getScriptCache().getRecompiles()).isEqualTo(1);
+
+    session.close();
+    connection.stop();
+    stubber.stop();
+
+    // stopped stubber closes handlers
+    assertThat(groovyHandler.getScriptCache().isWatching()).isFalse();
+  }
+
+  @Test
+  public void shouldHandleMessagesFromSameQueueInParallel() throws Exception {
+    int concurrency = 4;
+    CountDownLatch allHandlersRunning = new CountDownLatch(concurrency);
+    MessageHandler<Message> blockingHandler = (session, message) -> {
+      allHandlersRunning.countDown();
+      allHandlersRunning.await(10, TimeUnit.SECONDS);
+    };
+    JmsStubber stubber = JmsStubberBuilder.embeddedBroker()
+        .withQueues()
+          .withQueue(new QueueConfig("in", blockingHandler).withConcurrency(concurrency))
+        .build();
+
+    stubber.start();
+
+    Connection connection = stubber.getConnectionFactory().createConnection();
+    connection.start();
+    Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+
+    for (int i = 0; i < concurrency; i++) {
+      sendMessage(session, "in", "message " + i);
+    }
+
+    assertThat(allHandlersRunning.await(5, TimeUnit.SECONDS)).isTrue();
+
+    session.close();
+    connection.stop();
+    stubber.stop();
+  }
+
+  @Test
+  public void shouldHandleMessagesFromSameGroupInOrder() throws Exception {
+    MessageCollectingHandler<TextMessage> messageStore = new MessageCollectingHandler<>();
+    JmsStubber stubber = JmsStubberBuilder.embeddedBroker()
+        .withQueues()
+          .withDefaultConcurrency(4)
+          .withQueue(new QueueConfig("in", messageStore).withOrdered(true))
+        .build();
+
+    stubber.start();
+
+    Connection connection = stubber.getConnectionFactory().createConnection();
+    connection.start();
+    Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+
+    MessageProducer producer = session.createProducer(session.createQueue("in"));
+    int messageCount = 100;
+    for (int i = 0; i < messageCount; i++) {
+      TextMessage message = session.createTextMessage(String.valueOf(i));
+      message.setStringProperty("JMSXGroupID", "group-" + (i % 3));
+      producer.send(message);
+    }
+    producer.close();
+
+    MessageConsumer consumer = session.createConsumer(session.createQueue("in"));
+    for (int i = 0; i < messageCount; i++) {
+      assertThat(consumer.receive(5000)).isNotNull();
+    }
+
+    for (int group = 0; group < 3; group++) {
+      String groupId = "group-" + group;
+      int[] received = messageStore.received("in").stream()
+          .filter(message -> groupId.equals(getGroupId(message)))
+          .mapToInt(message -> Integer.parseInt(getText(message)))
+          .toArray();
+      assertThat(received).isSorted().hasSize((messageCount - group + 2) / 3);
+    }
+
+    session.close();
+    connection.stop();
+    stubber.stop();
+  }
+
+  @Test
+  public void shouldAcknowledgeOrderedMessagesOnceHandled() throws Exception {
+    BrokerService broker = new BrokerService();
+    broker.setBrokerName("ordered-ack-test");
+    broker.setPersistent(false);
+    broker.setUseJmx(false);
+    broker.start();
+    CountDownLatch handlersReleased = new CountDownLatch(1);
+    MessageHandler<Message> blockedHandler = (session, message) -> handlersReleased.await(10, TimeUnit.SECONDS);
+    JmsStubber stubber = JmsStubberBuilder
+        .amqConnectionFactory(new ActiveMQConnectionFactory("vm://ordered-ack-test?create=false"))
+        .withQueue(new QueueConfig("in", blockedHandler).withOrdered(true).withConcurrency(2))
+        .build();
+
+    stubber.start();
+
+    Connection connection = stubber.getConnectionFactory().createConnection();
+    connection.start();
+    Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+    int messageCount = 10;
+    for (int i = 0; i < messageCount; i++) {
+      sendMessage(session, "in", String.valueOf(i));
+    }
+
+    DestinationStatistics statistics = broker.getDestination(new ActiveMQQueue("in")).getDestinationStatistics();
+    awaitCount(statistics.getDispatched(), messageCount);
+    // messages waiting in lanes are not acknowledged yet
+    assertThat(statistics.getDequeues().getCount()).isZero();
+
+    handlersReleased.countDown();
+    awaitCount(statistics.getDequeues(), messageCount);
+
+    session.close();
+    connection.stop();
+    stubber.stop();
+    broker.stop();
+  }
+
+  @Test
+  public void shouldKeepMessageGroupsOfResentMessages() throws Exception {
+    JmsStubber stubber = JmsStubberBuilder.embeddedBroker()
+        .withQueues()
+          .withQueue("in", new MessageCollectingHandler<>())
+        .build();
+
+    stubber.start();
+
+    Connection connection = stubber.getConnectionFactory().createConnection();
+    connection.start();
+    Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+    List<MessageConsumer> consumers = Arrays.asList(
+        session.createConsumer(session.createQueue("in")), session.createConsumer(session.createQueue("in")));
+
+    MessageProducer producer = session.createProducer(session.createQueue("in"));
+    int messageCount = 20;
+    for (int i = 0; i < messageCount; i++) {
+      TextMessage message = session.createTextMessage(String.valueOf(i));
+      message.setStringProperty("JMSXGroupID", "group-" + (i % 2));
+      producer.send(message);
+    }
+
+    Map<String, List<Integer>> receivedByGroup = new HashMap<>();
+    Map<String, MessageConsumer> consumerByGroup = new HashMap<>();
+    long deadline = System.currentTimeMillis() + 10_000;
+    int received = 0;
+    while (received < messageCount && System.currentTimeMillis() < deadline) {
+      for (MessageConsumer consumer : consumers) {
+        TextMessage message = (TextMessage) consumer.receive(10);
+        if (message != null) {
+          received++;
+          String groupId = getGroupId(message);
+          receivedByGroup.computeIfAbsent(groupId, group -> new ArrayList<>()).add(Integer.parseInt(getText(message)));
+          assertThat(consumerByGroup.computeIfAbsent(groupId, group -> consumer)).isSameAs(consumer);
+        }
+      }
+    }
+
+    assertThat(received).isEqualTo(messageCount);
+    assertThat(receivedByGroup).containsOnlyKeys("jms-stubber.group-0", "jms-stubber.group-1");
+    receivedByGroup.values().forEach(group -> assertThat(group).isSorted().hasSize(messageCount / 2));
+
+    session.close();
+    connection.stop();
+    stubber.stop();
+  }
+
+  @Test
+  public void shouldHandleMessagesAsynchronouslyUpToMaxInFlight() throws Exception {
+    int maxInFlight = 5;
+    int messageCount = 20;
+    ScheduledExecutorService backend = Executors.newSingleThreadScheduledExecutor();
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicInteger maxObservedInFlight = new AtomicInteger();
+    AsyncMessageHandler<TextMessage> slowBackend = (session, message) -> {
+      maxObservedInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+      String text = message.getText();
+      CompletableFuture<Void> response = new CompletableFuture<>();
+      backend.schedule(() -> {
+        inFlight.decrementAndGet();
+        session.send("out", text);
+        response.complete(null);
+      }, 200, TimeUnit.MILLISECONDS);
+      return response;
+    };
+    JmsStubber stubber = JmsStubberBuilder.embeddedBroker()
+        .withQueues()
+          .withQueue("out")
+          .withQueue(new QueueConfig("in", slowBackend).withMaxInFlight(maxInFlight))
+        .build();
+
+    stubber.start();
+
+    Connection connection = stubber.getConnectionFactory().createConnection();
+    connection.start();
+    Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+
+    long startedAt = System.nanoTime();
+    for (int i = 0; i < messageCount; i++) {
+      sendMessage(session, "in", "message " + i);
+    }
+    MessageConsumer out = session.createConsumer(session.createQueue("out"));
+    MessageConsumer resent = session.createConsumer(session.createQueue("in"),
+        JmsStubber.STUBBER_PROCESSED_HEADER + " IS NOT NULL");
+    for (int i = 0; i < messageCount; i++) {
+      assertThat(out.receive(5000)).isNotNull();
+      assertThat(resent.receive(5000)).isNotNull();
+    }
+
+    // sequential handling would take messageCount * 200 ms
+    assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt)).isLessThan(messageCount * 200 / 2);
+    assertThat(maxObservedInFlight.get()).isEqualTo(maxInFlight);
+
+    session.close();
+    connection.stop();
+    stubber.stop();
+    backend.shutdown();
+  }
+
+  @Test
+  public void shouldExecuteBlockingHandlersWithHandlerExecutor() throws Exception {
+    int messageCount = 20;
+    ExecutorService executor = Executors.newCachedThreadPool();
+    MessageHandler<TextMessage> blockingBackend = (session, message) -> {
+      Thread.sleep(200);
+      session.send("out", message.getText());
+    };
+    JmsStubber stubber = JmsStubberBuilder.embeddedBroker()
+        .withQueues()
+          .withQueue("out")
+          .withQueue("in", blockingBackend)
+        .withHandlerExecutor(HandlerExecutor.of(executor))
+        .build();
+
+    stubber.start();
+
+    Connection connection = stubber.getConnectionFactory().createConnection();
+    connection.start();
+    Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+
+    long startedAt = System.nanoTime();
+    for (int i = 0; i < messageCount; i++) {
+      sendMessage(session, "in", "message " + i);
+    }
+    MessageConsumer out = session.createConsumer(session.createQueue("out"));
+    for (int i = 0; i < messageCount; i++) {
+      assertThat(out.receive(5000)).isNotNull();
+    }
+
+    // single consumer thread would take messageCount * 200 ms
+    assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt)).isLessThan(messageCount * 200 / 2);
+
+    session.close();
+    connection.stop();
+    stubber.stop();
+    executor.shutdown();
+  }
+
+  @Test
+  public void shouldSendDelayedResponsesWithQueueLatency() throws Exception {
+    int messageCount = 200;
+    AsyncMessageHandler<TextMessage> delayedResponse =
+        (session, message) -> session.sendLater("out", "response to " + message.getText());
+    JmsStubber stubber = JmsStubberBuilder.embeddedBroker()
+        .withQueues()
+          .withQueue("out")
+          .withQueue(new QueueConfig("in", delayedResponse)
+              .withLatency(LatencyDistribution.parse("uniform,200,300"))
+              .withMaxInFlight(messageCount))
+        .build();
+
+    stubber.start();
+
+    Connection connection = stubber.getConnectionFactory().createConnection();
+    connection.start();
+    Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+
+    long startedAt = System.nanoTime();
+    for (int i = 0; i < messageCount; i++) {
+      sendMessage(session, "in", "message " + i);
+    }
+    MessageConsumer out = session.createConsumer(session.createQueue("out"));
+    TextMessage first = (TextMessage) out.receive(5000);
+    assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt)).isGreaterThanOrEqualTo(200);
+    assertThat(first.getText()).startsWith("response to message ");
+    for (int i = 1; i < messageCount; i++) {
+      assertThat(out.receive(5000)).isNotNull();
+    }
+    // responses are not sent one after another
+    assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt)).isLessThan(5000);
+
+    session.close();
+    connection.stop();
+    stubber.stop();
+  }
+
+  @Test
+  public void shouldNotBlockConsumerOnDelayedSendReturnedByGroovyScript() throws Exception {
+    int messageCount = 5;
+    File script = temporaryFolder.newFile("delayed.groovy");
+    Files.write(script.toPath(), "session.sendLater('out', 'response to ' + msg.text)\n"
+        .getBytes(StandardCharsets.UTF_8));
+    MessageCollectingHandler<TextMessage> messageStore = new MessageCollectingHandler<>();
+    JmsStubber stubber = JmsStubberBuilder.embeddedBroker()
+        .withQueues()
+          .withQueue("out")
+          .withQueue(new QueueConfig("in", new GroovyHandler(script), messageStore)
+              .withLatency(LatencyDistribution.parse("fixed,1000")))
+        .build();
+
+    stubber.start();
+
+    Connection connection = stubber.getConnectionFactory().createConnection();
+    connection.start();
+    Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+    long startedAt = System.nanoTime();
+    for (int i = 0; i < messageCount; i++) {
+      sendMessage(session, "in", "message " + i);
+    }
+    assertThat(messageStore.awaitCount("in", messageCount, 5, TimeUnit.SECONDS)).isTrue();
+    // consumer waiting for every delayed send would take messageCount * 1000 ms
+    assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt)).isLessThan(2000);
+    MessageConsumer out = session.createConsumer(session.createQueue("out"));
+    for (int i = 0; i < messageCount; i++) {
+      assertThat(out.receive(5000)).isNotNull();
+    }
+
+    session.close();
+    connection.stop();
+    stubber.stop();
+  }
+
+  @Test
+  public void shouldSendPendingDelayedResponsesWhenStopped() throws Exception {
+    CompletableFuture<CompletionStage<Void>> scheduled = new CompletableFuture<>();
+    JmsStubber stubber = JmsStubberBuilder.embeddedBroker()
+        .withQueues()
+          .withQueue("out")
+          .withQueue("in", (session, message) -> scheduled.complete(
+              session.sendLater(300, TimeUnit.MILLISECONDS, "out", "delayed response")))
+        .build();
+
+    stubber.start();
+
+    Connection connection = stubber.getConnectionFactory().createConnection();
+    connection.start();
+    Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+    sendMessage(session, "in", "message");
+    CompletionStage<Void> sent = scheduled.get(5, TimeUnit.SECONDS);
+    session.close();
+    connection.stop();
+    stubber.stop();
+
+    assertThat(sent.toCompletableFuture().isDone()).isTrue();
+    assertThat(sent.toCompletableFuture().isCompletedExceptionally()).isFalse();
+  }
+
+  @Test
+  public void shouldStartTimerThreadOnlyForDelayedSends() throws Exception {
+    JmsStubber stubber = JmsStubberBuilder.embeddedBroker()
+        .withQueues()
+          .withQueue("out")
+          .withQueue("in", (session, message) -> session.send("out", "response"))
+          .withQueue("delayed.in", (session, message) ->
+              session.sendLater(10, TimeUnit.MILLISECONDS, "out", "delayed response"))
+        .build();
+
+    stubber.start();
+
+    Connection connection = stubber.getConnectionFactory().createConnection();
+    connection.start();
+    Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+    MessageConsumer out = session.createConsumer(session.createQueue("out"));
+    sendMessage(session, "in", "message");
+    assertThat(((TextMessage) out.receive(5000)).getText()).isEqualTo("response");
+    assertThat(timerThreadRunning()).isFalse();
+
+    sendMessage(session, "delayed.in", "message");
+    assertThat(((TextMessage) out.receive(5000)).getText()).isEqualTo("delayed response");
+    assertThat(timerThreadRunning()).isTrue();
+
+    session.close();
+    connection.stop();
+    stubber.stop();
+
+    assertThat(timerThreadRunning()).isFalse();
+  }
+
+  private static boolean timerThreadRunning() {
+    return Thread.getAllStackTraces().keySet().stream()
+        .anyMatch(thread -> thread.getName().equals("jms-stubber-timer"));
+  }
+
+  @Test
+  public void shouldResolveQualifiedDestinationNames() throws Exception {
+    JmsStubber stubber = JmsStubberBuilder.embeddedBroker()
+        .withQueues()
+          .withQueue("in", (session, message) -> session.send("queue://not.stubbed", "reply"))
+        .build();
+
+    stubber.start();
+
+    Connection connection = stubber.getConnectionFactory().createConnection();
+    connection.start();
+    Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+
+    sendMessage(session, "in", "request");
+    TextMessage reply = waitMessageReceived(session, "not.stubbed");
+
+    assertThat(reply.getText()).isEqualTo("reply");
+
+    session.close();
+    connection.stop();
+    stubber.stop();
+  }
+
+  @Test
+  public void shouldInterceptMessagesInBroker() throws Exception {
+    shouldHandleOriginalMessage(StubbingMode.INTERCEPT);
+  }
+
+  @Test
+  public void shouldInterceptMessagesInBrokerAsynchronously() throws Exception {
+    shouldHandleOriginalMessage(StubbingMode.INTERCEPT_ASYNC);
+  }
+
+  @Test
+  public void shouldHandleMessagesFromWireTap() throws Exception {
+    shouldHandleOriginalMessage(StubbingMode.WIRE_TAP);
+  }
+
+  @Test
+  public void shouldNotBlockInterceptedSendWhenLaneIsFull() throws Exception {
+    CountDownLatch handlersReleased = new CountDownLatch(1);
+    AtomicInteger handled = new AtomicInteger();
+    DefaultStubberMetrics metrics = new DefaultStubberMetrics();
+    JmsStubber stubber = JmsStubberBuilder.embeddedBroker()
+        .withQueues()
+          .withStubbingMode(StubbingMode.INTERCEPT_ASYNC)
+          .withMetrics(metrics)
+          .withQueue(new QueueConfig("in", (session, message) -> {
+            handlersReleased.await();
+            handled.incrementAndGet();
+          }).withConcurrency(1))
+        .build();
+
+    stubber.start();
+
+    Connection connection = stubber.getConnectionFactory().createConnection();
+    connection.start();
+    Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+    int messageCount = OrderedDispatcher.LANE_BACKLOG + 10;
+    ExecutorService sender = Executors.newSingleThreadExecutor();
+    sender.submit(() -> {
+      for (int i = 0; i < messageCount; i++) {
+        sendMessage(session, "in", "message-" + i);
+      }
+      return null;
+    }).get(10, TimeUnit.SECONDS);
+    sender.shutdown();
+
+    handlersReleased.countDown();
+    MessageConsumer consumer = session.createConsumer(session.createQueue("in"));
+    for (int i = 0; i < messageCount; i++) {
+      assertThat(consumer.receive(5000)).isNotNull();
+    }
+    consumer.close();
+    connection.close();
+    stubber.stop();
+
+    // one message in handler and full lane backlog, the rest was only stored
+    assertThat(handled.get()).isEqualTo(OrderedDispatcher.LANE_BACKLOG + 1);
+    assertThat(metrics.getQueue("in").get().getDropped()).isEqualTo(messageCount - handled.get());
+  }
+
+  private void shouldHandleOriginalMessage(StubbingMode stubbingMode) throws Exception {
+    MessageCollectingHandler<TextMessage> messageStore = new MessageCollectingHandler<>();
+    JmsStubber stubber = JmsStubberBuilder.embeddedBroker()
+        .withQueues()
+          .withStubbingMode(stubbingMode)
+          .withCommonMessageHandler(messageStore)
+          .withQueue("out")
+          .withQueue("in", new ForwardingHandler("out"))
+        .build();
+
+    stubber.start();
+
+    Connection connection = stubber.getConnectionFactory().createConnection();
+    connection.start();
+    Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+
+    MessageProducer producer = session.createProducer(session.createQueue("in"));
+    TextMessage sent = session.createTextMessage("intercepted");
+    producer.send(sent);
+    producer.close();
+
+    TextMessage receivedByIn = waitMessageReceived(session, "in");
+    TextMessage receivedByOut = waitMessageReceived(session, "out");
+
+    assertThat(receivedByIn.getJMSMessageID()).isEqualTo(sent.getJMSMessageID());
+    assertThat(receivedByIn.propertyExists(JmsStubber.STUBBER_PROCESSED_HEADER)).isFalse();
+    assertThat(receivedByOut.getText()).isEqualTo("intercepted");
+    assertThat(messageStore.received("in")).hasSize(1);
+
+    session.close();
+    connection.stop();
+    stubber.stop();
+  }
+
+  @Test
+  public void shouldStubTopicsWithoutDuplicatingMessagesForOtherSubscribers() throws Exception {
+    int messageCount = 20;
+    MessageCollectingHandler<TextMessage> messageStore = new MessageCollectingHandler<>();
+    JmsStubber stubber = JmsStubberBuilder.embeddedBroker()
+        .withQueues()
+          .withCommonMessageHandler(messageStore)
+          .withQueue("out")
+          .withTopic(new TopicConfig("events", new ForwardingHandler("out")).withConcurrency(4))
+          .withTopic("VirtualTopic.events", new ForwardingHandler("out"))
+        .build();
+
+    stubber.start();
+
+    Connection connection = stubber.getConnectionFactory().createConnection();
+    connection.start();
+    Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+    MessageConsumer subscriber = session.createConsumer(session.createTopic("events"));
+    MessageProducer producer = session.createProducer(null);
+
+    for (int i = 0; i < messageCount; i++) {
+      producer.send(session.createTopic("events"), session.createTextMessage("event " + i));
+    }
+    producer.send(session.createTopic("VirtualTopic.events"), session.createTextMessage("virtual event"));
+
+    MessageConsumer out = session.createConsumer(session.createQueue("out"),
+        JmsStubber.STUBBER_PROCESSED_HEADER + " IS NOT NULL");
+    for (int i = 0; i < messageCount + 1; i++) {
+      assertThat(out.receive(5000)).isNotNull();
+    }
+    for (int i = 0; i < messageCount; i++) {
+      Message event = subscriber.receive(5000);
+      assertThat(event).isNotNull();
+      assertThat(event.propertyExists(JmsStubber.STUBBER_PROCESSED_HEADER)).isFalse();
+    }
+    assertThat(subscriber.receive(200)).isNull();
+    assertThat(out.receive(200)).isNull();
+    assertThat(messageStore.count("events")).isEqualTo(messageCount);
+    assertThat(messageStore.count("VirtualTopic.events")).isEqualTo(1);
+
+    session.close();
+    connection.stop();
+    stubber.stop();
+  }
+
+  @Test
+  public void shouldAttachHandlersToQueuesMatchingWildcardWhenTheyAreCreated() throws Exception {
+    MessageCollectingHandler<TextMessage> messageStore = new MessageCollectingHandler<>();
+    JmsStubber stubber = JmsStubberBuilder.embeddedBroker()
+        .withQueues()
+          .withQueue("out")
+          .withQueue("ORDERS.>", messageStore, new ForwardingHandler("out"))
+        .build();
+
+    stubber.start();
+
+    Connection connection = stubber.getConnectionFactory().createConnection();
+    connection.start();
+    Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+
+    sendMessage(session, "ORDERS.EU.NEW", "eu order");
+    sendMessage(session, "ORDERS.US", "us order");
+    sendMessage(session, "INVOICES", "invoice");
+
+    MessageConsumer out = session.createConsumer(session.createQueue("out"),
+        JmsStubber.STUBBER_PROCESSED_HEADER + " IS NOT NULL");
+    assertThat(out.receive(5000)).isNotNull();
+    assertThat(out.receive(5000)).isNotNull();
+    assertThat(out.receive(200)).isNull();
+    assertThat(messageStore.count("ORDERS.EU.NEW")).isEqualTo(1);
+    assertThat(messageStore.count("ORDERS.US")).isEqualTo(1);
+    TextMessage resent = waitMessageReceived(session, "ORDERS.US");
+    assertThat(resent.getText()).isEqualTo("us order");
+    assertThat(waitMessageReceived(session, "INVOICES").propertyExists(JmsStubber.STUBBER_PROCESSED_HEADER))
+        .isFalse();
+
+    session.close();
+    connection.stop();
+    stubber.stop();
+  }
+
+  @Test
+  public void shouldReportMetricsOfQueuesOverLimitUnderWildcardName() throws Exception {
+    DefaultStubberMetrics metrics = new DefaultStubberMetrics();
+    JmsStubber stubber = JmsStubberBuilder.embeddedBroker()
+        .withQueues()
+          .withMetrics(metrics)
+          .withQueue("WILDCARD.>")
+        .build();
+
+    stubber.start();
+
+    Connection connection = stubber.getConnectionFactory().createConnection();
+    connection.start();
+    Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+    int queueCount = DefaultJmsStubber.MAX_WILDCARD_QUEUE_METRICS + 2;
+    for (int i = 0; i < queueCount; i++) {
+      sendMessage(session, "WILDCARD." + i, "message " + i);
+    }
+    long deadline = System.currentTimeMillis() + 10_000;
+    while (received(metrics) < queueCount && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+
+    assertThat(received(metrics)).isEqualTo(queueCount);
+    assertThat(metrics.getQueues()).hasSize(DefaultJmsStubber.MAX_WILDCARD_QUEUE_METRICS + 1);
+    assertThat(metrics.getQueue("WILDCARD.>").get().getReceived()).isEqualTo(2);
+
+    session.close();
+    connection.stop();
+    stubber.stop();
+  }
+
+  private static long received(DefaultStubberMetrics metrics) {
+    return metrics.getQueues().stream().mapToLong(DefaultQueueMetrics::getReceived).sum();
+  }
+
   @Test
   public void shouldSendMessageUsingTcp() throws Exception {
     String tcpConnector = "tcp://localhost:5678";
@@ -175,4 +876,22 @@ public class JmsStubberTest extends BaseJmsStubberTest {
     stubber.stop();
   }
 
-}
\ No newline at end of file
+  private static void awaitCount(CountStatisticImpl statistic, long count) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (statistic.getCount() < count && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(statistic.getCount()).isEqualTo(count);
+  }
+
+  @SneakyThrows
+  private static String getGroupId(Message message) {
+    return message.getStringProperty("JMSXGroupID");
+  }
+
+  @SneakyThrows
+  private static String getText(TextMessage message) {
+    return message.getText();
+  }
+
+}
@@ -0,0 +1,87 @@
+package com.github.djarosz.jmsstubber;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.github.djarosz.jmsstubber.LoadGenerator.LoadReport;
+import com.github.djarosz.jmsstubber.handler.ForwardingHandler;
+import com.github.djarosz.jmsstubber.handler.MessageCollectingHandler;
+import java.util.List;
+import java.util.Properties;
+import javax.jms.TextMessage;
+import org.junit.Test;
+
+public class LoadGeneratorTest {
+
+  @Test
+  public void shouldMeasureRoundTripOfResentMessagesAtFixedRate() throws Exception {
+    MessageCollectingHandler<TextMessage> messageStore = new MessageCollectingHandler<>();
+    JmsStubber stubber = JmsStubberBuilder.embeddedBroker()
+        .withQueues()
+          .withQueue("load.in", messageStore)
+        .build();
+    stubber.start();
+
+    Properties props = new Properties();
+    props.setProperty("queue.in.name", "load.in");
+    props.setProperty("load.queue.in.rate", "200");
+    props.setProperty("load.queue.in.template", "message ${sequence}");
+    props.setProperty("load.duration", "1");
+    List<LoadReport> reports = LoadGenerator.fromProperties(props).get().run(stubber.getConnectionFactory());
+    stubber.stop();
+
+    assertThat(reports).hasSize(1);
+    LoadReport report = reports.get(0);
+    assertThat(report.getLabel()).isEqualTo("in");
+    assertThat(report.getSent()).isEqualTo(200);
+    assertThat(report.getCompleted()).isEqualTo(200);
+    assertThat(report.getLost()).isZero();
+    assertThat(report.getLatency().getTotalCount()).isEqualTo(200);
+    assertThat(report.getLatency().getValueAtPercentile(50)).isPositive();
+    assertThat(report.getThroughput()).isGreaterThan(100);
+    assertThat(messageStore.received("load.in").get(7).getText()).isEqualTo("message 7");
+  }
+
+  @Test
+  public void shouldMeasureRoundTripOfRepliesInClosedLoop() throws Exception {
+    JmsStubber stubber = JmsStubberBuilder.embeddedBroker()
+        .withQueues()
+          .withStubbingMode(StubbingMode.INTERCEPT)
+          .withQueue("load.request", new ForwardingHandler("load.reply"))
+        .build();
+    stubber.start();
+
+    Properties props = new Properties();
+    props.setProperty("load.queue.request.name", "load.request");
+    props.setProperty("load.queue.request.outstanding", "4");
+    props.setProperty("load.queue.request.reply", "queue://load.reply");
+    props.setProperty("load.duration", "1");
+    List<LoadReport> reports = LoadGenerator.fromProperties(props).get().run(stubber.getConnectionFactory());
+    stubber.stop();
+
+    LoadReport report = reports.get(0);
+    assertThat(report.getSent()).isPositive();
+    assertThat(report.getCompleted()).isEqualTo(report.getSent());
+    assertThat(report.getLost()).isZero();
+    assertThat(report.toString()).startsWith("request: sent=").contains("p999=");
+  }
+
+  @Test
+  public void shouldRequireReplyDestinationWhenMessagesAreNotResent() {
+    Properties props = new Properties();
+    props.setProperty("stubbing.mode", "intercept");
+    props.setProperty("load.queue.in.name", "load.in");
+
+    assertThatThrownBy(() -> LoadGenerator.fromProperties(props))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessageContaining("load.queue.in.reply");
+  }
+
+  @Test
+  public void shouldNotCreateGeneratorWithoutLoadConfiguration() {
+    Properties props = new Properties();
+    props.setProperty("queue.in.name", "load.in");
+
+    assertThat(LoadGenerator.fromProperties(props)).isEmpty();
+  }
+}
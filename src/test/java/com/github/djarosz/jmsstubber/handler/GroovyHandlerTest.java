@@ -0,0 +1,82 @@
+package com.github.djarosz.jmsstubber.handler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.apache.activemq.command.ActiveMQQueue;
+import org.apache.activemq.command.ActiveMQTextMessage;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class GroovyHandlerTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void shouldParseJsonBodyOnceUntilTextChanges() throws Throwable {
+    Object result = execute("def json = msg.json\n"
+        + "assert json.is(msg.json)\n"
+        + "def values = [msg.jsonPath('$.order.id'), json.order.id]\n"
+        + "msg.setText('{\"order\": {\"id\": 2}}')\n"
+        + "assert !json.is(msg.json)\n"
+        + "values + [msg.json.order.id, msg.jsonPath('$.order.id'), msg.jsonPath('$.order.missing')]",
+        "{\"order\": {\"id\": 1}}");
+
+    assertThat(result).asList().containsExactly(1, 1, 2, 2, null);
+  }
+
+  @Test
+  public void shouldParseXmlBodyOnceUntilBodyIsCleared() throws Throwable {
+    Object result = execute("def xml = msg.xml\n"
+        + "assert xml.is(msg.xml)\n"
+        + "def values = [msg.xpath('/order/id'), msg.xpath('count(/order/item)'), xml.id.text()]\n"
+        + "msg.clearBody()\n"
+        + "msg.setText('<order><id>8</id></order>')\n"
+        + "values + [msg.xml.id.text(), msg.xpath('/order/id'), msg.xpath('count(/order/item)')]",
+        "<order><id>7</id><item/><item/></order>");
+
+    assertThat(result).asList().containsExactly("7", "2", "7", "8", "8", "0");
+  }
+
+  @Test
+  public void shouldRestartWatcherAndDetectChangesMadeWhileClosed() throws Throwable {
+    File scriptFile = temporaryFolder.newFile("script.groovy");
+    Files.write(scriptFile.toPath(), "'a'".getBytes(StandardCharsets.UTF_8));
+    GroovyHandler handler = new GroovyHandler(scriptFile);
+    try {
+      assertThat(handler.handleAsync(null, textMessage("1")).toCompletableFuture().get()).isEqualTo("a");
+      handler.close();
+      assertThat(handler.getScriptCache().isWatching()).isFalse();
+
+      // same length, so only content comparison can detect the change
+      Files.write(scriptFile.toPath(), "'b'".getBytes(StandardCharsets.UTF_8));
+      assertThat(handler.handleAsync(null, textMessage("2")).toCompletableFuture().get()).isEqualTo("b");
+      assertThat(handler.getScriptCache().isWatching()).isTrue();
+      assertThat(handler.getScriptCache().getRecompiles()).isEqualTo(1);
+    } finally {
+      handler.close();
+    }
+  }
+
+  private Object execute(String script, String body) throws Throwable {
+    File scriptFile = temporaryFolder.newFile("script.groovy");
+    Files.write(scriptFile.toPath(), script.getBytes(StandardCharsets.UTF_8));
+    GroovyHandler handler = new GroovyHandler(scriptFile);
+    try {
+      return handler.handleAsync(null, textMessage(body)).toCompletableFuture().get();
+    } finally {
+      handler.close();
+    }
+  }
+
+  private static ActiveMQTextMessage textMessage(String body) throws Exception {
+    ActiveMQTextMessage message = new ActiveMQTextMessage();
+    message.setJMSDestination(new ActiveMQQueue("groovy.in"));
+    message.setText(body);
+    return message;
+  }
+}
@@ -0,0 +1,311 @@
+package com.github.djarosz.jmsstubber.handler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.File;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.jms.TextMessage;
+import lombok.SneakyThrows;
+import org.apache.activemq.command.ActiveMQQueue;
+import org.apache.activemq.command.ActiveMQTextMessage;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MessageCollectingHandlerTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void shouldCollectMessagesFromManyThreadsInPublishedOrder() throws Exception {
+    MessageCollectingHandler<TextMessage> handler = new MessageCollectingHandler<>();
+    int threads = 4;
+    int messagesPerThread = 5 * MessageLog.CHUNK_SIZE;
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    List<Future<?>> producers = new ArrayList<>();
+    for (int thread = 0; thread < threads; thread++) {
+      String prefix = thread + ":";
+      producers.add(executor.submit(() -> {
+        for (int i = 0; i < messagesPerThread; i++) {
+          handle(handler, "in", prefix + i);
+        }
+      }));
+    }
+    for (Future<?> producer : producers) {
+      producer.get(10, TimeUnit.SECONDS);
+    }
+    executor.shutdown();
+
+    List<TextMessage> received = handler.received("in");
+    assertThat(received).hasSize(threads * messagesPerThread).doesNotContainNull();
+    assertThat(handler.count("in")).isEqualTo(threads * messagesPerThread);
+    for (int thread = 0; thread < threads; thread++) {
+      String prefix = thread + ":";
+      int[] sent = received.stream()
+          .map(MessageCollectingHandlerTest::getText)
+          .filter(text -> text.startsWith(prefix))
+          .mapToInt(text -> Integer.parseInt(text.substring(prefix.length())))
+          .toArray();
+      assertThat(sent).isSorted().hasSize(messagesPerThread);
+    }
+  }
+
+  @Test
+  public void shouldPublishMessagesAppendedAfterFailedAppend() throws Exception {
+    MessageCollectingHandler<TextMessage> handler = new MessageCollectingHandler<>();
+    CompletableFuture<TextMessage> next = handler.nextMatching("in", message -> true);
+    ActiveMQTextMessage broken = new ActiveMQTextMessage() {
+      @Override
+      public String getJMSCorrelationID() {
+        throw new IllegalStateException("broken message");
+      }
+    };
+    broken.setJMSDestination(new ActiveMQQueue("in"));
+
+    assertThatThrownBy(() -> handler.handle(null, broken)).hasMessage("broken message");
+    CompletableFuture.runAsync(() -> handle(handler, "in", "after failure")).get(5, TimeUnit.SECONDS);
+
+    assertThat(handler.received("in")).extracting(MessageCollectingHandlerTest::getText)
+        .containsExactly("after failure");
+    assertThat(getText(next.get(1, TimeUnit.SECONDS))).isEqualTo("after failure");
+  }
+
+  @Test
+  public void shouldEvictOldestMessagesOverLimit() throws Exception {
+    MessageCollectingHandler<TextMessage> handler = new MessageCollectingHandler<>(10, null, null);
+
+    for (int i = 0; i < 3 * MessageLog.CHUNK_SIZE; i++) {
+      handle(handler, "in", String.valueOf(i));
+    }
+
+    List<TextMessage> received = handler.received("in");
+    assertThat(received).hasSize(10);
+    assertThat(getText(received.get(0))).isEqualTo(String.valueOf(3 * MessageLog.CHUNK_SIZE - 10));
+    assertThat(handler.count("in")).isEqualTo(10);
+  }
+
+  @Test
+  public void shouldNotKeepReferencesToEvictedMessages() throws Throwable {
+    MessageCollectingHandler<TextMessage> handler = new MessageCollectingHandler<>(10, null, null);
+    ActiveMQTextMessage first = message("in", "first");
+    WeakReference<TextMessage> evicted = new WeakReference<>(first);
+    handler.handle(null, first);
+    List<TextMessage> snapshot = handler.received("in");
+    first = null;
+
+    for (int i = 0; i < 10; i++) {
+      handle(handler, "in", String.valueOf(i));
+    }
+    assertThat(getText(snapshot.get(0))).as("snapshot keeps its messages").isEqualTo("first");
+    snapshot = null;
+    for (int i = 0; i < 50 && evicted.get() != null; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+
+    assertThat(evicted.get()).isNull();
+    assertThat(handler.received("in")).hasSize(10);
+  }
+
+  @Test
+  public void shouldEvictExpiredMessages() throws Exception {
+    MessageCollectingHandler<TextMessage> handler = new MessageCollectingHandler<>(null, null, 50L);
+
+    handle(handler, "in", "old");
+    Thread.sleep(100);
+    handle(handler, "in", "new");
+
+    assertThat(handler.received("in")).extracting(MessageCollectingHandlerTest::getText).containsExactly("new");
+  }
+
+  @Test
+  public void shouldReturnSnapshotsNotAffectedByLaterMessages() throws Exception {
+    MessageCollectingHandler<TextMessage> handler = new MessageCollectingHandler<>();
+    handle(handler, "a", "a1");
+    handle(handler, "b", "b1");
+
+    List<TextMessage> receivedByA = handler.received("a");
+    List<TextMessage> receivedAll = handler.receivedAll();
+    handle(handler, "a", "a2");
+
+    assertThat(receivedByA).extracting(MessageCollectingHandlerTest::getText).containsExactly("a1");
+    assertThat(receivedAll).extracting(MessageCollectingHandlerTest::getText).containsOnly("a1", "b1");
+    assertThat(handler.receivedAll()).hasSize(3);
+    assertThat(handler.received("unknown")).isEmpty();
+  }
+
+  @Test
+  public void shouldWakeUpWaitingThreadWhenMessagesAreReceived() throws Exception {
+    MessageCollectingHandler<TextMessage> handler = new MessageCollectingHandler<>();
+    handle(handler, "in", "already received");
+    CompletableFuture<TextMessage> next = handler.nextMatching("in", message -> getText(message).startsWith("m"));
+    CompletableFuture<TextMessage> first = handler.firstMatching("in", message -> getText(message).startsWith("a"));
+
+    Executors.newSingleThreadScheduledExecutor().schedule(() -> {
+      handle(handler, "in", "message 1");
+      handle(handler, "in", "message 2");
+    }, 100, TimeUnit.MILLISECONDS);
+
+    assertThat(handler.awaitCount("in", 3, 5, TimeUnit.SECONDS)).isTrue();
+    assertThat(getText(next.get(1, TimeUnit.SECONDS))).isEqualTo("message 1");
+    assertThat(getText(first.getNow(null))).isEqualTo("already received");
+    assertThat(handler.awaitCount("in", 4, 50, TimeUnit.MILLISECONDS)).isFalse();
+    assertThat(handler.awaitMatching("other", message -> true, 50, TimeUnit.MILLISECONDS)).isEmpty();
+  }
+
+  @Test
+  public void shouldFindMessagesByIndexedKeys() throws Throwable {
+    MessageCollectingHandler<TextMessage> handler = new MessageCollectingHandler<TextMessage>(2, null, null)
+        .indexProperties("status");
+    CompletableFuture<TextMessage> reply = handler.firstByCorrelationId("out", "request-3");
+
+    for (int i = 1; i <= 3; i++) {
+      ActiveMQTextMessage message = message("out", "reply " + i);
+      message.setJMSMessageID("ID:" + i);
+      message.setJMSCorrelationID("request-" + i);
+      message.setStringProperty("status", i % 2 == 0 ? "OK" : "ERROR");
+      handler.handle(null, message);
+    }
+
+    assertThat(getText(reply.get(1, TimeUnit.SECONDS))).isEqualTo("reply 3");
+    assertThat(handler.receivedByCorrelationId("out", "request-1")).as("evicted").isEmpty();
+    assertThat(handler.receivedByCorrelationId("out", "request-2")).extracting(MessageCollectingHandlerTest::getText)
+        .containsExactly("reply 2");
+    assertThat(handler.receivedByMessageId("out", "ID:3")).isPresent();
+    assertThat(handler.receivedByProperty("out", "status", "ERROR")).extracting(MessageCollectingHandlerTest::getText)
+        .containsExactly("reply 3");
+    assertThat(handler.firstByCorrelationId("out", "request-2").getNow(null)).isNotNull();
+  }
+
+  @Test
+  public void shouldKeepMessagesInMappedFiles() throws Throwable {
+    MessageCollectingHandler<TextMessage> handler = new MessageCollectingHandler<>(null, null, null,
+        temporaryFolder.getRoot());
+    for (int i = 0; i < 2 * MessageLog.CHUNK_SIZE; i++) {
+      ActiveMQTextMessage message = message("in", "message " + i);
+      message.setJMSCorrelationID("correlation " + i);
+      handler.handle(null, message);
+    }
+
+    List<TextMessage> received = handler.received("in");
+    assertThat(received).hasSize(2 * MessageLog.CHUNK_SIZE);
+    assertThat(received.get(1500).getText()).isEqualTo("message 1500");
+    assertThat(received.get(1500)).as("unmarshalled on every read").isNotSameAs(received.get(1500));
+    assertThat(handler.receivedByCorrelationId("in", "correlation 7")).extracting(MessageCollectingHandlerTest::getText)
+        .containsExactly("message 7");
+    assertThat(temporaryFolder.getRoot().list()).isNotEmpty();
+  }
+
+  @Test
+  public void shouldUnindexEvictedMessagesKeptInMappedFiles() throws Throwable {
+    MessageCollectingHandler<TextMessage> handler = new MessageCollectingHandler<TextMessage>(5, null, null,
+        temporaryFolder.getRoot()).indexProperties("batch");
+    for (int i = 0; i < 20; i++) {
+      ActiveMQTextMessage message = message("in", "message " + i);
+      message.setJMSCorrelationID("correlation " + i % 2);
+      message.setIntProperty("batch", i / 10);
+      handler.handle(null, message);
+    }
+
+    assertThat(handler.receivedByCorrelationId("in", "correlation 1"))
+        .extracting(MessageCollectingHandlerTest::getText)
+        .containsExactly("message 15", "message 17", "message 19");
+    assertThat(handler.receivedByProperty("in", "batch", 0)).isEmpty();
+    assertThat(handler.receivedByProperty("in", "batch", 1)).hasSize(5);
+  }
+
+  @Test
+  public void shouldDeleteSegmentsWhenAllTheirMessagesAreReleased() throws Exception {
+    MessageSegments segments = new MessageSegments(temporaryFolder.getRoot(), 4096);
+    List<MessageSegments.StoredMessage> stored = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      stored.add(segments.write(message("in", "message " + i)));
+    }
+    int segmentFiles = temporaryFolder.getRoot().list().length;
+    assertThat(segmentFiles).isGreaterThan(1);
+    assertThat(((TextMessage) stored.get(99).load()).getText()).isEqualTo("message 99");
+
+    stored.forEach(MessageSegments.StoredMessage::release);
+
+    assertThat(temporaryFolder.getRoot().list()).as("current segment is kept").hasSize(1);
+  }
+
+  @Test
+  public void shouldStartWithSmallSegmentsGrowingUpToMaxSize() throws Exception {
+    MessageSegments segments = new MessageSegments(temporaryFolder.getRoot(), 4 * MessageSegments.INITIAL_SEGMENT_SIZE);
+    ActiveMQTextMessage message = message("in", new String(new char[MessageSegments.INITIAL_SEGMENT_SIZE / 4]));
+    for (int i = 0; i < 40; i++) {
+      segments.write(message);
+    }
+
+    assertThat(Arrays.stream(temporaryFolder.getRoot().listFiles()).mapToLong(File::length).distinct().sorted()
+        .toArray()).containsExactly(MessageSegments.INITIAL_SEGMENT_SIZE, 2L * MessageSegments.INITIAL_SEGMENT_SIZE,
+            4L * MessageSegments.INITIAL_SEGMENT_SIZE);
+  }
+
+  @Test
+  public void shouldDeleteSegmentFilesWhenClosed() throws Throwable {
+    MessageCollectingHandler<TextMessage> handler = new MessageCollectingHandler<TextMessage>()
+        .withMappedStorage(temporaryFolder.getRoot())
+        .withMaxSegmentSize(4096);
+    for (int i = 0; i < 100; i++) {
+      handle(handler, i % 2 == 0 ? "a" : "b", "message " + i);
+    }
+    assertThat(temporaryFolder.getRoot().list().length).isGreaterThan(2);
+
+    handler.close();
+
+    assertThat(temporaryFolder.getRoot().list()).isEmpty();
+    assertThat(handler.received("a")).hasSize(50);
+    assertThat(getText(handler.received("b").get(49))).isEqualTo("message 99");
+    // used again when stubber is restarted
+    handle(handler, "a", "after close");
+    assertThat(temporaryFolder.getRoot().list()).hasSize(1);
+    assertThat(handler.received("a")).hasSize(51);
+  }
+
+  @Test
+  public void shouldFindMessagesReceivedInTimeRange() throws Exception {
+    MessageCollectingHandler<TextMessage> handler = new MessageCollectingHandler<>();
+    handle(handler, "in", "before");
+    Thread.sleep(20);
+    long from = System.currentTimeMillis();
+    handle(handler, "in", "during");
+    long to = System.currentTimeMillis();
+    Thread.sleep(20);
+    handle(handler, "in", "after");
+
+    assertThat(handler.received("in", from, to)).extracting(MessageCollectingHandlerTest::getText)
+        .containsExactly("during");
+    assertThat(handler.received("in", to + 1000, to + 2000)).isEmpty();
+  }
+
+  @SneakyThrows
+  private static void handle(MessageCollectingHandler<TextMessage> handler, String destination, String text) {
+    handler.handle(null, message(destination, text));
+  }
+
+  @SneakyThrows
+  private static ActiveMQTextMessage message(String destination, String text) {
+    ActiveMQTextMessage message = new ActiveMQTextMessage();
+    message.setJMSDestination(new ActiveMQQueue(destination));
+    message.setText(text);
+    return message;
+  }
+
+  @SneakyThrows
+  private static String getText(TextMessage message) {
+    return message.getText();
+  }
+}
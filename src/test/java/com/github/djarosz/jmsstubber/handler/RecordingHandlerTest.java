@@ -0,0 +1,107 @@
+package com.github.djarosz.jmsstubber.handler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.github.djarosz.jmsstubber.JmsStubber;
+import com.github.djarosz.jmsstubber.JmsStubberBuilder;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.jms.TextMessage;
+import org.apache.activemq.command.ActiveMQDestination;
+import org.apache.activemq.command.ActiveMQQueue;
+import org.apache.activemq.command.ActiveMQTextMessage;
+import org.apache.activemq.command.ActiveMQTopic;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RecordingHandlerTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void shouldRecordMessagesToRollingSegments() throws Throwable {
+    File directory = temporaryFolder.getRoot();
+    RecordingHandler recorder = new RecordingHandler(directory, 1024L);
+    for (int i = 0; i < 20; i++) {
+      recorder.handle(null, message(i % 2 == 0 ? new ActiveMQQueue("in") : new ActiveMQTopic("events"), i));
+    }
+    recorder.close();
+    // recording continues in new segment after restart
+    new RecordingHandler(directory, 1024L).handle(null, message(new ActiveMQQueue("in"), 20));
+
+    List<RecordingReplayer.RecordedMessage> recorded = new ArrayList<>();
+    new RecordingReplayer(directory).forEach(recorded::add);
+
+    assertThat(directory.list().length).isGreaterThan(2);
+    assertThat(recorded).hasSize(21);
+    for (int i = 0; i < recorded.size(); i++) {
+      assertThat(((TextMessage) recorded.get(i).getMessage()).getText()).isEqualTo("message " + i);
+    }
+    assertThat(recorded.get(1).getDestination()).isEqualTo(new ActiveMQTopic("events"));
+    assertThat(recorded.get(1).getReceivedAt()).isGreaterThanOrEqualTo(recorded.get(0).getReceivedAt());
+  }
+
+  @Test
+  public void shouldRecordDestinationNamesUpToUnsignedShortLength() throws Throwable {
+    File directory = temporaryFolder.getRoot();
+    char[] name = new char[0xFFFF - "queue://".length()];
+    Arrays.fill(name, 'q');
+    ActiveMQQueue longestQueue = new ActiveMQQueue(new String(name));
+    RecordingHandler recorder = new RecordingHandler(directory);
+    recorder.handle(null, message(longestQueue, 0));
+    ActiveMQQueue tooLongQueue = new ActiveMQQueue(longestQueue.getPhysicalName() + "q");
+    assertThatThrownBy(() -> recorder.handle(null, message(tooLongQueue, 1)))
+        .isInstanceOf(IllegalArgumentException.class);
+    recorder.close();
+
+    List<RecordingReplayer.RecordedMessage> recorded = new ArrayList<>();
+    new RecordingReplayer(directory).forEach(recorded::add);
+
+    assertThat(recorded).hasSize(1);
+    assertThat(recorded.get(0).getDestination()).isEqualTo(longestQueue);
+  }
+
+  @Test
+  public void shouldRejectSegmentSizeWhichCanNotBeMapped() {
+    assertThatThrownBy(() -> new RecordingHandler(temporaryFolder.getRoot(), Integer.MAX_VALUE + 1L))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  public void shouldReplayRecordingThroughStubber() throws Throwable {
+    File directory = temporaryFolder.getRoot();
+    RecordingHandler recorder = new RecordingHandler(directory);
+    for (int i = 0; i < 10; i++) {
+      recorder.handle(null, message(new ActiveMQQueue("in"), i));
+    }
+    recorder.close();
+
+    MessageCollectingHandler<TextMessage> messageStore = new MessageCollectingHandler<>();
+    JmsStubber stubber = JmsStubberBuilder.embeddedBroker()
+        .withQueues()
+          .withQueue("in", messageStore)
+        .build();
+    stubber.start();
+
+    long replayed = new RecordingReplayer(directory).withSpeed(0).replay(stubber.getConnectionFactory());
+
+    assertThat(replayed).isEqualTo(10);
+    assertThat(messageStore.awaitCount("in", 10, 5, TimeUnit.SECONDS)).isTrue();
+    assertThat(messageStore.received("in").get(9).getText()).isEqualTo("message 9");
+
+    stubber.stop();
+  }
+
+  private static ActiveMQTextMessage message(ActiveMQDestination destination, int i) throws Exception {
+    ActiveMQTextMessage message = new ActiveMQTextMessage();
+    message.setJMSDestination(destination);
+    message.setText("message " + i);
+    return message;
+  }
+}
@@ -0,0 +1,92 @@
+package com.github.djarosz.jmsstubber.handler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.github.djarosz.jmsstubber.AsyncMessageHandler;
+import com.github.djarosz.jmsstubber.MessageHandler;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import org.apache.activemq.command.ActiveMQTextMessage;
+import org.junit.Test;
+
+public class RoutingHandlerTest {
+
+  private final List<String> executed = new ArrayList<>();
+
+  @Test
+  public void shouldRouteToFirstMatchingRoute() throws Throwable {
+    RoutingHandler routing = RoutingHandler.builder()
+        .route("priority > 5", handler("urgent"))
+        .routeByProperty("operation", "CREATE", handler("create"))
+        .route("operation = 'UPDATE' OR operation = 'DELETE'", handler("modify"))
+        .route("code = 42", handler("code"))
+        .route("operation = 'CREATE'", handler("unreachable"))
+        .otherwise(handler("otherwise"))
+        .build();
+
+    routing.handle(null, message("CREATE", 1, 0));
+    routing.handle(null, message("CREATE", 9, 0));
+    routing.handle(null, message("DELETE", 1, 0));
+    routing.handle(null, message("READ", 1, 42));
+    routing.handle(null, message("READ", 1, 0));
+
+    assertThat(executed).containsExactly("create", "urgent", "modify", "code", "otherwise");
+  }
+
+  @Test
+  public void shouldMatchEqualNumbersOfDifferentTypes() throws Throwable {
+    RoutingHandler routing = RoutingHandler.builder()
+        .route("code = 1.0", handler("one"))
+        .route("code = 2", handler("two"))
+        .routeByProperty("code", 3.5f, handler("three and half"))
+        .routeByProperty("code", "4", handler("string"))
+        .otherwise(handler("otherwise"))
+        .build();
+
+    ActiveMQTextMessage longTwo = new ActiveMQTextMessage();
+    longTwo.setLongProperty("code", 2);
+    ActiveMQTextMessage doubleThreeAndHalf = new ActiveMQTextMessage();
+    doubleThreeAndHalf.setDoubleProperty("code", 3.5);
+    routing.handle(null, message("READ", 1, 1));
+    routing.handle(null, longTwo);
+    routing.handle(null, doubleThreeAndHalf);
+    routing.handle(null, message("READ", 1, 4));
+
+    assertThat(executed).containsExactly("one", "two", "three and half", "otherwise");
+  }
+
+  @Test
+  public void shouldExecuteRouteHandlersInOrderWaitingForAsynchronousOnes() throws Throwable {
+    CompletableFuture<Void> backend = new CompletableFuture<>();
+    AsyncMessageHandler<Message> async = (session, message) -> backend.thenRun(() -> executed.add("async"));
+    RoutingHandler routing = RoutingHandler.builder()
+        .route("JMSType = 'order'", handler("first"), async, handler("last"))
+        .build();
+
+    ActiveMQTextMessage order = message("CREATE", 1, 0);
+    order.setJMSType("order");
+    CompletableFuture<?> routed = routing.handleAsync(null, order).toCompletableFuture();
+    assertThat(routing.handleAsync(null, message("CREATE", 1, 0)).toCompletableFuture()).isDone();
+
+    assertThat(executed).containsExactly("first");
+    assertThat(routed).isNotDone();
+    backend.complete(null);
+    assertThat(routed).isDone();
+    assertThat(executed).containsExactly("first", "async", "last");
+  }
+
+  private MessageHandler<Message> handler(String name) {
+    return (session, message) -> executed.add(name);
+  }
+
+  private static ActiveMQTextMessage message(String operation, int priority, int code) throws JMSException {
+    ActiveMQTextMessage message = new ActiveMQTextMessage();
+    message.setStringProperty("operation", operation);
+    message.setIntProperty("priority", priority);
+    message.setIntProperty("code", code);
+    return message;
+  }
+}
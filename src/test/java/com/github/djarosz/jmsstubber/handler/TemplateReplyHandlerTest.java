@@ -0,0 +1,95 @@
+package com.github.djarosz.jmsstubber.handler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.github.djarosz.jmsstubber.JmsStubber;
+import com.github.djarosz.jmsstubber.JmsStubberBuilder;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import javax.jms.Connection;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TemplateReplyHandlerTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void shouldReplyWithTemplateFilledFromRequest() throws Exception {
+    File xmlTemplate = temporaryFolder.newFile("reply.xml");
+    Files.write(xmlTemplate.toPath(), ("<reply id=\"${xpath:/order/@id}\" type=\"${header:JMSType}\">"
+        + "${xpath:count(/order/item)} items for ${property:customer}${property:missing}</reply>")
+        .getBytes(StandardCharsets.UTF_8));
+    JmsStubber stubber = JmsStubberBuilder.embeddedBroker()
+        .withQueues()
+          .withQueue("xml.in", new TemplateReplyHandler(xmlTemplate, "queue://xml.out"))
+          .withQueue("json.in", TemplateReplyHandler.fromText(
+              "{\"status\": \"${json:$.order.items[1].status}\", \"id\": ${json:$['order'].id}}", null))
+        .build();
+
+    stubber.start();
+
+    Connection connection = stubber.getConnectionFactory().createConnection();
+    connection.start();
+    Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+    MessageProducer producer = session.createProducer(null);
+
+    TextMessage xmlRequest = session.createTextMessage("<order id=\"7\"><item/><item/></order>");
+    xmlRequest.setJMSType("order");
+    xmlRequest.setStringProperty("customer", "ACME");
+    producer.send(session.createQueue("xml.in"), xmlRequest);
+    TextMessage jsonRequest = session.createTextMessage(
+        "{\"order\": {\"id\": 12, \"items\": [{\"status\": \"NEW\"}, {\"status\": \"SHIPPED\"}]}}");
+    jsonRequest.setJMSCorrelationID("request-1");
+    jsonRequest.setJMSReplyTo(session.createQueue("json.replies"));
+    producer.send(session.createQueue("json.in"), jsonRequest);
+
+    TextMessage xmlReply = (TextMessage) receive(session, "xml.out");
+    assertThat(xmlReply.getText()).isEqualTo("<reply id=\"7\" type=\"order\">2 items for ACME</reply>");
+    assertThat(xmlReply.getJMSCorrelationID()).isEqualTo(xmlRequest.getJMSMessageID());
+    TextMessage jsonReply = (TextMessage) receive(session, "json.replies");
+    assertThat(jsonReply.getText()).isEqualTo("{\"status\": \"SHIPPED\", \"id\": 12}");
+    assertThat(jsonReply.getJMSCorrelationID()).isEqualTo("request-1");
+
+    // body which can not be parsed is rendered as missing values
+    producer.send(session.createQueue("xml.in"), session.createTextMessage("<order"));
+    TextMessage invalidJsonRequest = session.createTextMessage("not json");
+    invalidJsonRequest.setJMSReplyTo(session.createQueue("json.replies"));
+    producer.send(session.createQueue("json.in"), invalidJsonRequest);
+    assertThat(((TextMessage) receive(session, "xml.out")).getText())
+        .isEqualTo("<reply id=\"\" type=\"\"> items for </reply>");
+    assertThat(((TextMessage) receive(session, "json.replies")).getText()).isEqualTo("{\"status\": \"\", \"id\": }");
+
+    session.close();
+    connection.stop();
+    stubber.stop();
+  }
+
+  @Test
+  public void shouldRejectInvalidTemplates() {
+    assertThatThrownBy(() -> TemplateReplyHandler.fromText("${unknown:x}", null))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> TemplateReplyHandler.fromText("${json:order.id}", null))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> TemplateReplyHandler.fromText("${xpath:/order[}", null))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> TemplateReplyHandler.fromText("${body", null))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private static javax.jms.Message receive(Session session, String queueName) throws Exception {
+    MessageConsumer consumer = session.createConsumer(session.createQueue(queueName),
+        JmsStubber.STUBBER_PROCESSED_HEADER + " IS NULL");
+    javax.jms.Message message = consumer.receive(5000);
+    consumer.close();
+    return message;
+  }
+}
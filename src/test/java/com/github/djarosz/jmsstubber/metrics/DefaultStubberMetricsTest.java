@@ -0,0 +1,87 @@
+package com.github.djarosz.jmsstubber.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.github.djarosz.jmsstubber.JmsStubber;
+import com.github.djarosz.jmsstubber.JmsStubberBuilder;
+import com.github.djarosz.jmsstubber.handler.MessageCollectingHandler;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+import javax.jms.Connection;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+import javax.management.ObjectName;
+import org.junit.Test;
+
+public class DefaultStubberMetricsTest {
+
+  @Test
+  public void shouldMeasureHandlersOfStubbedQueue() throws Exception {
+    DefaultStubberMetrics metrics = new DefaultStubberMetrics().withJmx();
+    MessageCollectingHandler<TextMessage> messageStore = new MessageCollectingHandler<>();
+    JmsStubber stubber = JmsStubberBuilder.embeddedBroker()
+        .withQueues()
+          .withMetrics(metrics)
+          .withCommonMessageHandler(messageStore)
+          .withQueue("metrics.in", (session, message) -> {
+            if (((TextMessage) message).getText().startsWith("fail")) {
+              throw new IllegalStateException("failed");
+            }
+          })
+        .build();
+    stubber.start();
+
+    Connection connection = stubber.getConnectionFactory().createConnection();
+    Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+    MessageProducer producer = session.createProducer(session.createQueue("metrics.in"));
+    producer.send(session.createTextMessage("ok 1"));
+    producer.send(session.createTextMessage("fail 2"));
+    producer.send(session.createTextMessage("ok 3"));
+    messageStore.awaitCount("metrics.in", 3, 10, TimeUnit.SECONDS);
+    connection.close();
+
+    DefaultQueueMetrics queue = metrics.getQueue("metrics.in").get();
+    // last message may still be resent
+    long deadline = System.currentTimeMillis() + 10_000;
+    while (queue.getChainTime().snapshot().getTotalCount() < 3 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(queue.getReceived()).isEqualTo(3);
+    assertThat(queue.getErrors()).isEqualTo(1);
+    assertThat(queue.getInFlight()).isZero();
+    assertThat(queue.getBacklog()).isZero();
+    assertThat(queue.getResendTime().snapshot().getTotalCount()).isEqualTo(3);
+    assertThat(queue.getHandlers()).hasSize(2);
+    assertThat(queue.getHandlers().get(0).getName()).isEqualTo("1-MessageCollectingHandler");
+    assertThat(queue.getHandlers().get(1).getName()).startsWith("2-");
+    assertThat(queue.getHandlers().get(0).getErrors()).isZero();
+    assertThat(queue.getHandlers().get(1).getErrors()).isEqualTo(1);
+    assertThat(queue.getHandlers().get(1).getTime().snapshot().getTotalCount()).isEqualTo(3);
+
+    assertThat(ManagementFactory.getPlatformMBeanServer()
+        .getAttribute(new ObjectName(MetricsMBeans.DOMAIN + ":type=Queue,queue=\"metrics.in\""), "Errors"))
+        .isEqualTo(1L);
+
+    try (MetricsHttpServer server = new MetricsHttpServer(metrics, 0);
+         InputStream in = new URL("http://localhost:" + server.getPort() + "/metrics").openStream()) {
+      String text = new Scanner(in, StandardCharsets.UTF_8.name()).useDelimiter("\\A").next();
+      assertThat(text)
+          .contains("jms_stubber_received_total{queue=\"metrics.in\"} 3\n")
+          .contains("jms_stubber_errors_total{queue=\"metrics.in\"} 1\n")
+          .contains("jms_stubber_chain_seconds_count{queue=\"metrics.in\"} 3\n")
+          .containsPattern("jms_stubber_chain_seconds_sum\\{queue=\"metrics.in\"} 0\\.\\d{9}\n")
+          .containsPattern("# TYPE jms_stubber_chain_seconds summary\n(jms_stubber_chain_seconds[{_].*\n)+"
+              + "# TYPE jms_stubber_chain_seconds_max gauge\njms_stubber_chain_seconds_max\\{queue=\"metrics.in\"} ")
+          .contains("jms_stubber_handler_seconds{queue=\"metrics.in\",handler=\"1-MessageCollectingHandler\","
+              + "quantile=\"0.99\"}")
+          .contains("jms_stubber_handler_errors_total{queue=\"metrics.in\",handler=\"1-MessageCollectingHandler\"} 0");
+    }
+
+    stubber.stop();
+  }
+}
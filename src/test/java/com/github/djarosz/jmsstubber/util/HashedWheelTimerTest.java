@@ -0,0 +1,49 @@
+package com.github.djarosz.jmsstubber.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class HashedWheelTimerTest {
+
+  @Test
+  public void shouldExecuteTasksAfterTheirDelays() throws Exception {
+    HashedWheelTimer timer = new HashedWheelTimer("test-timer", 1, TimeUnit.MILLISECONDS, 16);
+    int taskCount = 10_000;
+    AtomicInteger early = new AtomicInteger();
+    List<CompletableFuture<Void>> tasks = new ArrayList<>();
+    long startedAt = System.nanoTime();
+    for (int i = 0; i < taskCount; i++) {
+      // delays longer than the wheel need more rounds
+      long delayMs = 10 + i % 50;
+      tasks.add(timer.schedule(() -> {
+        if (System.nanoTime() - startedAt < TimeUnit.MILLISECONDS.toNanos(delayMs)) {
+          early.incrementAndGet();
+        }
+      }, delayMs, TimeUnit.MILLISECONDS));
+    }
+    CompletableFuture<Void> cancelled = timer.schedule(early::incrementAndGet, 20, TimeUnit.MILLISECONDS);
+    cancelled.cancel(false);
+
+    CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+    Thread.sleep(30);
+    timer.stop();
+
+    assertThat(early.get()).isZero();
+  }
+
+  @Test
+  public void shouldFailPendingTasksWhenStopped() throws Exception {
+    HashedWheelTimer timer = new HashedWheelTimer("test-timer", 1, TimeUnit.MILLISECONDS, 16);
+    CompletableFuture<Void> pending = timer.schedule(() -> { }, 1, TimeUnit.HOURS);
+    timer.stop();
+
+    assertThat(pending).isCompletedExceptionally();
+    assertThat(timer.schedule(() -> { }, 1, TimeUnit.MILLISECONDS)).isCompletedExceptionally();
+  }
+}
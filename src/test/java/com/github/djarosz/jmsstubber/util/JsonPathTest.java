@@ -0,0 +1,44 @@
+package com.github.djarosz.jmsstubber.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import groovy.json.JsonException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+
+public class JsonPathTest {
+
+  private static final String JSON = "{\"skipped\": {\"text\": \"} ] \\\" ,\", \"list\": [[1], {\"a\": null}]},\n"
+      + " \"esc\\u0061ped\": \"a\\tb\\u0041\",\n"
+      + " \"order\": {\"id\": 12345678901, \"price\": 2.5, \"paid\": true, \"note\": null,\n"
+      + "   \"items\": [{\"id\": \"x\"}, {\"id\": \"y\", \"tags\": [\"t\"]}]}}";
+
+  @Test
+  public void shouldReadTheSameValuesFromTextAndParsedDocument() {
+    Object document = JsonPath.parse(JSON);
+    for (String path : Arrays.asList("$", "$.order", "$.order.id", "$.order.price", "$.order.paid", "$.order.note",
+        "$.order.items[1]", "$.order.items[1].id", "$['order']['items'][0]['id']", "$.escaped",
+        "$.order.items[2]", "$.order.missing", "$.order.id.missing", "$.skipped.list[0][0]", "$[0]")) {
+      JsonPath jsonPath = JsonPath.compile(path);
+      assertThat(jsonPath.readText(JSON)).as(path).isEqualTo(jsonPath.read(document));
+    }
+    assertThat(JsonPath.compile("$.order.items[1].tags").readText(JSON)).isEqualTo(Collections.singletonList("t"));
+    assertThat(JsonPath.compile("$.escaped").readText(JSON)).isEqualTo("a\tbA");
+    assertThat(JsonPath.compile("$.order.price").readText(JSON)).isEqualTo(new BigDecimal("2.5"));
+  }
+
+  @Test
+  public void shouldStopReadingTextOnceValueIsFound() {
+    String truncated = "{\"id\": 1, \"items\": [{\"id\": 2}, {\"id\": ";
+
+    assertThat(JsonPath.compile("$.id").readText(truncated)).isEqualTo(1);
+    assertThat(JsonPath.compile("$.items[0].id").readText(truncated)).isEqualTo(2);
+    assertThatThrownBy(() -> JsonPath.compile("$.items[1].id").readText(truncated))
+        .isInstanceOf(JsonException.class);
+    assertThatThrownBy(() -> JsonPath.compile("$.missing").readText(truncated))
+        .isInstanceOf(JsonException.class);
+  }
+}
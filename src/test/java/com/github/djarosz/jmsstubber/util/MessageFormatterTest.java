@@ -0,0 +1,40 @@
+package com.github.djarosz.jmsstubber.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.apache.activemq.command.ActiveMQBytesMessage;
+import org.apache.activemq.command.ActiveMQQueue;
+import org.apache.activemq.command.ActiveMQTextMessage;
+import org.junit.Test;
+
+public class MessageFormatterTest {
+
+  @Test
+  public void shouldFormatHeadersPropertiesAndTruncatedText() throws Exception {
+    ActiveMQTextMessage message = new ActiveMQTextMessage();
+    message.setJMSDestination(new ActiveMQQueue("in"));
+    message.setJMSCorrelationID("correlation");
+    message.setIntProperty("count", 3);
+    message.setText("0123456789");
+
+    String formatted = MessageFormatter.format(message, 4);
+
+    assertThat(formatted)
+        .contains("JMSCorrelationID=correlation")
+        .contains("JMSDestination=queue://in")
+        .contains("properties={count=3}")
+        .endsWith("body=0123...(10 chars)");
+  }
+
+  @Test
+  public void shouldFormatBytesAsHexWithoutConsumingBody() throws Exception {
+    ActiveMQBytesMessage message = new ActiveMQBytesMessage();
+    message.writeBytes(new byte[] {1, 2, (byte) 0xff, 4});
+    message.reset();
+
+    assertThat(MessageFormatter.format(message, 6))
+        .contains("properties={}")
+        .endsWith("body=<4 bytes:0102ff...>");
+    assertThat(message.readByte()).isEqualTo((byte) 1);
+  }
+}
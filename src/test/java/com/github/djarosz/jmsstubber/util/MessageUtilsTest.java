@@ -0,0 +1,128 @@
+package com.github.djarosz.jmsstubber.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.Random;
+import javax.jms.BytesMessage;
+import javax.jms.Connection;
+import javax.jms.Session;
+import javax.jms.StreamMessage;
+import javax.jms.TextMessage;
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.command.ActiveMQBytesMessage;
+import org.apache.activemq.command.ActiveMQQueue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MessageUtilsTest {
+
+  private Connection connection;
+  private Session session;
+
+  @Before
+  public void setUp() throws Exception {
+    connection = new ActiveMQConnectionFactory("vm://message-utils-test?broker.persistent=false").createConnection();
+    session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    session.close();
+    connection.close();
+  }
+
+  @Test
+  public void shouldCopyHeadersPropertiesAndBody() throws Exception {
+    TextMessage message = session.createTextMessage("text");
+    message.setJMSCorrelationID("correlation");
+    message.setJMSReplyTo(new ActiveMQQueue("reply"));
+    message.setJMSType("type");
+    message.setStringProperty("property", "value");
+
+    TextMessage copy = MessageUtils.createCopy(session, message);
+
+    assertThat(copy).isNotSameAs(message);
+    assertThat(copy.getText()).isEqualTo("text");
+    assertThat(copy.getJMSCorrelationID()).isEqualTo("correlation");
+    assertThat(copy.getJMSReplyTo()).isEqualTo(new ActiveMQQueue("reply"));
+    assertThat(copy.getJMSType()).isEqualTo("type");
+    assertThat(copy.getStringProperty("property")).isEqualTo("value");
+  }
+
+  @Test
+  public void shouldShareActiveMqContentUntilCopyIsModified() throws Exception {
+    BytesMessage message = session.createBytesMessage();
+    message.writeBytes(new byte[] {1, 2, 3});
+    message.reset();
+
+    BytesMessage copy = MessageUtils.createCopy(session, message);
+
+    assertThat(((ActiveMQBytesMessage) copy).getContent().getData())
+        .isSameAs(((ActiveMQBytesMessage) message).getContent().getData());
+
+    copy.setBooleanProperty("modified", true);
+    copy.clearBody();
+    copy.writeBytes(new byte[] {4});
+
+    byte[] original = new byte[3];
+    assertThat(message.readBytes(original)).isEqualTo(3);
+    assertThat(original).containsExactly(1, 2, 3);
+    assertThat(message.propertyExists("modified")).isFalse();
+  }
+
+  @Test
+  public void shouldCopyStreamMessageFieldsPreservingTypes() throws Exception {
+    StreamMessage message = session.createStreamMessage();
+    message.writeInt(1);
+    message.writeString("two");
+    message.writeBytes(new byte[] {3});
+    message.writeBoolean(true);
+    message.writeObject(null);
+    message.reset();
+    message.readInt();
+
+    StreamMessage copy = MessageUtils.createCopy(genericSession(), message);
+    copy.reset();
+
+    assertThat(copy.readObject()).isEqualTo(1);
+    assertThat(copy.readObject()).isEqualTo("two");
+    assertThat((byte[]) copy.readObject()).containsExactly(3);
+    assertThat(copy.readObject()).isEqualTo(true);
+    assertThat(copy.readObject()).isNull();
+    assertThat(message.readInt()).as("source is readable from start").isEqualTo(1);
+  }
+
+  @Test
+  public void shouldCopyLargeBytesMessage() throws Exception {
+    byte[] body = new byte[5 * 1024 * 1024 + 17];
+    new Random(1).nextBytes(body);
+    BytesMessage message = session.createBytesMessage();
+    message.writeBytes(body);
+    message.reset();
+
+    BytesMessage copy = MessageUtils.createCopy(genericSession(), message);
+    copy.reset();
+
+    byte[] copiedBody = new byte[(int) copy.getBodyLength()];
+    copy.readBytes(copiedBody);
+    assertThat(copiedBody).isEqualTo(body);
+    assertThat(message.getBodyLength()).isEqualTo(body.length);
+  }
+
+  /**
+   * Session hiding its ActiveMQ implementation so provider independent copy is used.
+   */
+  private Session genericSession() {
+    return (Session) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {Session.class},
+        (proxy, method, args) -> {
+          try {
+            return method.invoke(session, args);
+          } catch (InvocationTargetException e) {
+            throw e.getCause();
+          }
+        });
+  }
+}
@@ -0,0 +1,49 @@
+package com.github.djarosz.jmsstubber.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Arrays;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+public class XmlPathTest {
+
+  private static final String XML = "<?xml version=\"1.0\"?>\n"
+      + "<order id=\"1\" xmlns:p=\"urn:p\">\n"
+      + "  <note><id>nested</id></note>\n"
+      + "  <p:id>prefixed</p:id>\n"
+      + "  <item sku=\"a\">first <b>bold</b><![CDATA[ <cdata>]]></item>\n"
+      + "  <item sku=\"b\" qty=\"2\">second &amp; last</item>\n"
+      + "  <id>10</id>\n"
+      + "</order>";
+
+  @Test
+  public void shouldEvaluateTheSameValuesOnTextAndParsedDocument() {
+    Document document = XmlPath.parse(XML);
+    for (String expression : Arrays.asList("/order/@id", "/order/id", "/order/item", "/order/item/@sku",
+        "/order/item/@qty", "/order/note/id", "/order/missing", "/order/@missing", "/id", "/order",
+        "count(/order/item)", "/order/item[2]")) {
+      XmlPath xmlPath = XmlPath.compile(expression);
+      assertThat(xmlPath.evaluate(XML)).as(expression).isEqualTo(xmlPath.evaluate(document));
+    }
+    assertThat(XmlPath.compile("/order/item").evaluate(XML)).isEqualTo("first bold <cdata>");
+    assertThat(XmlPath.compile("/order/item/@qty").evaluate(XML)).isEqualTo("2");
+  }
+
+  @Test
+  public void shouldStopReadingTextOnceValueIsFound() {
+    String truncated = "<order><id>1</id><item>";
+
+    assertThat(XmlPath.compile("/order/id").isStreaming()).isTrue();
+    assertThat(XmlPath.compile("/order/id").evaluate(truncated)).isEqualTo("1");
+    assertThat(XmlPath.compile("count(/order/item)").isStreaming()).isFalse();
+  }
+
+  @Test
+  public void shouldRejectDocumentsWithDoctype() {
+    String xml = "<?xml version=\"1.0\"?><!DOCTYPE order [<!ENTITY id \"1\">]><order>&id;</order>";
+
+    assertThatThrownBy(() -> XmlPath.parse(xml)).hasMessageContaining("DOCTYPE");
+  }
+}